@@ -0,0 +1,59 @@
+package org.Lcing.snowstorm_engine;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+import org.Lcing.snowstorm_engine.molang.MolangMath;
+import org.Lcing.snowstorm_engine.molang.MolangProfiler;
+import org.Lcing.snowstorm_engine.molang.MolangTiering;
+import org.Lcing.snowstorm_engine.runtime.ParticleCostModel;
+
+/**
+ * 客户端配置 (config/snowstorm_engine-client.toml)。
+ */
+public class SnowstormConfig {
+    public static final ForgeConfigSpec CLIENT_SPEC;
+
+    public static final ForgeConfigSpec.EnumValue<MolangMath.Mode> MATH_MODE;
+    public static final ForgeConfigSpec.DoubleValue COST_BUDGET;
+    public static final ForgeConfigSpec.BooleanValue THROTTLE_OVER_BUDGET;
+    public static final ForgeConfigSpec.BooleanValue PROFILE;
+    public static final ForgeConfigSpec.IntValue COMPILE_THRESHOLD;
+
+    static {
+        ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+
+        builder.comment("Molang 求值设置").push("molang");
+        MATH_MODE = builder
+                .comment("数学函数精度: FAST 使用查表/多项式近似的 sin、cos、atan2、cbrt 和整数指数 pow，",
+                        "EXACT 使用 java.lang.Math。切换后重新加载资源包才会影响加载时折叠的常量。")
+                .defineEnum("mathMode", MolangMath.Mode.FAST);
+        COST_BUDGET = builder
+                .comment("每个发射器每秒的静态代价预算 (约为每秒简单运算次数，0 表示不检查)。",
+                        "加载时估计代价超出预算的粒子定义会记录警告。")
+                .defineInRange("costBudget", 5_000_000.0, 0.0, Double.MAX_VALUE);
+        THROTTLE_OVER_BUDGET = builder
+                .comment("为超出预算的粒子定义自动设置每个发射器的粒子数上限。重新加载资源包后生效。")
+                .define("throttleOverBudget", false);
+        PROFILE = builder
+                .comment("加载时为 Molang 表达式安装采样分析包装 (/snowstorm profile molang 查看结果)。",
+                        "关闭时不安装任何包装，没有额外开销。重新加载资源包后生效。")
+                .define("profile", false);
+        COMPILE_THRESHOLD = builder
+                .comment("表达式先由解释器执行，调用次数达到此值后在后台线程编译为字节码。",
+                        "0 表示加载时编译所有表达式。重新加载资源包后生效。")
+                .defineInRange("compileThreshold", MolangTiering.DEFAULT_THRESHOLD, 0, Integer.MAX_VALUE);
+        builder.pop();
+
+        CLIENT_SPEC = builder.build();
+    }
+
+    /**
+     * 将配置值应用到运行时 (配置加载或文件被修改后调用)。
+     */
+    public static void apply() {
+        MolangMath.setMode(MATH_MODE.get());
+        ParticleCostModel.setBudget(COST_BUDGET.get());
+        ParticleCostModel.setThrottleEnabled(THROTTLE_OVER_BUDGET.get());
+        MolangProfiler.setEnabled(PROFILE.get());
+        MolangTiering.setThreshold(COMPILE_THRESHOLD.get());
+    }
+}
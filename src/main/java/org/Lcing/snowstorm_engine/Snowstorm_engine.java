@@ -33,6 +33,12 @@ public class Snowstorm_engine {
                 // 注册 processIMC 方法以进行模组加载
                 FMLJavaModLoadingContext.get().getModEventBus().addListener(this::processIMC);
 
+                // 客户端配置 (Molang 数学精度等)
+                net.minecraftforge.fml.ModLoadingContext.get().registerConfig(
+                                net.minecraftforge.fml.config.ModConfig.Type.CLIENT, SnowstormConfig.CLIENT_SPEC);
+                FMLJavaModLoadingContext.get().getModEventBus().addListener(this::onConfigLoading);
+                FMLJavaModLoadingContext.get().getModEventBus().addListener(this::onConfigReloading);
+
                 // 将我们自己注册到服务器和其他感兴趣的游戏事件中
                 MinecraftForge.EVENT_BUS.register(this);
 
@@ -41,6 +47,18 @@ public class Snowstorm_engine {
                                 .register(FMLJavaModLoadingContext.get().getModEventBus());
         }
 
+        private void onConfigLoading(final net.minecraftforge.fml.event.config.ModConfigEvent.Loading event) {
+                if (event.getConfig().getSpec() == SnowstormConfig.CLIENT_SPEC) {
+                        SnowstormConfig.apply();
+                }
+        }
+
+        private void onConfigReloading(final net.minecraftforge.fml.event.config.ModConfigEvent.Reloading event) {
+                if (event.getConfig().getSpec() == SnowstormConfig.CLIENT_SPEC) {
+                        SnowstormConfig.apply();
+                }
+        }
+
         private void setup(final FMLCommonSetupEvent event) {
                 // 预初始化代码
                 LOGGER.info("HELLO FROM PREINIT");
@@ -49,8 +67,17 @@ public class Snowstorm_engine {
                 // 注册网络包
                 org.Lcing.snowstorm_engine.network.PacketHandler.register();
 
+                // 注册内置 Molang 查询 (必须在加载粒子之前)
+                org.Lcing.snowstorm_engine.runtime.SnowstormQueries.register();
+
                 // 初始化 Snowstorm 组件
                 LOGGER.info("正在初始化 Snowstorm 组件...");
+                org.Lcing.snowstorm_engine.runtime.components.ComponentRegistry.register(
+                                "minecraft:emitter_initialization",
+                                org.Lcing.snowstorm_engine.runtime.components.EmitterInitializationComponent::new);
+                org.Lcing.snowstorm_engine.runtime.components.ComponentRegistry.register(
+                                "minecraft:particle_initialization",
+                                org.Lcing.snowstorm_engine.runtime.components.ParticleInitializationComponent::new);
                 org.Lcing.snowstorm_engine.runtime.components.ComponentRegistry.register(
                                 "minecraft:emitter_rate_steady",
                                 org.Lcing.snowstorm_engine.runtime.components.RateSteadyComponent::new);
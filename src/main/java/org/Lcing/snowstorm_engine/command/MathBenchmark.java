@@ -0,0 +1,132 @@
+package org.Lcing.snowstorm_engine.command;
+
+import org.Lcing.snowstorm_engine.molang.MolangMath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 数学函数基准测试 (/snowstorm bench math)。
+ * 分别在 EXACT 和 FAST 模式下测量 {@link MolangMath} 各函数的耗时，并报告 FAST 模式相对 EXACT 的最大绝对误差。
+ */
+public class MathBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final int WARMUP_ROUNDS = 300;
+    private static final int MEASURE_ROUNDS = 1000;
+
+    // 防止 JIT 消除计算结果
+    private static float sink;
+
+    private interface Unary {
+        float apply(float x);
+    }
+
+    private interface Binary {
+        float apply(float a, float b);
+    }
+
+    public static List<String> run() {
+        List<String> report = new ArrayList<>();
+        MolangMath.Mode previous = MolangMath.getMode();
+        Random random = new Random(42);
+
+        float[] degrees = new float[SAMPLES];
+        float[] unit = new float[SAMPLES];
+        float[] positive = new float[SAMPLES];
+        float[] ys = new float[SAMPLES];
+        float[] xs = new float[SAMPLES];
+        float[] exponents = new float[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            degrees[i] = (random.nextFloat() * 2 - 1) * 720;
+            unit[i] = random.nextFloat() * 2 - 1;
+            positive[i] = random.nextFloat() * 100;
+            ys[i] = (random.nextFloat() * 2 - 1) * 10;
+            xs[i] = (random.nextFloat() * 2 - 1) * 10;
+            // Molang 中常见的整数指数
+            exponents[i] = 1 + random.nextInt(3);
+        }
+
+        try {
+            report.add(unary("sin (deg)", MolangMath::sinDeg, degrees));
+            report.add(unary("cos (deg)", MolangMath::cosDeg, degrees));
+            report.add(binary("atan2", MolangMath::atan2, ys, xs));
+            report.add(binary("pow (int exp)", MolangMath::pow, unit, exponents));
+            report.add(unary("acos", MolangMath::acos, unit));
+            report.add(unary("cbrt", MolangMath::cbrt, positive));
+            report.add(unary("sqrt", MolangMath::sqrt, positive));
+        } finally {
+            MolangMath.setMode(previous);
+        }
+        report.add("Current mode: " + previous);
+        return report;
+    }
+
+    private static String unary(String name, Unary f, float[] in) {
+        float maxError = 0;
+        for (float x : in) {
+            MolangMath.setMode(MolangMath.Mode.EXACT);
+            float exact = f.apply(x);
+            MolangMath.setMode(MolangMath.Mode.FAST);
+            maxError = Math.max(maxError, Math.abs(f.apply(x) - exact));
+        }
+        long exact = measure(MolangMath.Mode.EXACT, () -> {
+            float acc = 0;
+            for (float x : in)
+                acc += f.apply(x);
+            return acc;
+        });
+        long fast = measure(MolangMath.Mode.FAST, () -> {
+            float acc = 0;
+            for (float x : in)
+                acc += f.apply(x);
+            return acc;
+        });
+        return format(name, exact, fast, maxError);
+    }
+
+    private static String binary(String name, Binary f, float[] a, float[] b) {
+        float maxError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            MolangMath.setMode(MolangMath.Mode.EXACT);
+            float exact = f.apply(a[i], b[i]);
+            MolangMath.setMode(MolangMath.Mode.FAST);
+            maxError = Math.max(maxError, Math.abs(f.apply(a[i], b[i]) - exact));
+        }
+        long exact = measure(MolangMath.Mode.EXACT, () -> {
+            float acc = 0;
+            for (int i = 0; i < SAMPLES; i++)
+                acc += f.apply(a[i], b[i]);
+            return acc;
+        });
+        long fast = measure(MolangMath.Mode.FAST, () -> {
+            float acc = 0;
+            for (int i = 0; i < SAMPLES; i++)
+                acc += f.apply(a[i], b[i]);
+            return acc;
+        });
+        return format(name, exact, fast, maxError);
+    }
+
+    private static long measure(MolangMath.Mode mode, java.util.function.DoubleSupplier round) {
+        MolangMath.setMode(mode);
+        double acc = 0;
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            acc += round.getAsDouble();
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            acc += round.getAsDouble();
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += (float) acc;
+        return elapsed;
+    }
+
+    private static String format(String name, long exact, long fast, float maxError) {
+        double perOp = (double) MEASURE_ROUNDS * SAMPLES;
+        return String.format("%s | exact %.2f ns | fast %.2f ns (%.2fx) | max error %.2e",
+                name, exact / perOp, fast / perOp, (double) exact / fast, maxError);
+    }
+}
@@ -0,0 +1,179 @@
+package org.Lcing.snowstorm_engine.command;
+
+import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.loader.ParticleLoader;
+import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangCallSite;
+import org.Lcing.snowstorm_engine.molang.MolangCompiler;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangSimd;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
+import org.Lcing.snowstorm_engine.runtime.ParticleEffectTemplate;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Molang 求值基准测试 (/snowstorm bench molang)。
+ * 使用模组内置的 test1-re*.particle.json 中的表达式，比较树解释器、树的批量求值、向量化批量求值、栈式程序和字节码编译几种执行方式。
+ * 向量化一列中，不可向量化的表达式退回树的批量求值。
+ */
+public class MolangBenchmark {
+
+    private static final String[] BUNDLED = {
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re.particle.json",
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re2.particle.json"
+    };
+
+    // 每轮求值的上下文数量 (模拟一个发射器中的粒子)
+    private static final int CONTEXTS = 1024;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURE_ROUNDS = 500;
+
+    // 防止 JIT 消除求值结果
+    private static float sink;
+
+    public static List<String> run() {
+        List<String> report = new ArrayList<>();
+        long treeTotal = 0, batchTotal = 0, simdTotal = 0, stackTotal = 0, compiledTotal = 0;
+        int expressions = 0;
+
+        for (String path : BUNDLED) {
+            ParticleEffectTemplate template = loadTemplate(path);
+            if (template == null) {
+                report.add("Missing bundled particle: " + path);
+                continue;
+            }
+            MolangContext[] contexts = createContexts(template);
+            ParticleBatch batch = new ParticleBatch();
+            batch.reset(contexts, CONTEXTS);
+            float[] out = new float[CONTEXTS];
+
+            for (MolangCallSite site : template.getCallSites()) {
+                IMolangExpression tree = site.getTree();
+                IMolangExpression stack = MolangProgram.compile(tree);
+                IMolangExpression compiled = MolangCompiler.compile(tree, template.getSchema());
+                MolangCallSite simd = new MolangCallSite(site.getSource(), tree);
+                boolean vectorized = MolangSimd.vectorize(simd);
+
+                long t = measure(tree, contexts);
+                long b = measureBatch(tree, batch, out);
+                long v = measureBatch(simd, batch, out);
+                long s = measure(stack, contexts);
+                long c = measure(compiled, contexts);
+                treeTotal += t;
+                batchTotal += b;
+                simdTotal += v;
+                stackTotal += s;
+                compiledTotal += c;
+                expressions++;
+
+                report.add(String.format("%s | tree %.1f ns | batch %.1f ns | simd %s | stack %.1f ns | compiled %.1f ns",
+                        site.getSource(), perEval(t), perEval(b),
+                        vectorized ? String.format("%.1f ns", perEval(v)) : "-", perEval(s), perEval(c)));
+            }
+        }
+
+        if (expressions > 0) {
+            report.add(String.format(
+                    "Per particle, all %d expressions: tree %.1f ns | batch %.1f ns (%.2fx) | simd %.1f ns (%.2fx) | stack %.1f ns (%.2fx) | compiled %.1f ns (%.2fx)",
+                    expressions, perEval(treeTotal), perEval(batchTotal), (double) treeTotal / batchTotal,
+                    perEval(simdTotal), (double) treeTotal / simdTotal,
+                    perEval(stackTotal), (double) treeTotal / stackTotal,
+                    perEval(compiledTotal), (double) treeTotal / compiledTotal));
+        }
+        report.add(MolangSimd.isAvailable()
+                ? "Vector API: " + MolangSimd.lanes() + " lanes"
+                : "Vector API unavailable (start the JVM with --add-modules jdk.incubator.vector)");
+        return report;
+    }
+
+    private static ParticleEffectTemplate loadTemplate(String path) {
+        try (InputStream is = MolangBenchmark.class.getResourceAsStream(path)) {
+            if (is == null)
+                return null;
+            ParticleDefinition def = ParticleLoader.load(is);
+            return ParticleEffectTemplate.compile(def);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static MolangContext[] createContexts(ParticleEffectTemplate template) {
+        Random random = new Random(42);
+        MolangContext emitter = new MolangContext(template.getSchema());
+        MolangContext[] contexts = new MolangContext[CONTEXTS];
+        for (int i = 0; i < CONTEXTS; i++) {
+            MolangContext ctx = new MolangContext(template.getSchema(), emitter);
+            for (int slot = 0; slot < template.getSchema().size(); slot++) {
+                ctx.set(slot, random.nextFloat() + 0.01f);
+            }
+            contexts[i] = ctx;
+        }
+        return contexts;
+    }
+
+    /**
+     * 返回 MEASURE_ROUNDS 轮求值的总耗时 (纳秒)。
+     */
+    private static long measure(IMolangExpression expr, MolangContext[] contexts) {
+        float acc = 0;
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            acc += round(expr, contexts);
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            acc += round(expr, contexts);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        return elapsed;
+    }
+
+    /**
+     * 与 {@link #measure} 相同，但每轮通过一次 evalBatch 求值全部上下文。
+     */
+    private static long measureBatch(IMolangExpression expr, ParticleBatch batch, float[] out) {
+        float acc = 0;
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            acc += batchRound(expr, batch, out);
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            acc += batchRound(expr, batch, out);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        return elapsed;
+    }
+
+    private static float batchRound(IMolangExpression expr, ParticleBatch batch, float[] out) {
+        for (MolangContext ctx : batch.contexts()) {
+            ctx.clearSharedCache();
+        }
+        // 运行时每个组件都会重新收集变量列，这里同样计入收集开销
+        batch.invalidate();
+        expr.evalBatch(batch, out, 0, CONTEXTS);
+        float acc = 0;
+        for (int i = 0; i < CONTEXTS; i++) {
+            acc += out[i];
+        }
+        return acc;
+    }
+
+    private static float round(IMolangExpression expr, MolangContext[] contexts) {
+        float acc = 0;
+        for (MolangContext ctx : contexts) {
+            // 每个粒子每 tick 的公共子表达式缓存都是新的
+            ctx.clearSharedCache();
+            acc += expr.eval(ctx);
+        }
+        return acc;
+    }
+
+    private static double perEval(long nanos) {
+        return (double) nanos / ((long) MEASURE_ROUNDS * CONTEXTS);
+    }
+}
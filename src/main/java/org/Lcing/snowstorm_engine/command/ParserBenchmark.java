@@ -0,0 +1,173 @@
+package org.Lcing.snowstorm_engine.command;
+
+import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.loader.ParticleLoader;
+import org.Lcing.snowstorm_engine.molang.MolangCallSite;
+import org.Lcing.snowstorm_engine.molang.MolangParseCache;
+import org.Lcing.snowstorm_engine.molang.MolangParseException;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.runtime.ParticleEffectTemplate;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Molang 解析基准测试 (/snowstorm bench parser)。
+ * 语料为模组内置粒子中的表达式，加上按固定种子生成的表达式和脚本，共 {@link #CORPUS_SIZE} 条，
+ * 模拟资源包重新加载 (F3+T) 时的解析负载。分别测量关闭解析缓存、缓存为空和缓存已命中三种情况。
+ */
+public class ParserBenchmark {
+
+    private static final String[] BUNDLED = {
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re.particle.json",
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re2.particle.json",
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test2-re2.particle.json",
+            "/assets/snowstorm_engine/snowstorm_engine/particles/lizi1.particle.json"
+    };
+
+    private static final int CORPUS_SIZE = 10_000;
+    // 每个变量表 (模拟一个粒子定义) 解析的表达式数量
+    private static final int PER_DEFINITION = 50;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static final String[] VARIABLES = { "variable.particle_age", "variable.particle_lifetime",
+            "variable.particle_random_1", "variable.particle_random_2", "variable.emitter_age", "v.size", "v.speed",
+            "variable.emitter_random_1", "q.anim_time", "t.x" };
+    private static final String[] UNARY_FUNCTIONS = { "math.sin", "math.cos", "math.abs", "math.sqrt",
+            "math.floor" };
+    private static final String[] BINARY_FUNCTIONS = { "math.random", "math.pow", "math.min", "math.max",
+            "math.mod" };
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "+", "*", "<", ">=", "==", "&&", "||", "??" };
+
+    // 防止 JIT 消除解析结果
+    private static int sink;
+
+    public static List<String> run() {
+        List<String> report = new ArrayList<>();
+        List<String> corpus = new ArrayList<>();
+        for (String path : BUNDLED) {
+            collectBundled(path, corpus);
+        }
+        int bundled = corpus.size();
+        Random random = new Random(42);
+        while (corpus.size() < CORPUS_SIZE) {
+            corpus.add(random.nextInt(8) == 0 ? script(random) : expression(random, 4));
+        }
+        long chars = 0;
+        for (String source : corpus) {
+            chars += source.length();
+        }
+        report.add(String.format("Corpus: %d expressions (%d bundled, %d generated), %.1f chars on average",
+                corpus.size(), bundled, corpus.size() - bundled, (double) chars / corpus.size()));
+
+        boolean cacheEnabled = MolangParseCache.isEnabled();
+        try {
+            MolangParseCache.setEnabled(false);
+            int errors = parseAll(corpus);
+            long uncached = measure(corpus, false);
+            report.add(line("Parse + optimize (no cache)", uncached, corpus.size()));
+
+            MolangParseCache.setEnabled(true);
+            long cold = measure(corpus, true);
+            report.add(line("Parse + optimize + intern (cold cache)", cold, corpus.size()));
+            long warm = measure(corpus, false);
+            report.add(line("Cache hits (warm cache)", warm, corpus.size()));
+            report.add(errors == 0 ? "No syntax errors" : errors + " expressions rejected with syntax errors");
+        } finally {
+            MolangParseCache.clear();
+            MolangParseCache.setEnabled(cacheEnabled);
+        }
+        return report;
+    }
+
+    private static String line(String label, long nanos, int count) {
+        double perExpression = (double) nanos / ((long) MEASURE_ROUNDS * count);
+        return String.format("%s: %.2f ms per reload, %.0f ns per expression", label, nanos / 1e6 / MEASURE_ROUNDS,
+                perExpression);
+    }
+
+    /**
+     * 返回 MEASURE_ROUNDS 次解析整个语料的总耗时 (纳秒)。clearCache 为 true 时每轮之前清空解析缓存。
+     */
+    private static long measure(List<String> corpus, boolean clearCache) {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            if (clearCache) {
+                MolangParseCache.clear();
+            }
+            parseAll(corpus);
+        }
+        long total = 0;
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            if (clearCache) {
+                MolangParseCache.clear();
+            }
+            long start = System.nanoTime();
+            parseAll(corpus);
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    /**
+     * 解析整个语料，返回语法错误的数量。
+     */
+    private static int parseAll(List<String> corpus) {
+        int errors = 0;
+        MolangParser parser = null;
+        for (int i = 0; i < corpus.size(); i++) {
+            if (i % PER_DEFINITION == 0) {
+                parser = new MolangParser(new MolangVariableSchema());
+            }
+            try {
+                sink += parser.parse(corpus.get(i)).hashCode();
+            } catch (MolangParseException e) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    private static void collectBundled(String path, List<String> corpus) {
+        try (InputStream is = ParserBenchmark.class.getResourceAsStream(path)) {
+            if (is == null)
+                return;
+            ParticleDefinition def = ParticleLoader.load(is);
+            for (MolangCallSite site : ParticleEffectTemplate.compile(def).getCallSites()) {
+                corpus.add(site.getSource());
+            }
+        } catch (Exception e) {
+            // 缺少的内置粒子不计入语料
+        }
+    }
+
+    private static String expression(Random random, int depth) {
+        if (depth <= 0 || random.nextInt(5) == 0) {
+            return switch (random.nextInt(3)) {
+                case 0 -> Integer.toString(random.nextInt(100));
+                case 1 -> String.format("%.3f", random.nextFloat() * 10);
+                default -> VARIABLES[random.nextInt(VARIABLES.length)];
+            };
+        }
+        return switch (random.nextInt(8)) {
+            case 0 -> "(" + expression(random, depth - 1) + ")";
+            case 1 -> (random.nextBoolean() ? "-" : "!") + expression(random, depth - 1);
+            case 2 -> UNARY_FUNCTIONS[random.nextInt(UNARY_FUNCTIONS.length)] + "(" + expression(random, depth - 1)
+                    + ")";
+            case 3 -> BINARY_FUNCTIONS[random.nextInt(BINARY_FUNCTIONS.length)] + "("
+                    + expression(random, depth - 1) + ", " + expression(random, depth - 1) + ")";
+            case 4 -> expression(random, depth - 1) + " ? " + expression(random, depth - 1) + " : "
+                    + expression(random, depth - 1);
+            default -> expression(random, depth - 1) + " " + OPERATORS[random.nextInt(OPERATORS.length)] + " "
+                    + expression(random, depth - 1);
+        };
+    }
+
+    private static String script(Random random) {
+        return "t.x = " + expression(random, 3) + "; v.size = t.x * " + expression(random, 2) + "; return v.size + "
+                + expression(random, 2) + ";";
+    }
+}
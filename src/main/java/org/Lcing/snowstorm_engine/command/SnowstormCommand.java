@@ -1,30 +1,68 @@
 package org.Lcing.snowstorm_engine.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.network.chat.TextComponent;
+import org.Lcing.snowstorm_engine.molang.MolangCompiler;
+import org.Lcing.snowstorm_engine.molang.MolangProfiler;
+import org.Lcing.snowstorm_engine.molang.MolangTiering;
 import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
 import org.Lcing.snowstorm_engine.runtime.SnowstormManager;
 
 import org.Lcing.snowstorm_engine.network.SpawnEmitterPacket;
 
 public class SnowstormCommand {
+    private static final org.slf4j.Logger LOGGER = com.mojang.logging.LogUtils.getLogger();
+
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
         dispatcher.register(Commands.literal("snowstorm")
                 .then(Commands.literal("spawn")
                         // /snowstorm spawn (默认配置)
-                        .executes(ctx -> spawnEmitter(ctx, "test1-re.particle.json"))
+                        .executes(ctx -> spawnEmitter(ctx, "test1-re.particle.json", null))
                         // /snowstorm spawn <文件名>
                         .then(Commands.argument("file", StringArgumentType.string())
-                                .executes(ctx -> spawnEmitter(ctx, StringArgumentType.getString(ctx, "file")))))
+                                .executes(ctx -> spawnEmitter(ctx, StringArgumentType.getString(ctx, "file"), null))
+                                // /snowstorm spawn <文件名> <种子>
+                                .then(Commands.argument("seed", LongArgumentType.longArg())
+                                        .executes(ctx -> spawnEmitter(ctx, StringArgumentType.getString(ctx, "file"),
+                                                LongArgumentType.getLong(ctx, "seed"))))))
                 .then(Commands.literal("clear")
-                        .executes(SnowstormCommand::clearEmitters)));
+                        .executes(SnowstormCommand::clearEmitters))
+                .then(Commands.literal("bench")
+                        // /snowstorm bench molang
+                        .then(Commands.literal("molang")
+                                .executes(SnowstormCommand::benchMolang))
+                        // /snowstorm bench math
+                        .then(Commands.literal("math")
+                                .executes(SnowstormCommand::benchMath))
+                        // /snowstorm bench parser
+                        .then(Commands.literal("parser")
+                                .executes(SnowstormCommand::benchParser)))
+                .then(Commands.literal("profile")
+                        .then(Commands.literal("molang")
+                                // /snowstorm profile molang [数量]
+                                .executes(ctx -> dumpMolangProfile(ctx, 10))
+                                .then(Commands.argument("count", IntegerArgumentType.integer(1, 100))
+                                        .executes(ctx -> dumpMolangProfile(ctx,
+                                                IntegerArgumentType.getInteger(ctx, "count"))))
+                                // /snowstorm profile molang start|stop|reset
+                                .then(Commands.literal("start")
+                                        .executes(ctx -> setMolangProfiling(ctx, true)))
+                                .then(Commands.literal("stop")
+                                        .executes(ctx -> setMolangProfiling(ctx, false)))
+                                .then(Commands.literal("reset")
+                                        .executes(SnowstormCommand::resetMolangProfile)))
+                        // /snowstorm profile tiering
+                        .then(Commands.literal("tiering")
+                                .executes(SnowstormCommand::dumpTiering))));
     }
 
-    private static int spawnEmitter(CommandContext<CommandSourceStack> context, String identifier) {
+    private static int spawnEmitter(CommandContext<CommandSourceStack> context, String identifier, Long seed) {
         try {
             CommandSourceStack source = context.getSource();
 
@@ -40,13 +78,15 @@ public class SnowstormCommand {
             double y = pos.y + 1.5;
             double z = pos.z;
 
-            SpawnEmitterPacket packet = new SpawnEmitterPacket(identifier, x, y, z);
+            // 未指定种子时也由服务端生成一个，保证所有客户端看到相同的效果
+            long s = seed != null ? seed : org.Lcing.snowstorm_engine.molang.MolangRandom.newSeed();
+            SpawnEmitterPacket packet = new SpawnEmitterPacket(identifier, x, y, z, s);
             org.Lcing.snowstorm_engine.network.PacketHandler.INSTANCE.send(
                     net.minecraftforge.network.PacketDistributor.ALL.noArg(),
                     packet);
 
             source.sendSuccess(new TextComponent(
-                    "[Snowstorm] Broadcasted spawn packet for '" + identifier + "'"),
+                    "[Snowstorm] Broadcasted spawn packet for '" + identifier + "' (seed " + s + ")"),
                     true);
             return 1;
         } catch (Exception e) {
@@ -56,6 +96,71 @@ public class SnowstormCommand {
         }
     }
 
+    private static int benchMolang(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        source.sendSuccess(new TextComponent("[Snowstorm] Running Molang benchmark..."), false);
+        for (String line : MolangBenchmark.run()) {
+            source.sendSuccess(new TextComponent(line), false);
+            LOGGER.info("[Snowstorm] {}", line);
+        }
+        return 1;
+    }
+
+    private static int benchMath(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        source.sendSuccess(new TextComponent("[Snowstorm] Running math benchmark..."), false);
+        for (String line : MathBenchmark.run()) {
+            source.sendSuccess(new TextComponent(line), false);
+            LOGGER.info("[Snowstorm] {}", line);
+        }
+        return 1;
+    }
+
+    private static int benchParser(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        source.sendSuccess(new TextComponent("[Snowstorm] Running parser benchmark..."), false);
+        for (String line : ParserBenchmark.run()) {
+            source.sendSuccess(new TextComponent(line), false);
+            LOGGER.info("[Snowstorm] {}", line);
+        }
+        return 1;
+    }
+
+    private static int dumpMolangProfile(CommandContext<CommandSourceStack> context, int count) {
+        CommandSourceStack source = context.getSource();
+        for (String line : MolangProfiler.report(count)) {
+            source.sendSuccess(new TextComponent(line), false);
+            LOGGER.info("[Snowstorm] {}", line);
+        }
+        return 1;
+    }
+
+    private static int setMolangProfiling(CommandContext<CommandSourceStack> context, boolean enabled) {
+        // 包装在模板编译时安装 (或不安装)，因此需要重新编译模板；新创建的发射器才会使用新模板
+        MolangProfiler.setEnabled(enabled);
+        int count = SnowstormManager.getInstance().recompileTemplates();
+        context.getSource().sendSuccess(new TextComponent("[Snowstorm] Molang profiling "
+                + (enabled ? "enabled" : "disabled") + ", recompiled " + count + " particle templates"), true);
+        return 1;
+    }
+
+    private static int dumpTiering(CommandContext<CommandSourceStack> context) {
+        String line = String.format(
+                "Molang tiering: threshold %d, %d tiered, %d queued, %d promoted, %.2f ms compiling (%d failed, %d mismatched)",
+                MolangTiering.getThreshold(), MolangTiering.getTieredCount(), MolangTiering.getQueuedCount(),
+                MolangTiering.getPromotedCount(), MolangTiering.getCompileNanos() / 1e6,
+                MolangCompiler.getFailedCount(), MolangCompiler.getMismatchCount());
+        context.getSource().sendSuccess(new TextComponent(line), false);
+        LOGGER.info("[Snowstorm] {}", line);
+        return 1;
+    }
+
+    private static int resetMolangProfile(CommandContext<CommandSourceStack> context) {
+        MolangProfiler.reset();
+        context.getSource().sendSuccess(new TextComponent("[Snowstorm] Molang profile reset"), true);
+        return 1;
+    }
+
     private static int clearEmitters(CommandContext<CommandSourceStack> context) {
         SnowstormManager.getInstance().clear();
         context.getSource().sendSuccess(new TextComponent("[Snowstorm] Cleared all emitters"), true);
@@ -68,10 +68,18 @@ public class ParticleDefinition {
         @SerializedName("basic_render_parameters")
         private BasicRenderParameters renderParameters;
 
+        // 扩展字段：按归一化年龄预计算的查找表分辨率 (0 表示不使用查找表)
+        @SerializedName("snowstorm_engine:lut_resolution")
+        private Integer lutResolution;
+
         public String getIdentifier() {
             return identifier;
         }
 
+        public Integer getLutResolution() {
+            return lutResolution;
+        }
+
         public BasicRenderParameters getRenderParameters() {
             return renderParameters;
         }
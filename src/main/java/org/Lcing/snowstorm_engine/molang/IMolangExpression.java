@@ -6,19 +6,62 @@ package org.Lcing.snowstorm_engine.molang;
  */
 public interface IMolangExpression {
 
+    IMolangExpression[] NO_CHILDREN = new IMolangExpression[0];
+
     /**
      * Evaluates the expression in the given context.
-     * 
+     *
      * @param context The current execution context (contains variables, time, etc.)
      * @return The result as a float
      */
     float eval(MolangContext context);
 
+    /**
+     * Evaluates the expression for every context of the batch in [from, to), writing out[i] for context i.
+     * The default evaluates each context separately; arithmetic nodes override this to work column by column.
+     */
+    default void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+        MolangContext[] contexts = batch.contexts();
+        for (int i = from; i < to; i++) {
+            out[i] = eval(contexts[i]);
+        }
+    }
+
+    /**
+     * Whether this expression always evaluates to the same value.
+     * Callers may evaluate a constant expression once (with any context) and cache the result.
+     */
+    default boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Whether the result depends only on the children and the context,
+     * i.e. evaluating it has no side effects and is not random.
+     */
+    default boolean isPure() {
+        return true;
+    }
+
+    /**
+     * Direct sub-expressions, in evaluation order. Leaves return {@link #NO_CHILDREN}.
+     */
+    default IMolangExpression[] children() {
+        return NO_CHILDREN;
+    }
+
+    /**
+     * Returns a copy of this node with the given children (same length and order as {@link #children()}).
+     */
+    default IMolangExpression withChildren(IMolangExpression[] children) {
+        return this;
+    }
+
     /**
      * Helper to create a static constant expression.
      */
     static IMolangExpression constant(float value) {
-        return context -> value;
+        return new MolangExpressions.Constant(value);
     }
 
     /**
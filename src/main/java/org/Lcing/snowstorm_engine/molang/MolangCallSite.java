@@ -0,0 +1,113 @@
+package org.Lcing.snowstorm_engine.molang;
+
+/**
+ * 表达式调用点。
+ * 组件持有的是调用点而不是表达式树本身，这样编译期之后的优化 (如编译为字节码) 可以直接替换目标，
+ * 而组件无需感知。目标字段是 volatile 的，可以在其他线程中安全替换。
+ */
+public class MolangCallSite implements IMolangExpression {
+    private static final java.lang.invoke.VarHandle TARGET;
+
+    static {
+        try {
+            TARGET = java.lang.invoke.MethodHandles.lookup().findVarHandle(MolangCallSite.class, "target",
+                    IMolangExpression.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String source;
+    private IMolangExpression tree;
+    private volatile IMolangExpression target;
+    // 批量求值的专用目标 (例如向量化实现)，为 null 时使用 target
+    private volatile IMolangExpression batchTarget;
+    private MolangFrequency frequency = MolangFrequency.PARTICLE_TICK;
+
+    public MolangCallSite(String source, IMolangExpression tree) {
+        this.source = source;
+        this.tree = tree;
+        this.target = tree;
+        this.batchTarget = null;
+    }
+
+    @Override
+    public float eval(MolangContext context) {
+        return target.eval(context);
+    }
+
+    @Override
+    public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+        IMolangExpression b = batchTarget;
+        (b != null ? b : target).evalBatch(batch, out, from, to);
+    }
+
+    @Override
+    public boolean isConstant() {
+        return tree.isConstant();
+    }
+
+    @Override
+    public boolean isPure() {
+        return MolangOptimizer.isPureTree(tree);
+    }
+
+    /**
+     * 原始 Molang 源码。
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 解析并优化后的表达式树 (始终是解释器可执行的形式)。
+     */
+    public IMolangExpression getTree() {
+        return tree;
+    }
+
+    /**
+     * 替换表达式树 (例如公共子表达式消除之后)，目标同时重置为新树。
+     */
+    public void setTree(IMolangExpression tree) {
+        this.tree = tree;
+        this.target = tree;
+    }
+
+    public IMolangExpression getTarget() {
+        return target;
+    }
+
+    public void setTarget(IMolangExpression target) {
+        this.target = target;
+    }
+
+    /**
+     * 仅当当前目标是 expected 时替换为 target (原子操作)，用于后台线程替换目标而不覆盖期间的其他修改。
+     */
+    public boolean replaceTarget(IMolangExpression expected, IMolangExpression target) {
+        return TARGET.compareAndSet(this, expected, target);
+    }
+
+    public IMolangExpression getBatchTarget() {
+        return batchTarget;
+    }
+
+    /**
+     * 设置只用于 {@link #evalBatch} 的目标，传入 null 恢复为使用 {@link #getTarget()}。
+     */
+    public void setBatchTarget(IMolangExpression batchTarget) {
+        this.batchTarget = batchTarget;
+    }
+
+    /**
+     * 运行时实际使用的求值频率 (见 {@link MolangFrequency})。
+     */
+    public MolangFrequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(MolangFrequency frequency) {
+        this.frequency = frequency;
+    }
+}
@@ -0,0 +1,562 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Molang 字节码编译器。
+ * 将表达式树编译为一个实现 {@link IMolangExpression} 的隐藏类 (Lookup.defineHiddenClass)：
+ * eval 方法是直线型的 float 运算，变量读取直接访问上下文的槽位数组，没有逐节点的虚调用。
+ * 无法编译的节点 (随机函数等) 保留为树节点，由生成的代码回调。
+ * 条件表达式、逻辑运算和 ?? 编译为条件跳转，与解释器一样只执行被选中的分支。
+ * 编译结果会与解释器在随机输入上做差分校验，不一致时退回解释器。
+ */
+public final class MolangCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String CLASS_NAME = "org/Lcing/snowstorm_engine/molang/CompiledMolangExpression";
+    private static final String BASE = Type.getInternalName(Compiled.class);
+    private static final String EXPR = Type.getInternalName(IMolangExpression.class);
+    private static final String CTX = Type.getInternalName(MolangContext.class);
+    private static final String EVAL_DESC = "(L" + CTX + ";)F";
+    private static final String CTOR_DESC = "(L" + EXPR + ";[L" + EXPR + ";)V";
+
+    // 差分校验使用的随机输入组数
+    private static final int VERIFY_SAMPLES = 16;
+
+    private static volatile boolean enabled = true;
+
+    private static final AtomicInteger compiledCount = new AtomicInteger();
+    private static final AtomicInteger failedCount = new AtomicInteger();
+    private static final AtomicInteger mismatchCount = new AtomicInteger();
+
+    private MolangCompiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static int getCompiledCount() {
+        return compiledCount.get();
+    }
+
+    public static int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public static int getMismatchCount() {
+        return mismatchCount.get();
+    }
+
+    /**
+     * 记录一次在编译器之外发生的编译失败 (例如后台编译线程中的异常)。
+     */
+    static void countFailure() {
+        failedCount.incrementAndGet();
+    }
+
+    public static void resetStats() {
+        compiledCount.set(0);
+        failedCount.set(0);
+        mismatchCount.set(0);
+    }
+
+    /**
+     * 编译调用点的表达式树并替换其目标。常量和编译失败的表达式保持不变。
+     */
+    public static void compile(MolangCallSite site, MolangVariableSchema schema) {
+        if (!enabled || site.isConstant())
+            return;
+        site.setTarget(compile(site.getTree(), schema));
+    }
+
+    /**
+     * 编译表达式树。失败或差分校验不通过时返回原表达式。
+     */
+    public static IMolangExpression compile(IMolangExpression tree, MolangVariableSchema schema) {
+        return compile(tree, schema, true);
+    }
+
+    /**
+     * 编译表达式树。
+     *
+     * @param runImpure 差分校验是否执行不纯的表达式 (查询、随机函数、第三方函数)。这些节点可能读取游戏状态，
+     *                  只能在游戏线程中执行；为 false 时不纯的表达式跳过校验 (它们的结果本来就不做比较)
+     */
+    static IMolangExpression compile(IMolangExpression tree, MolangVariableSchema schema, boolean runImpure) {
+        IMolangExpression compiled;
+        try {
+            compiled = define(tree);
+        } catch (Throwable t) {
+            // 例如运行环境中缺少 ASM，或生成了非法字节码
+            failedCount.incrementAndGet();
+            return tree;
+        }
+
+        if ((runImpure || MolangOptimizer.isPureTree(tree)) && !verify(tree, compiled, schema)) {
+            mismatchCount.incrementAndGet();
+            return tree;
+        }
+        compiledCount.incrementAndGet();
+        return compiled;
+    }
+
+    /**
+     * 差分校验：用相同的随机变量值分别运行解释器和编译结果，要求结果逐位相同。
+     * 含随机函数的表达式只检查能否正常执行。
+     */
+    public static boolean verify(IMolangExpression tree, IMolangExpression compiled, MolangVariableSchema schema) {
+        boolean pure = MolangOptimizer.isPureTree(tree);
+        Random rng = new Random(0x5EED);
+        MolangContext ctx = new MolangContext(schema);
+        for (int n = 0; n < VERIFY_SAMPLES; n++) {
+            for (int s = 0; s < schema.size(); s++) {
+                // 混合特殊值与普通值，覆盖除零和符号分支
+                ctx.set(s, n == 0 ? 0.0f : (rng.nextFloat() - 0.5f) * 200.0f);
+            }
+            ctx.clearSharedCache();
+            float expected = tree.eval(ctx);
+            ctx.clearSharedCache();
+            float actual = compiled.eval(ctx);
+            if (pure && Float.floatToIntBits(expected) != Float.floatToIntBits(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IMolangExpression define(IMolangExpression tree) throws Throwable {
+        Emitter emitter = new Emitter();
+        byte[] bytes = emitter.generate(tree);
+        Class<?> cls = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+        return (IMolangExpression) cls
+                .getConstructor(IMolangExpression.class, IMolangExpression[].class)
+                .newInstance(tree, emitter.fallbacks.toArray(new IMolangExpression[0]));
+    }
+
+    /**
+     * 生成类的基类。保留原始树，以便分析代码仍然可以检查表达式结构。
+     */
+    public abstract static class Compiled implements IMolangExpression {
+        protected final IMolangExpression source;
+
+        protected Compiled(IMolangExpression source) {
+            this.source = source;
+        }
+
+        public IMolangExpression getSource() {
+            return source;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return source.isConstant();
+        }
+
+        @Override
+        public boolean isPure() {
+            return MolangOptimizer.isPureTree(source);
+        }
+
+        /**
+         * 批量求值交给原表达式树的按列实现 (每个节点对整批粒子执行一次)。逐粒子调用编译后的 eval 比按列求值慢，
+         * 分层执行提升的又正是最常求值的表达式，因此编译结果只用于单个求值。
+         */
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            source.evalBatch(batch, out, from, to);
+        }
+    }
+
+    /**
+     * 字节码生成器。局部变量 0 = this，1 = 上下文，之后按需分配 float 临时变量。
+     */
+    private static class Emitter {
+        final List<IMolangExpression> fallbacks = new ArrayList<>();
+        private MethodVisitor mv;
+        private int nextLocal = 2;
+
+        byte[] generate(IMolangExpression tree) {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, BASE,
+                    null);
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "fallbacks", "[L" + EXPR + ";", null, null)
+                    .visitEnd();
+
+            // 构造器: (source, fallbacks)
+            MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CTOR_DESC, null, null);
+            init.visitCode();
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitVarInsn(Opcodes.ALOAD, 1);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE, "<init>", "(L" + EXPR + ";)V", false);
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitVarInsn(Opcodes.ALOAD, 2);
+            init.visitFieldInsn(Opcodes.PUTFIELD, CLASS_NAME, "fallbacks", "[L" + EXPR + ";");
+            init.visitInsn(Opcodes.RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "eval", EVAL_DESC, null, null);
+            mv.visitCode();
+            emit(tree);
+            mv.visitInsn(Opcodes.FRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private int newLocal() {
+            return nextLocal++;
+        }
+
+        /**
+         * 依次计算子节点并存入新的局部变量，保持与解释器相同的求值顺序。
+         */
+        private int[] emitToLocals(IMolangExpression[] children) {
+            int[] locals = new int[children.length];
+            for (int i = 0; i < children.length; i++) {
+                emit(children[i]);
+                locals[i] = newLocal();
+                mv.visitVarInsn(Opcodes.FSTORE, locals[i]);
+            }
+            return locals;
+        }
+
+        private void load(int local) {
+            mv.visitVarInsn(Opcodes.FLOAD, local);
+        }
+
+        private void emit(IMolangExpression node) {
+            if (node instanceof Constant c) {
+                mv.visitLdcInsn(c.getValue());
+            } else if (node instanceof Variable v) {
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                if (node instanceof EmitterVariable) {
+                    mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "emitter", "L" + CTX + ";");
+                }
+                mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "slots", "[F");
+                mv.visitLdcInsn(v.getSlot());
+                mv.visitInsn(Opcodes.FALOAD);
+            } else if (node instanceof Shared shared) {
+                emitShared(shared);
+            } else if (node instanceof UnaryMinus) {
+                emit(node.children()[0]);
+                mv.visitInsn(Opcodes.FNEG);
+            } else if (node instanceof BinaryOp op) {
+                emitBinary(op);
+            } else if (node instanceof Comparison cmp) {
+                emitComparison(cmp);
+            } else if (node instanceof Conditional) {
+                emitConditional(node.children());
+            } else if (node instanceof NullCoalesce) {
+                emitNullCoalesce(node.children());
+            } else if (node instanceof Assign assign) {
+                emitAssign(assign);
+            } else if (node instanceof Script script) {
+                emitScript(script);
+            } else if (node instanceof MathSin || node instanceof MathCos) {
+                // 经由 MolangMath，使编译结果与解释器在两种精度模式下都一致
+                emit(node.children()[0]);
+                invokeMolangMath(node instanceof MathSin ? "sinDeg" : "cosDeg", "(F)F");
+            } else if (node instanceof MathAbs) {
+                emit(node.children()[0]);
+                invokeMath("abs", "(F)F");
+            } else if (node instanceof MathFloor || node instanceof MathCeil || node instanceof MathSqrt) {
+                emit(node.children()[0]);
+                mv.visitInsn(Opcodes.F2D);
+                invokeMath(node instanceof MathFloor ? "floor" : node instanceof MathCeil ? "ceil" : "sqrt", "(D)D");
+                mv.visitInsn(Opcodes.D2F);
+            } else if (node instanceof MathPow || node instanceof MathAtan2) {
+                IMolangExpression[] c = node.children();
+                emit(c[0]);
+                emit(c[1]);
+                invokeMolangMath(node instanceof MathPow ? "pow" : "atan2", "(FF)F");
+            } else if (node instanceof MathMin || node instanceof MathMax) {
+                IMolangExpression[] c = node.children();
+                emit(c[0]);
+                emit(c[1]);
+                invokeMath(node instanceof MathMin ? "min" : "max", "(FF)F");
+            } else if (node instanceof MathClamp) {
+                // Math.max(min, Math.min(v, max))
+                int[] l = emitToLocals(node.children());
+                load(l[1]);
+                load(l[0]);
+                load(l[2]);
+                invokeMath("min", "(FF)F");
+                invokeMath("max", "(FF)F");
+            } else if (node instanceof MathLerp) {
+                // a + (b - a) * t
+                int[] l = emitToLocals(node.children());
+                load(l[0]);
+                load(l[1]);
+                load(l[0]);
+                mv.visitInsn(Opcodes.FSUB);
+                load(l[2]);
+                mv.visitInsn(Opcodes.FMUL);
+                mv.visitInsn(Opcodes.FADD);
+            } else if (node instanceof MathMod) {
+                int[] l = emitToLocals(node.children());
+                emitZeroGuard(l[1], () -> {
+                    load(l[0]);
+                    load(l[1]);
+                    mv.visitInsn(Opcodes.FREM);
+                });
+            } else if (node instanceof MathHermiteBlend) {
+                // t * t * (3 - 2 * t)
+                int[] l = emitToLocals(node.children());
+                load(l[0]);
+                load(l[0]);
+                mv.visitInsn(Opcodes.FMUL);
+                mv.visitLdcInsn(3.0f);
+                mv.visitLdcInsn(2.0f);
+                load(l[0]);
+                mv.visitInsn(Opcodes.FMUL);
+                mv.visitInsn(Opcodes.FSUB);
+                mv.visitInsn(Opcodes.FMUL);
+            } else {
+                emitFallback(node);
+            }
+        }
+
+        private void emitBinary(BinaryOp op) {
+            IMolangExpression[] c = op.children();
+            switch (op.getType()) {
+                case ADD, SUBTRACT, MULTIPLY -> {
+                    emit(c[0]);
+                    emit(c[1]);
+                    mv.visitInsn(switch (op.getType()) {
+                        case ADD -> Opcodes.FADD;
+                        case SUBTRACT -> Opcodes.FSUB;
+                        default -> Opcodes.FMUL;
+                    });
+                }
+                case DIVIDE -> {
+                    int[] l = emitToLocals(c);
+                    emitZeroGuard(l[1], () -> {
+                        load(l[0]);
+                        load(l[1]);
+                        mv.visitInsn(Opcodes.FDIV);
+                    });
+                }
+                default -> mv.visitInsn(Opcodes.FCONST_0);
+            }
+        }
+
+        /**
+         * left OP right ? 1 : 0。含 NaN 时的结果与 Java 比较相同 (只有 != 成立)：
+         * < 和 <= 使用 FCMPG (NaN 得 1)，> 和 >= 使用 FCMPL (NaN 得 -1)。
+         */
+        private void emitComparison(Comparison cmp) {
+            IMolangExpression[] c = cmp.children();
+            emit(c[0]);
+            emit(c[1]);
+            int compare;
+            int jumpIfFalse;
+            switch (cmp.getType()) {
+                case LESS -> {
+                    compare = Opcodes.FCMPG;
+                    jumpIfFalse = Opcodes.IFGE;
+                }
+                case LESS_EQUAL -> {
+                    compare = Opcodes.FCMPG;
+                    jumpIfFalse = Opcodes.IFGT;
+                }
+                case GREATER -> {
+                    compare = Opcodes.FCMPL;
+                    jumpIfFalse = Opcodes.IFLE;
+                }
+                case GREATER_EQUAL -> {
+                    compare = Opcodes.FCMPL;
+                    jumpIfFalse = Opcodes.IFLT;
+                }
+                case EQUAL -> {
+                    compare = Opcodes.FCMPL;
+                    jumpIfFalse = Opcodes.IFNE;
+                }
+                default -> {
+                    compare = Opcodes.FCMPL;
+                    jumpIfFalse = Opcodes.IFEQ;
+                }
+            }
+            Label isFalse = new Label();
+            Label end = new Label();
+            mv.visitInsn(compare);
+            mv.visitJumpInsn(jumpIfFalse, isFalse);
+            mv.visitInsn(Opcodes.FCONST_1);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(isFalse);
+            mv.visitInsn(Opcodes.FCONST_0);
+            mv.visitLabel(end);
+        }
+
+        /**
+         * cond != 0 ? a : b，只计算被选中的分支 (NaN 视为真，与解释器一致)。
+         */
+        private void emitConditional(IMolangExpression[] c) {
+            Label whenFalse = new Label();
+            Label end = new Label();
+            emit(c[0]);
+            mv.visitInsn(Opcodes.FCONST_0);
+            mv.visitInsn(Opcodes.FCMPL);
+            mv.visitJumpInsn(Opcodes.IFEQ, whenFalse);
+            emit(c[1]);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(whenFalse);
+            emit(c[2]);
+            mv.visitLabel(end);
+        }
+
+        /**
+         * v != v (NaN) ? fallback : v
+         */
+        private void emitNullCoalesce(IMolangExpression[] c) {
+            Label hasValue = new Label();
+            Label end = new Label();
+            emit(c[0]);
+            int value = newLocal();
+            mv.visitVarInsn(Opcodes.FSTORE, value);
+            load(value);
+            load(value);
+            mv.visitInsn(Opcodes.FCMPL);
+            mv.visitJumpInsn(Opcodes.IFEQ, hasValue);
+            emit(c[1]);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(hasValue);
+            load(value);
+            mv.visitLabel(end);
+        }
+
+        /**
+         * (emitter ? ctx.emitter : ctx).slots[slot] = value，结果为 value
+         */
+        private void emitAssign(Assign assign) {
+            emit(assign.children()[0]);
+            int value = newLocal();
+            mv.visitVarInsn(Opcodes.FSTORE, value);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            if (assign.isEmitter()) {
+                mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "emitter", "L" + CTX + ";");
+            }
+            mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "slots", "[F");
+            mv.visitLdcInsn(assign.getSlot());
+            load(value);
+            mv.visitInsn(Opcodes.FASTORE);
+            load(value);
+        }
+
+        /**
+         * 清零 temp 槽位，依次执行语句 (丢弃结果)，最后计算返回值。
+         */
+        private void emitScript(Script script) {
+            for (int slot : script.getTempSlots()) {
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "slots", "[F");
+                mv.visitLdcInsn(slot);
+                mv.visitInsn(Opcodes.FCONST_0);
+                mv.visitInsn(Opcodes.FASTORE);
+            }
+            IMolangExpression[] c = script.children();
+            for (int i = 0; i < c.length - 1; i++) {
+                emit(c[i]);
+                mv.visitInsn(Opcodes.POP);
+            }
+            emit(c[c.length - 1]);
+        }
+
+        /**
+         * (ctx.sharedMask & bit) != 0 ? ctx.slots[slot] : (ctx.slots[slot] = inner, 标记已计算)
+         */
+        private void emitShared(Shared shared) {
+            Label compute = new Label();
+            Label end = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "sharedMask", "J");
+            mv.visitLdcInsn(shared.getBit());
+            mv.visitInsn(Opcodes.LAND);
+            mv.visitInsn(Opcodes.LCONST_0);
+            mv.visitInsn(Opcodes.LCMP);
+            mv.visitJumpInsn(Opcodes.IFEQ, compute);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "slots", "[F");
+            mv.visitLdcInsn(shared.getSlot());
+            mv.visitInsn(Opcodes.FALOAD);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+
+            mv.visitLabel(compute);
+            emit(shared.children()[0]);
+            int value = newLocal();
+            mv.visitVarInsn(Opcodes.FSTORE, value);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "slots", "[F");
+            mv.visitLdcInsn(shared.getSlot());
+            load(value);
+            mv.visitInsn(Opcodes.FASTORE);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CTX, "sharedMask", "J");
+            mv.visitLdcInsn(shared.getBit());
+            mv.visitInsn(Opcodes.LOR);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, CTX, "sharedMask", "J");
+            load(value);
+            mv.visitLabel(end);
+        }
+
+        /**
+         * divisor == 0 ? 0 : body
+         */
+        private void emitZeroGuard(int divisor, Runnable body) {
+            Label nonZero = new Label();
+            Label end = new Label();
+            load(divisor);
+            mv.visitInsn(Opcodes.FCONST_0);
+            mv.visitInsn(Opcodes.FCMPL);
+            mv.visitJumpInsn(Opcodes.IFNE, nonZero);
+            mv.visitInsn(Opcodes.FCONST_0);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(nonZero);
+            body.run();
+            mv.visitLabel(end);
+        }
+
+        /**
+         * 无法直接编译的节点：this.fallbacks[k].eval(ctx)
+         */
+        private void emitFallback(IMolangExpression node) {
+            int index = fallbacks.size();
+            fallbacks.add(node);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, CLASS_NAME, "fallbacks", "[L" + EXPR + ";");
+            mv.visitLdcInsn(index);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXPR, "eval", EVAL_DESC, true);
+        }
+
+        private void invokeMath(String name, String desc) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", name, desc, false);
+        }
+
+        private void invokeMolangMath(String name, String desc) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, "org/Lcing/snowstorm_engine/molang/MolangMath", name, desc,
+                    false);
+        }
+    }
+}
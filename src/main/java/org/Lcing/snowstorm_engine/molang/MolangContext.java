@@ -1,37 +1,176 @@
 package org.Lcing.snowstorm_engine.molang;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.Arrays;
 
 /**
  * Molang 执行上下文。
- * 存储变量、随机种子，并提供环境查询。
+ * 变量按 {@link MolangVariableSchema} 分配的槽位存储在一个 float 数组中，读写不涉及装箱或哈希查找。
  */
 public class MolangContext {
-    private final Map<String, Float> variables = new HashMap<>();
-    private final Random random = new Random();
+    private final MolangVariableSchema schema;
+    final float[] slots;
+    // SplitMix64 随机流状态 (见 MolangRandom)
+    private long randomState;
+    // 拥有此上下文的对象 (通常是发射器)，只保存在发射器上下文中，供查询使用
+    private Object owner;
 
+    // 所属发射器的上下文 (发射器自身的上下文指向自己)，提升到发射器级的表达式结果存放在这里
+    final MolangContext emitter;
+    // 已缓存的粒子初始化级表达式 (每个表达式占一位)
+    long initMask;
+    // 本 tick 已计算的公共子表达式 (每个子表达式占一位)
+    long sharedMask;
+    // 函数和查询的参数数组，按 [调用嵌套深度][参数个数] 复用，求值时不分配
+    private float[][][] arguments = NO_ARGUMENTS;
+    private int callDepth;
+
+    private static final float[][][] NO_ARGUMENTS = new float[0][][];
+
+    /**
+     * 创建发射器上下文。变量表应已编译完成 (所有表达式都已解析)，之后分配的槽位不会出现在此上下文中。
+     */
+    public MolangContext(MolangVariableSchema schema) {
+        this.schema = schema;
+        this.slots = new float[schema.size()];
+        this.emitter = this;
+        this.randomState = MolangRandom.newSeed();
+    }
+
+    /**
+     * 创建属于指定发射器的粒子上下文。粒子的随机流从发射器的随机流派生。
+     * 粒子只为自己的变量分配槽位，发射器级变量通过发射器指针读取，不复制到每个粒子中。
+     */
+    public MolangContext(MolangVariableSchema schema, MolangContext emitter) {
+        this.schema = schema;
+        this.slots = new float[schema.particleSize()];
+        this.emitter = emitter;
+        this.randomState = MolangRandom.split(emitter);
+    }
+
+    public float get(int slot) {
+        return slots[slot];
+    }
+
+    public void set(int slot, float value) {
+        slots[slot] = value;
+    }
+
+    /**
+     * 按名称写入变量 (慢路径)。发射器级变量写入所属发射器的上下文。
+     * 没有任何表达式读取的变量不会有槽位，写入会被忽略。
+     */
     public void setVariable(String name, float value) {
-        variables.put(name, value);
+        int slot = schema.find(name);
+        float[] target = slotsFor(slot);
+        if (slot >= 0 && slot < target.length) {
+            target[slot] = value;
+        }
     }
 
+    /**
+     * 按名称读取变量 (慢路径)。发射器级变量从所属发射器的上下文读取，未知变量返回 0。
+     */
     public float getVariable(String name) {
-        return variables.getOrDefault(name, 0.0f);
+        int slot = schema.find(name);
+        float[] target = slotsFor(slot);
+        return slot >= 0 && slot < target.length ? target[slot] : 0.0f;
+    }
+
+    private float[] slotsFor(int slot) {
+        return slot >= 0 && slot < schema.size() && schema.scopeOf(slot) == MolangVariableSchema.Scope.EMITTER
+                ? emitter.slots
+                : slots;
     }
 
     /**
-     * 解析一个值。如果需要，处理标准变量和特殊查询。
+     * 丢弃已缓存的粒子初始化级表达式结果。
+     * 粒子初始化阶段组件仍可能修改寿命等变量，因此初始化结束后应调用一次。
      */
-    public float resolve(String name) {
-        // 特殊查询处理可以在这里进行
-        if (name.equals("math.random")) {
-            return random.nextFloat();
+    public void clearInitCache() {
+        initMask = 0;
+    }
+
+    /**
+     * 丢弃本 tick 已计算的公共子表达式结果。每个 tick 开始时 (变量更新之后) 调用。
+     */
+    public void clearSharedCache() {
+        sharedMask = 0;
+    }
+
+    /**
+     * 取得当前嵌套深度上指定长度的参数数组，并进入下一层。嵌套的调用 (参数中的函数) 使用更深一层的数组，
+     * 因此外层已求值的参数不会被覆盖。必须与 {@link #popArguments()} 成对调用。
+     */
+    float[] pushArguments(int count) {
+        int depth = callDepth++;
+        float[][][] buffers = arguments;
+        if (depth >= buffers.length) {
+            arguments = buffers = Arrays.copyOf(buffers, depth + 1);
+        }
+        float[][] byCount = buffers[depth];
+        if (byCount == null || count >= byCount.length) {
+            byCount = buffers[depth] = byCount == null ? new float[count + 1][] : Arrays.copyOf(byCount, count + 1);
         }
-        return getVariable(name);
+        float[] values = byCount[count];
+        if (values == null) {
+            values = byCount[count] = new float[count];
+        }
+        return values;
+    }
+
+    void popArguments() {
+        callDepth--;
+    }
+
+    public MolangContext getEmitterContext() {
+        return emitter;
     }
 
-    public Random getRandom() {
-        return random;
+    /**
+     * 拥有此上下文的对象 (例如 SnowstormEmitter)。粒子上下文返回其发射器的拥有者。
+     */
+    public Object getOwner() {
+        return emitter.owner;
+    }
+
+    public void setOwner(Object owner) {
+        emitter.owner = owner;
+    }
+
+    public MolangVariableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 重置随机流。发射器上下文设置种子后，之后创建的粒子随机流都由它决定。
+     */
+    public void setSeed(long seed) {
+        this.randomState = seed;
+    }
+
+    public long nextLong() {
+        randomState = MolangRandom.advance(randomState);
+        return MolangRandom.mix64(randomState);
+    }
+
+    /**
+     * [0, 1) 上均匀分布的 float。
+     */
+    public float nextFloat() {
+        return MolangRandom.toFloat(nextLong());
+    }
+
+    /**
+     * [0, 1) 上均匀分布的 double。
+     */
+    public double nextDouble() {
+        return MolangRandom.toDouble(nextLong());
+    }
+
+    /**
+     * [0, bound) 上均匀分布的整数 (bound 必须为正)。
+     */
+    public int nextInt(int bound) {
+        return MolangRandom.toInt(nextLong(), bound);
     }
 }
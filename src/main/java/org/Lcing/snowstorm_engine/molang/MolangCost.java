@@ -0,0 +1,80 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+/**
+ * Molang 表达式的静态代价估计。
+ * 代价单位约等于一次简单运算 (加法、变量读取)，按节点权重累加；条件表达式取较贵的分支，
+ * math.die_roll 按循环次数计算 (次数不是常量时按 {@link #UNKNOWN_LOOP_BOUND} 估计)。
+ * 结果是上界性质的估计，用于在加载时发现代价过高的定义，不代表实际耗时。
+ */
+public final class MolangCost {
+
+    // 循环次数不是常量时假定的次数
+    public static final int UNKNOWN_LOOP_BOUND = 64;
+
+    private MolangCost() {
+    }
+
+    /**
+     * 估计一次求值的代价。调用点按其表达式树估计 (忽略提升和缓存，由调用方按求值频率计算)。
+     */
+    public static float estimate(IMolangExpression node) {
+        if (node instanceof MolangCallSite site) {
+            return estimate(site.getTree());
+        }
+        if (node instanceof Constant) {
+            return 0;
+        }
+        if (node instanceof MolangLut) {
+            return MolangLut.LOOKUP_COST;
+        }
+        if (node instanceof Variable || node instanceof EmitterValue || node instanceof InitCached) {
+            return 1;
+        }
+        IMolangExpression[] c = node.children();
+        if (node instanceof Conditional) {
+            return 1 + estimate(c[0]) + Math.max(estimate(c[1]), estimate(c[2]));
+        }
+        if (node instanceof MathDieRoll) {
+            float perRoll = 5;
+            float bound = c[0].isConstant() ? Math.max(0, (int) c[0].eval(null)) : UNKNOWN_LOOP_BOUND;
+            return sum(c) + bound * perRoll;
+        }
+        if (node instanceof Script script) {
+            return script.getTempSlots().length + sum(c);
+        }
+        return weight(node) + sum(c);
+    }
+
+    private static float sum(IMolangExpression[] children) {
+        float total = 0;
+        for (IMolangExpression child : children) {
+            total += estimate(child);
+        }
+        return total;
+    }
+
+    private static float weight(IMolangExpression node) {
+        if (node instanceof BinaryOp op) {
+            return op.getType() == BinaryOp.OpType.DIVIDE ? 2 : 1;
+        }
+        if (node instanceof MathSin || node instanceof MathCos || node instanceof MathRandom)
+            return 4;
+        if (node instanceof MathPow || node instanceof MathAtan2)
+            return 8;
+        if (node instanceof MathSqrt || node instanceof MathClamp)
+            return 2;
+        if (node instanceof MathMod || node instanceof MathLerp || node instanceof MathHermiteBlend)
+            return 3;
+        if (node instanceof FunctionCall || node instanceof Query)
+            return 10;
+        if (node instanceof UnaryMinus || node instanceof Comparison || node instanceof NullCoalesce
+                || node instanceof Assign || node instanceof Shared || node instanceof MathAbs
+                || node instanceof MathFloor || node instanceof MathCeil || node instanceof MathMin
+                || node instanceof MathMax)
+            return 1;
+        // 其他模组注册的节点
+        return 5;
+    }
+}
@@ -0,0 +1,190 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.BinaryOp;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.Comparison;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.Constant;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.EmitterVariable;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.FunctionCall;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.Shared;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.Variable;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema.Scope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 粒子定义级的公共子表达式消除。
+ * 在一个定义的所有表达式 (组件、曲线) 中查找结构相同的纯子树，出现两次及以上的子树被替换为
+ * {@link Shared} 节点：每个粒子每 tick 只计算一次，结果存放在内部槽位中。
+ *
+ * 只有在一个 tick 内保持不变的变量才能参与共享 (粒子年龄、初始化级变量、发射器变量)，
+ * 位置、曲线输出等在组件更新过程中会被改写的变量不参与；含随机函数的子树也不参与。
+ * 运行时必须在每个 tick 开始时调用 {@link MolangContext#clearSharedCache()}。
+ */
+public final class MolangCse {
+
+    private MolangCse() {
+    }
+
+    /**
+     * 对给定调用点执行公共子表达式消除。
+     *
+     * @return 被共享的子表达式数量
+     */
+    public static int apply(List<MolangCallSite> sites, MolangVariableSchema schema) {
+        // 统计所有可共享子树的出现次数
+        Keys keys = new Keys();
+        for (MolangCallSite site : sites) {
+            count(site.getTree(), schema, keys);
+        }
+
+        // 出现两次及以上的子树，按大小降序挑选 (受缓存位数限制)
+        List<Integer> candidates = new ArrayList<>();
+        for (int id = 0; id < keys.counts.size(); id++) {
+            if (keys.counts.get(id) >= 2) {
+                candidates.add(id);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        candidates.sort((a, b) -> Integer.compare(keys.sizes.get(b), keys.sizes.get(a)));
+
+        Map<Integer, int[]> chosen = new LinkedHashMap<>();
+        for (int id : candidates) {
+            if (chosen.size() >= Long.SIZE)
+                break;
+            int slot = schema.allocateInternal("shared", Scope.PARTICLE);
+            chosen.put(id, new int[] { slot, chosen.size() });
+        }
+
+        // 改写表达式树
+        Map<Integer, IMolangExpression> rewritten = new HashMap<>();
+        for (MolangCallSite site : sites) {
+            IMolangExpression tree = rewrite(site.getTree(), keys, chosen, rewritten);
+            if (tree != site.getTree()) {
+                site.setTree(tree);
+            }
+        }
+        return chosen.size();
+    }
+
+    /**
+     * 计数阶段为可共享子树分配的编号。结构相同的子树编号相同；键由节点标签和子节点的编号组成，
+     * 每个节点只构造一次、长度与子树大小无关。改写阶段按节点同一性查找编号，不再重新构造键。
+     */
+    private static final class Keys {
+        final Map<String, Integer> ids = new HashMap<>();
+        final Map<IMolangExpression, Integer> nodes = new IdentityHashMap<>();
+        // 按编号: 出现次数 (只统计含运算的子树) 和子树大小
+        final List<Integer> counts = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+    }
+
+    /**
+     * 返回子树的编号 (不可共享时返回 -1)，并累计可共享子树的出现次数。
+     */
+    private static int count(IMolangExpression node, MolangVariableSchema schema, Keys keys) {
+        IMolangExpression[] children = node.children();
+        boolean shareable = node.isPure() && isStableLeaf(node, schema);
+        StringBuilder key = new StringBuilder(label(node));
+        int size = 1;
+        if (children.length > 0) {
+            key.append('(');
+            for (int i = 0; i < children.length; i++) {
+                int child = count(children[i], schema, keys);
+                if (child < 0) {
+                    shareable = false;
+                } else {
+                    if (i > 0)
+                        key.append(',');
+                    key.append(child);
+                    size += keys.sizes.get(child);
+                }
+            }
+            key.append(')');
+        }
+        if (!shareable) {
+            return -1;
+        }
+        String k = key.toString();
+        Integer id = keys.ids.get(k);
+        if (id == null) {
+            id = keys.counts.size();
+            keys.ids.put(k, id);
+            keys.counts.add(0);
+            keys.sizes.add(size);
+        }
+        keys.nodes.put(node, id);
+        // 只有含运算的子树才值得共享
+        if (children.length > 0) {
+            keys.counts.set(id, keys.counts.get(id) + 1);
+        }
+        return id;
+    }
+
+    private static IMolangExpression rewrite(IMolangExpression node, Keys keys, Map<Integer, int[]> chosen,
+            Map<Integer, IMolangExpression> rewritten) {
+        IMolangExpression[] children = node.children();
+        if (children.length == 0) {
+            return node;
+        }
+        Integer id = keys.nodes.get(node);
+        if (id != null && rewritten.containsKey(id)) {
+            return rewritten.get(id);
+        }
+
+        IMolangExpression[] newChildren = new IMolangExpression[children.length];
+        boolean changed = false;
+        for (int i = 0; i < children.length; i++) {
+            newChildren[i] = rewrite(children[i], keys, chosen, rewritten);
+            changed |= newChildren[i] != children[i];
+        }
+        IMolangExpression result = changed ? node.withChildren(newChildren) : node;
+
+        if (id != null && chosen.containsKey(id)) {
+            int[] info = chosen.get(id);
+            result = new Shared(result, info[0], info[1]);
+            // 所有出现位置共用同一个节点
+            rewritten.put(id, result);
+        }
+        return result;
+    }
+
+    private static String label(IMolangExpression node) {
+        if (node instanceof Constant c) {
+            return "#" + Float.floatToIntBits(c.getValue());
+        }
+        if (node instanceof EmitterVariable v) {
+            return "e" + v.getSlot();
+        }
+        if (node instanceof Variable v) {
+            return "v" + v.getSlot();
+        }
+        if (node instanceof BinaryOp op) {
+            return op.getType().name();
+        }
+        if (node instanceof Comparison cmp) {
+            return cmp.getType().name();
+        }
+        if (node instanceof FunctionCall call) {
+            return "fn:" + call.getName();
+        }
+        return node.getClass().getSimpleName();
+    }
+
+    /**
+     * 变量是否在一个 tick 内保持不变。非变量节点总是返回 true。
+     */
+    private static boolean isStableLeaf(IMolangExpression node, MolangVariableSchema schema) {
+        if (!(node instanceof Variable v)) {
+            return !(node instanceof Shared);
+        }
+        int slot = v.getSlot();
+        return slot == MolangVariableSchema.PARTICLE_AGE || schema.scopeOf(slot) != Scope.PARTICLE;
+    }
+}
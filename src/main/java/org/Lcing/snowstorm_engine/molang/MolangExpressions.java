@@ -2,16 +2,190 @@ package org.Lcing.snowstorm_engine.molang;
 
 public class MolangExpressions {
 
+    // 无参数的函数和查询共用的参数数组
+    private static final float[] NO_ARGS = new float[0];
+
+    public static class Constant implements IMolangExpression {
+        private final float value;
+
+        public Constant(float value) {
+            this.value = value;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return value;
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            java.util.Arrays.fill(out, from, to, value);
+        }
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        public float getValue() {
+            return value;
+        }
+    }
+
     public static class Variable implements IMolangExpression {
         private final String name;
+        private final int slot;
 
-        public Variable(String name) {
+        public Variable(String name, int slot) {
             this.name = name;
+            this.slot = slot;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return context.slots[slot];
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            System.arraycopy(batch.column(slot), from, out, from, to - from);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+    }
+
+    /**
+     * 发射器级变量 (variable.emitter_*)：始终从所属发射器的上下文中读取。
+     */
+    public static class EmitterVariable extends Variable {
+        public EmitterVariable(String name, int slot) {
+            super(name, slot);
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return context.emitter.slots[getSlot()];
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            // 一个批次中的粒子属于同一个发射器
+            if (from < to) {
+                java.util.Arrays.fill(out, from, to, batch.contexts()[from].emitter.slots[getSlot()]);
+            }
+        }
+    }
+
+    /**
+     * 读取提升到发射器级的表达式结果 (由发射器每 tick 计算一次并写入发射器上下文)。
+     */
+    public static class EmitterValue implements IMolangExpression {
+        private final int slot;
+
+        public EmitterValue(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return context.emitter.slots[slot];
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            if (from < to) {
+                java.util.Arrays.fill(out, from, to, batch.contexts()[from].emitter.slots[slot]);
+            }
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+    }
+
+    /**
+     * 粒子初始化级表达式：每个粒子只计算一次，结果缓存在粒子上下文的内部槽位中。
+     */
+    public static class InitCached implements IMolangExpression {
+        private final IMolangExpression inner;
+        private final int slot;
+        private final long bit;
+
+        public InitCached(IMolangExpression inner, int slot, int index) {
+            this.inner = inner;
+            this.slot = slot;
+            this.bit = 1L << index;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            if ((context.initMask & bit) != 0) {
+                return context.slots[slot];
+            }
+            float value = inner.eval(context);
+            context.slots[slot] = value;
+            context.initMask |= bit;
+            return value;
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { inner };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new InitCached(c[0], slot, Long.numberOfTrailingZeros(bit));
+        }
+    }
+
+    /**
+     * 公共子表达式：同一 tick 内多个表达式共享的纯子树，在每个上下文中只计算一次，结果存放在内部槽位中。
+     */
+    public static class Shared implements IMolangExpression {
+        private final IMolangExpression inner;
+        private final int slot;
+        private final long bit;
+
+        public Shared(IMolangExpression inner, int slot, int index) {
+            this.inner = inner;
+            this.slot = slot;
+            this.bit = 1L << index;
         }
 
         @Override
         public float eval(MolangContext context) {
-            return context.resolve(name);
+            if ((context.sharedMask & bit) != 0) {
+                return context.slots[slot];
+            }
+            float value = inner.eval(context);
+            context.slots[slot] = value;
+            context.sharedMask |= bit;
+            return value;
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { inner };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Shared(c[0], slot, Long.numberOfTrailingZeros(bit));
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public long getBit() {
+            return bit;
         }
     }
 
@@ -26,6 +200,24 @@ public class MolangExpressions {
         public float eval(MolangContext context) {
             return -inner.eval(context);
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            inner.evalBatch(batch, out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = -out[i];
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { inner };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new UnaryMinus(c[0]);
+        }
     }
 
     public static class BinaryOp implements IMolangExpression {
@@ -57,11 +249,280 @@ public class MolangExpressions {
             }
         }
 
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            left.evalBatch(batch, out, from, to);
+            float[] r = batch.acquire();
+            right.evalBatch(batch, r, from, to);
+            switch (type) {
+                case ADD:
+                    for (int i = from; i < to; i++)
+                        out[i] += r[i];
+                    break;
+                case SUBTRACT:
+                    for (int i = from; i < to; i++)
+                        out[i] -= r[i];
+                    break;
+                case MULTIPLY:
+                    for (int i = from; i < to; i++)
+                        out[i] *= r[i];
+                    break;
+                case DIVIDE:
+                    for (int i = from; i < to; i++)
+                        out[i] = r[i] == 0 ? 0 : out[i] / r[i];
+                    break;
+            }
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { left, right };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new BinaryOp(c[0], c[1], type);
+        }
+
+        public OpType getType() {
+            return type;
+        }
+
         public enum OpType {
             ADD, SUBTRACT, MULTIPLY, DIVIDE
         }
     }
 
+    /**
+     * 比较运算 (<, <=, >, >=, ==, !=)，结果为 1 或 0。逻辑非 !x 解析为 x == 0。
+     */
+    public static class Comparison implements IMolangExpression {
+        private final IMolangExpression left;
+        private final IMolangExpression right;
+        private final CompareType type;
+
+        public Comparison(IMolangExpression left, IMolangExpression right, CompareType type) {
+            this.left = left;
+            this.right = right;
+            this.type = type;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return type.test(left.eval(context), right.eval(context)) ? 1 : 0;
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            left.evalBatch(batch, out, from, to);
+            float[] r = batch.acquire();
+            right.evalBatch(batch, r, from, to);
+            for (int i = from; i < to; i++)
+                out[i] = type.test(out[i], r[i]) ? 1 : 0;
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { left, right };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Comparison(c[0], c[1], type);
+        }
+
+        public CompareType getType() {
+            return type;
+        }
+
+        public enum CompareType {
+            LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL, NOT_EQUAL;
+
+            // 与 Java 的 float 比较一致: 含 NaN 时只有 != 成立
+            public boolean test(float l, float r) {
+                switch (this) {
+                    case LESS:
+                        return l < r;
+                    case LESS_EQUAL:
+                        return l <= r;
+                    case GREATER:
+                        return l > r;
+                    case GREATER_EQUAL:
+                        return l >= r;
+                    case EQUAL:
+                        return l == r;
+                    default:
+                        return l != r;
+                }
+            }
+        }
+    }
+
+    /**
+     * 条件表达式 cond ? a : b (二元形式 cond ? a 的 else 分支为 0)。
+     * 只计算被选中的分支，未选中分支中的随机函数等不会执行。
+     * 逻辑运算也解析为条件表达式: a && b 即 a ? (b != 0) : 0，a || b 即 a ? 1 : (b != 0)。
+     */
+    public static class Conditional implements IMolangExpression {
+        private final IMolangExpression condition;
+        private final IMolangExpression whenTrue;
+        private final IMolangExpression whenFalse;
+
+        public Conditional(IMolangExpression condition, IMolangExpression whenTrue, IMolangExpression whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            return condition.eval(context) != 0 ? whenTrue.eval(context) : whenFalse.eval(context);
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { condition, whenTrue, whenFalse };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Conditional(c[0], c[1], c[2]);
+        }
+    }
+
+    /**
+     * a ?? b: a 没有值时取 b。
+     * 变量总是有槽位 (默认 0)，因此 "没有值" 指 NaN (例如无法计算的查询结果)。只有需要时才计算 b。
+     */
+    public static class NullCoalesce implements IMolangExpression {
+        private final IMolangExpression value;
+        private final IMolangExpression fallback;
+
+        public NullCoalesce(IMolangExpression value, IMolangExpression fallback) {
+            this.value = value;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            float v = value.eval(context);
+            return v != v ? fallback.eval(context) : v;
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { value, fallback };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new NullCoalesce(c[0], c[1]);
+        }
+    }
+
+    /**
+     * 赋值 name = value，结果为写入的值。
+     * 发射器级变量写入所属发射器的上下文，其余变量 (包括 temp.*) 写入当前上下文。
+     */
+    public static class Assign implements IMolangExpression {
+        private final String name;
+        private final int slot;
+        private final boolean emitter;
+        private final IMolangExpression value;
+
+        public Assign(String name, int slot, boolean emitter, IMolangExpression value) {
+            this.name = name;
+            this.slot = slot;
+            this.emitter = emitter;
+            this.value = value;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            float v = value.eval(context);
+            (emitter ? context.emitter : context).slots[slot] = v;
+            return v;
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { value };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Assign(name, slot, emitter, c[0]);
+        }
+
+        @Override
+        public boolean isPure() {
+            return false;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public boolean isEmitter() {
+            return emitter;
+        }
+    }
+
+    /**
+     * 多语句脚本: 依次执行语句，结果为 return 的值 (没有 return 时为 0)。
+     * 脚本使用的 temp.* 变量在每次求值开始时清零。
+     */
+    public static class Script implements IMolangExpression {
+        private final int[] tempSlots;
+        private final IMolangExpression[] statements;
+        private final IMolangExpression result;
+
+        public Script(int[] tempSlots, IMolangExpression[] statements, IMolangExpression result) {
+            this.tempSlots = tempSlots;
+            this.statements = statements;
+            this.result = result;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            float[] slots = context.slots;
+            for (int slot : tempSlots) {
+                slots[slot] = 0;
+            }
+            for (IMolangExpression statement : statements) {
+                statement.eval(context);
+            }
+            return result.eval(context);
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            IMolangExpression[] c = java.util.Arrays.copyOf(statements, statements.length + 1);
+            c[statements.length] = result;
+            return c;
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Script(tempSlots, java.util.Arrays.copyOf(c, c.length - 1), c[c.length - 1]);
+        }
+
+        @Override
+        public boolean isPure() {
+            return false;
+        }
+
+        public int[] getTempSlots() {
+            return tempSlots;
+        }
+    }
+
     public static class MathRandom implements IMolangExpression {
         private final IMolangExpression min;
         private final IMolangExpression max;
@@ -75,7 +536,22 @@ public class MolangExpressions {
         public float eval(MolangContext context) {
             float minVal = min.eval(context);
             float maxVal = max.eval(context);
-            return minVal + context.getRandom().nextFloat() * (maxVal - minVal);
+            return minVal + context.nextFloat() * (maxVal - minVal);
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { min, max };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathRandom(c[0], c[1]);
+        }
+
+        @Override
+        public boolean isPure() {
+            return false;
         }
     }
 
@@ -90,7 +566,25 @@ public class MolangExpressions {
         public float eval(MolangContext context) {
             // Molang 使用度数进行三角函数计算！
             float deg = arg.eval(context);
-            return (float) Math.sin(Math.toRadians(deg));
+            return MolangMath.sinDeg(deg);
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            arg.evalBatch(batch, out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = MolangMath.sinDeg(out[i]);
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathSin(c[0]);
         }
     }
 
@@ -104,7 +598,25 @@ public class MolangExpressions {
         @Override
         public float eval(MolangContext context) {
             float deg = arg.eval(context);
-            return (float) Math.cos(Math.toRadians(deg));
+            return MolangMath.cosDeg(deg);
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            arg.evalBatch(batch, out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = MolangMath.cosDeg(out[i]);
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathCos(c[0]);
         }
     }
 
@@ -119,6 +631,24 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return Math.abs(arg.eval(ctx));
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            arg.evalBatch(batch, out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = Math.abs(out[i]);
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathAbs(c[0]);
+        }
     }
 
     public static class MathClamp implements IMolangExpression {
@@ -137,6 +667,30 @@ public class MolangExpressions {
             float mx = max.eval(ctx);
             return Math.max(mn, Math.min(v, mx));
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            val.evalBatch(batch, out, from, to);
+            float[] mn = batch.acquire();
+            min.evalBatch(batch, mn, from, to);
+            float[] mx = batch.acquire();
+            max.evalBatch(batch, mx, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = Math.max(mn[i], Math.min(out[i], mx[i]));
+            }
+            batch.release();
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { val, min, max };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathClamp(c[0], c[1], c[2]);
+        }
     }
 
     public static class MathLerp implements IMolangExpression {
@@ -155,6 +709,30 @@ public class MolangExpressions {
             float tv = t.eval(ctx);
             return av + (bv - av) * tv;
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            a.evalBatch(batch, out, from, to);
+            float[] bv = batch.acquire();
+            b.evalBatch(batch, bv, from, to);
+            float[] tv = batch.acquire();
+            t.evalBatch(batch, tv, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = out[i] + (bv[i] - out[i]) * tv[i];
+            }
+            batch.release();
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { a, b, t };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathLerp(c[0], c[1], c[2]);
+        }
     }
 
     public static class MathFloor implements IMolangExpression {
@@ -168,6 +746,16 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return (float) Math.floor(arg.eval(ctx));
         }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathFloor(c[0]);
+        }
     }
 
     public static class MathCeil implements IMolangExpression {
@@ -181,6 +769,16 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return (float) Math.ceil(arg.eval(ctx));
         }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathCeil(c[0]);
+        }
     }
 
     public static class MathMod implements IMolangExpression {
@@ -199,6 +797,16 @@ public class MolangExpressions {
                 return 0;
             return xv % yv;
         }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { x, y };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathMod(c[0], c[1]);
+        }
     }
 
     public static class MathPow implements IMolangExpression {
@@ -211,7 +819,17 @@ public class MolangExpressions {
 
         @Override
         public float eval(MolangContext ctx) {
-            return (float) Math.pow(base.eval(ctx), exp.eval(ctx));
+            return MolangMath.pow(base.eval(ctx), exp.eval(ctx));
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { base, exp };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathPow(c[0], c[1]);
         }
     }
 
@@ -226,6 +844,16 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return (float) Math.sqrt(arg.eval(ctx));
         }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { arg };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathSqrt(c[0]);
+        }
     }
 
     public static class MathAtan2 implements IMolangExpression {
@@ -238,7 +866,17 @@ public class MolangExpressions {
 
         @Override
         public float eval(MolangContext ctx) {
-            return (float) Math.atan2(y.eval(ctx), x.eval(ctx));
+            return MolangMath.atan2(y.eval(ctx), x.eval(ctx));
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { y, x };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathAtan2(c[0], c[1]);
         }
     }
 
@@ -254,6 +892,27 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return Math.min(a.eval(ctx), b.eval(ctx));
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            a.evalBatch(batch, out, from, to);
+            float[] bv = batch.acquire();
+            b.evalBatch(batch, bv, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = Math.min(out[i], bv[i]);
+            }
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { a, b };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathMin(c[0], c[1]);
+        }
     }
 
     public static class MathMax implements IMolangExpression {
@@ -268,6 +927,27 @@ public class MolangExpressions {
         public float eval(MolangContext ctx) {
             return Math.max(a.eval(ctx), b.eval(ctx));
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            a.evalBatch(batch, out, from, to);
+            float[] bv = batch.acquire();
+            b.evalBatch(batch, bv, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = Math.max(out[i], bv[i]);
+            }
+            batch.release();
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { a, b };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathMax(c[0], c[1]);
+        }
     }
 
     public static class MathDieRoll implements IMolangExpression {
@@ -286,10 +966,25 @@ public class MolangExpressions {
             float hi = high.eval(ctx);
             float sum = 0;
             for (int i = 0; i < n; i++) {
-                sum += lo + ctx.getRandom().nextFloat() * (hi - lo);
+                sum += lo + ctx.nextFloat() * (hi - lo);
             }
             return sum;
         }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { num, low, high };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathDieRoll(c[0], c[1], c[2]);
+        }
+
+        @Override
+        public boolean isPure() {
+            return false;
+        }
     }
 
     public static class MathHermiteBlend implements IMolangExpression {
@@ -305,5 +1000,136 @@ public class MolangExpressions {
             // 3t^2 - 2t^3 (smooth step)
             return tv * tv * (3 - 2 * tv);
         }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            t.evalBatch(batch, out, from, to);
+            for (int i = from; i < to; i++) {
+                float tv = out[i];
+                out[i] = tv * tv * (3 - 2 * tv);
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return new IMolangExpression[] { t };
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new MathHermiteBlend(c[0]);
+        }
+    }
+
+    /**
+     * 通过 {@link MolangFunctionRegistry#registerFunction} 注册的函数调用。
+     */
+    public static class FunctionCall implements IMolangExpression {
+        private final String name;
+        private final MolangFunctionRegistry.Function function;
+        private final IMolangExpression[] args;
+        private final boolean pure;
+
+        public FunctionCall(String name, MolangFunctionRegistry.Function function, IMolangExpression[] args,
+                boolean pure) {
+            this.name = name;
+            this.function = function;
+            this.args = args;
+            this.pure = pure;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public MolangFunctionRegistry.Function getFunction() {
+            return function;
+        }
+
+        @Override
+        public float eval(MolangContext ctx) {
+            if (args.length == 0) {
+                return function.apply(ctx, NO_ARGS);
+            }
+            float[] values = ctx.pushArguments(args.length);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    values[i] = args[i].eval(ctx);
+                }
+                return function.apply(ctx, values);
+            } finally {
+                ctx.popArguments();
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return args.clone();
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new FunctionCall(name, function, c, pure);
+        }
+
+        @Override
+        public boolean isPure() {
+            return pure;
+        }
+    }
+
+    /**
+     * 每次求值都调用的查询 (见 {@link MolangQueryRegistry})。
+     */
+    public static class Query implements IMolangExpression {
+        private final String name;
+        private final MolangQueryRegistry.Query query;
+        private final IMolangExpression[] args;
+
+        public Query(String name, MolangQueryRegistry.Query query, IMolangExpression[] args) {
+            this.name = name;
+            this.query = query;
+            this.args = args;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public MolangQueryRegistry.Query getQuery() {
+            return query;
+        }
+
+        @Override
+        public float eval(MolangContext ctx) {
+            if (args.length == 0) {
+                return query.evaluate(ctx, NO_ARGS);
+            }
+            float[] values = ctx.pushArguments(args.length);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    values[i] = args[i].eval(ctx);
+                }
+                return query.evaluate(ctx, values);
+            } finally {
+                ctx.popArguments();
+            }
+        }
+
+        @Override
+        public IMolangExpression[] children() {
+            return args.clone();
+        }
+
+        @Override
+        public IMolangExpression withChildren(IMolangExpression[] c) {
+            return new Query(name, query, c);
+        }
+
+        @Override
+        public boolean isPure() {
+            // 查询读取的是游戏状态，不能折叠或在粒子之间共享
+            return false;
+        }
     }
 }
@@ -0,0 +1,63 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema.Scope;
+
+/**
+ * 表达式的最低有效求值频率。
+ * 根据表达式读取的变量作用域和是否包含随机函数得出，运行时据此把表达式提升到更低的频率求值。
+ */
+public enum MolangFrequency {
+    // 常量，解析时已折叠
+    CONSTANT,
+    // 只依赖发射器级变量：每个发射器 tick 计算一次，所有粒子共享
+    EMITTER_TICK,
+    // 只依赖粒子生成时确定的变量：每个粒子计算一次
+    PARTICLE_INIT,
+    // 其余情况 (依赖粒子逐帧变量，或包含随机函数)
+    PARTICLE_TICK;
+
+    /**
+     * 分析表达式树的求值频率。
+     * 随机函数每次求值结果都不同，因此含随机函数的表达式不会被提升。
+     */
+    public static MolangFrequency classify(IMolangExpression tree, MolangVariableSchema schema) {
+        if (tree.isConstant()) {
+            return CONSTANT;
+        }
+        int scopes = collectScopes(tree, schema);
+        if (scopes < 0 || (scopes & (1 << Scope.PARTICLE.ordinal())) != 0) {
+            return PARTICLE_TICK;
+        }
+        boolean emitter = (scopes & (1 << Scope.EMITTER.ordinal())) != 0;
+        boolean init = (scopes & (1 << Scope.PARTICLE_INIT.ordinal())) != 0;
+        if (emitter && init) {
+            // 发射器变量每 tick 变化，而粒子变量因粒子而异
+            return PARTICLE_TICK;
+        }
+        if (emitter) {
+            return EMITTER_TICK;
+        }
+        return init ? PARTICLE_INIT : EMITTER_TICK;
+    }
+
+    /**
+     * 收集表达式读取的变量作用域 (按位)，遇到非纯节点时返回 -1。
+     */
+    private static int collectScopes(IMolangExpression node, MolangVariableSchema schema) {
+        if (!node.isPure()) {
+            return -1;
+        }
+        int scopes = 0;
+        if (node instanceof MolangExpressions.Variable v) {
+            scopes |= 1 << schema.scopeOf(v.getSlot()).ordinal();
+        }
+        for (IMolangExpression child : node.children()) {
+            int s = collectScopes(child, schema);
+            if (s < 0) {
+                return -1;
+            }
+            scopes |= s;
+        }
+        return scopes;
+    }
+}
@@ -0,0 +1,99 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Molang 函数注册表。
+ * 函数在解析时按名称查找一次并直接构造对应的表达式节点，运行时不再有任何字符串比较。
+ * 其他模组可以通过 {@link #register} 或 {@link #registerFunction} 添加函数 (应在粒子加载之前注册)。
+ * 解析结果在定义之间共享 (见 {@link MolangParseCache})，因此工厂创建的节点必须是不可变的。
+ */
+public class MolangFunctionRegistry {
+
+    /**
+     * 由参数构造表达式节点。参数个数至少为注册时的 minArgs。
+     */
+    @FunctionalInterface
+    public interface Factory {
+        IMolangExpression create(IMolangExpression[] args);
+    }
+
+    /**
+     * 简单函数：参数已求值为 float。参数数组在调用之间复用，不要保留它的引用。
+     */
+    @FunctionalInterface
+    public interface Function {
+        float apply(MolangContext ctx, float[] args);
+    }
+
+    private static class Entry {
+        final int minArgs;
+        final Factory factory;
+
+        Entry(int minArgs, Factory factory) {
+            this.minArgs = minArgs;
+            this.factory = factory;
+        }
+    }
+
+    // 其他模组在并行的模组构造阶段注册，解析器在资源重新加载线程中读取
+    private static final Map<String, Entry> FUNCTIONS = new ConcurrentHashMap<>();
+
+    static {
+        add("math.random", 2, a -> new MathRandom(a[0], a[1]));
+        add("math.sin", 1, a -> new MathSin(a[0]));
+        add("math.cos", 1, a -> new MathCos(a[0]));
+        add("math.abs", 1, a -> new MathAbs(a[0]));
+        add("math.clamp", 3, a -> new MathClamp(a[0], a[1], a[2]));
+        add("math.lerp", 3, a -> new MathLerp(a[0], a[1], a[2]));
+        add("math.floor", 1, a -> new MathFloor(a[0]));
+        add("math.ceil", 1, a -> new MathCeil(a[0]));
+        add("math.mod", 2, a -> new MathMod(a[0], a[1]));
+        add("math.pow", 2, a -> new MathPow(a[0], a[1]));
+        add("math.sqrt", 1, a -> new MathSqrt(a[0]));
+        add("math.atan2", 2, a -> new MathAtan2(a[0], a[1]));
+        add("math.min", 2, a -> new MathMin(a[0], a[1]));
+        add("math.max", 2, a -> new MathMax(a[0], a[1]));
+        add("math.die_roll", 3, a -> new MathDieRoll(a[0], a[1], a[2]));
+        add("math.hermite_blend", 1, a -> new MathHermiteBlend(a[0]));
+    }
+
+    /**
+     * 注册一个函数。名称不区分大小写，同名时覆盖之前的注册。
+     */
+    public static void register(String name, int minArgs, Factory factory) {
+        add(name, minArgs, factory);
+        // 已缓存的解析结果可能绑定了旧的函数
+        MolangParseCache.clear();
+    }
+
+    private static void add(String name, int minArgs, Factory factory) {
+        FUNCTIONS.put(name.toLowerCase(), new Entry(minArgs, factory));
+    }
+
+    /**
+     * 注册一个简单函数。pure 表示结果只取决于参数 (可以常量折叠和共享)。
+     */
+    public static void registerFunction(String name, int minArgs, boolean pure, Function function) {
+        String key = name.toLowerCase();
+        register(key, minArgs, a -> new FunctionCall(key, function, a, pure));
+    }
+
+    public static boolean contains(String name) {
+        return FUNCTIONS.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * 按名称构造函数调用节点。函数未注册或参数不足时返回 null。
+     */
+    public static IMolangExpression bind(String name, IMolangExpression[] args) {
+        Entry entry = FUNCTIONS.get(name.toLowerCase());
+        if (entry == null || args.length < entry.minArgs) {
+            return null;
+        }
+        return entry.factory.create(args);
+    }
+}
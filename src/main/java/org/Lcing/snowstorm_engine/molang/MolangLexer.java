@@ -0,0 +1,253 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.Arrays;
+
+/**
+ * Molang 分词器。
+ * 一次遍历源码的 char 数组，把记号存放在并列的 int 数组中 (类型、起止位置)，数字在分词时直接转换为 float，
+ * 解析器按下标读取，不为每个记号创建对象或字符串。
+ */
+final class MolangLexer {
+
+    static final int EOF = 0;
+    static final int NUMBER = 1;
+    static final int IDENT = 2;
+    static final int STRING = 3;
+    static final int LPAREN = 4;
+    static final int RPAREN = 5;
+    static final int COMMA = 6;
+    static final int SEMI = 7;
+    static final int QUESTION = 8;
+    static final int COLON = 9;
+    static final int COALESCE = 10;
+    static final int OR = 11;
+    static final int AND = 12;
+    static final int EQ = 13;
+    static final int NE = 14;
+    static final int LT = 15;
+    static final int LE = 16;
+    static final int GT = 17;
+    static final int GE = 18;
+    static final int PLUS = 19;
+    static final int MINUS = 20;
+    static final int STAR = 21;
+    static final int SLASH = 22;
+    static final int NOT = 23;
+    static final int ASSIGN = 24;
+    // 以下记号属于 Molang 语法 (数组、代码块、箭头)，运行时尚不支持，解析器遇到时报错
+    static final int ARROW = 25;
+    static final int LBRACE = 26;
+    static final int RBRACE = 27;
+    static final int LBRACKET = 28;
+    static final int RBRACKET = 29;
+
+    private static final String[] NAMES = { "end of expression", "number", "identifier", "string", "'('", "')'",
+            "','", "';'", "'?'", "':'", "'??'", "'||'", "'&&'", "'=='", "'!='", "'<'", "'<='", "'>'", "'>='", "'+'",
+            "'-'", "'*'", "'/'", "'!'", "'='", "'->'", "'{'", "'}'", "'['", "']'" };
+
+    final String source;
+    final char[] chars;
+    int count;
+    int[] kind;
+    int[] start;
+    int[] end;
+    // 数字记号的值 (其他记号不使用)
+    float[] number;
+
+    private MolangLexer(String source) {
+        this.source = source;
+        this.chars = source.toCharArray();
+        // 记号数通常不超过字符数的一半
+        int capacity = Math.max(8, chars.length / 2 + 2);
+        this.kind = new int[capacity];
+        this.start = new int[capacity];
+        this.end = new int[capacity];
+        this.number = new float[capacity];
+    }
+
+    static String describe(int kind) {
+        return NAMES[kind];
+    }
+
+    /**
+     * 分词。结果总是以一个 {@link #EOF} 记号结束。
+     *
+     * @throws MolangParseException 遇到无法识别的字符或未结束的字符串
+     */
+    static MolangLexer tokenize(String source) {
+        MolangLexer lexer = new MolangLexer(source);
+        lexer.run();
+        return lexer;
+    }
+
+    private void run() {
+        char[] c = chars;
+        int n = c.length;
+        int i = 0;
+        while (true) {
+            while (i < n && c[i] <= ' ') {
+                i++;
+            }
+            if (i >= n) {
+                add(EOF, n, n);
+                return;
+            }
+            char ch = c[i];
+            int s = i;
+            if (isIdentStart(ch)) {
+                i++;
+                while (i < n && isIdentPart(c[i])) {
+                    i++;
+                }
+                add(IDENT, s, i);
+                continue;
+            }
+            if (isDigit(ch) || (ch == '.' && i + 1 < n && isDigit(c[i + 1]))) {
+                i = lexNumber(s);
+                continue;
+            }
+            char next = i + 1 < n ? c[i + 1] : '\0';
+            switch (ch) {
+                case '(' -> i = add(LPAREN, s, s + 1);
+                case ')' -> i = add(RPAREN, s, s + 1);
+                case ',' -> i = add(COMMA, s, s + 1);
+                case ';' -> i = add(SEMI, s, s + 1);
+                case ':' -> i = add(COLON, s, s + 1);
+                case '+' -> i = add(PLUS, s, s + 1);
+                case '*' -> i = add(STAR, s, s + 1);
+                case '/' -> i = add(SLASH, s, s + 1);
+                case '{' -> i = add(LBRACE, s, s + 1);
+                case '}' -> i = add(RBRACE, s, s + 1);
+                case '[' -> i = add(LBRACKET, s, s + 1);
+                case ']' -> i = add(RBRACKET, s, s + 1);
+                case '-' -> i = next == '>' ? add(ARROW, s, s + 2) : add(MINUS, s, s + 1);
+                case '?' -> i = next == '?' ? add(COALESCE, s, s + 2) : add(QUESTION, s, s + 1);
+                case '=' -> i = next == '=' ? add(EQ, s, s + 2) : add(ASSIGN, s, s + 1);
+                case '!' -> i = next == '=' ? add(NE, s, s + 2) : add(NOT, s, s + 1);
+                case '<' -> i = next == '=' ? add(LE, s, s + 2) : add(LT, s, s + 1);
+                case '>' -> i = next == '=' ? add(GE, s, s + 2) : add(GT, s, s + 1);
+                case '|' -> {
+                    if (next != '|') {
+                        throw new MolangParseException("Expected '||'", source, s);
+                    }
+                    i = add(OR, s, s + 2);
+                }
+                case '&' -> {
+                    if (next != '&') {
+                        throw new MolangParseException("Expected '&&'", source, s);
+                    }
+                    i = add(AND, s, s + 2);
+                }
+                case '\'' -> {
+                    int close = source.indexOf('\'', s + 1);
+                    if (close < 0) {
+                        throw new MolangParseException("Unterminated string", source, s);
+                    }
+                    i = add(STRING, s, close + 1);
+                }
+                default -> throw new MolangParseException("Unexpected character '" + ch + "'", source, s);
+            }
+        }
+    }
+
+    /**
+     * 数字：整数部分、小数部分、指数，可以带 f 后缀。返回数字之后的位置。
+     */
+    private int lexNumber(int s) {
+        char[] c = chars;
+        int n = c.length;
+        int i = s;
+        long integer = 0;
+        boolean simple = true;
+        while (i < n && isDigit(c[i])) {
+            integer = integer * 10 + (c[i] - '0');
+            simple &= i - s < 9;
+            i++;
+        }
+        if (i < n && c[i] == '.') {
+            simple = false;
+            i++;
+            while (i < n && isDigit(c[i])) {
+                i++;
+            }
+        }
+        if (i < n && (c[i] == 'e' || c[i] == 'E')) {
+            int e = i + 1;
+            if (e < n && (c[e] == '+' || c[e] == '-')) {
+                e++;
+            }
+            if (e < n && isDigit(c[e])) {
+                simple = false;
+                i = e;
+                while (i < n && isDigit(c[i])) {
+                    i++;
+                }
+            }
+        }
+        int numberEnd = i;
+        if (i < n && (c[i] == 'f' || c[i] == 'F') && (i + 1 >= n || !isIdentPart(c[i + 1]))) {
+            i++;
+        }
+        // 不超过 9 位的整数可以精确转换，其余交给 Float.parseFloat (保证正确舍入)
+        float value = simple ? (float) integer : Float.parseFloat(new String(c, s, numberEnd - s));
+        add(NUMBER, s, i);
+        number[count - 1] = value;
+        return i;
+    }
+
+    private int add(int type, int s, int e) {
+        if (count == kind.length) {
+            int capacity = count * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            number = Arrays.copyOf(number, capacity);
+        }
+        kind[count] = type;
+        start[count] = s;
+        end[count] = e;
+        count++;
+        return e;
+    }
+
+    /**
+     * 标识符记号的名称，展开基岩版的简写前缀 (v. q. t. c.)。
+     */
+    String identifier(int token) {
+        int s = start[token];
+        int len = end[token] - s;
+        if (len > 2 && chars[s + 1] == '.') {
+            String prefix = switch (chars[s]) {
+                case 'v' -> "variable.";
+                case 'q' -> "query.";
+                case 't' -> "temp.";
+                case 'c' -> "context.";
+                default -> null;
+            };
+            if (prefix != null) {
+                return prefix.concat(new String(chars, s + 2, len - 2));
+            }
+        }
+        return new String(chars, s, len);
+    }
+
+    /**
+     * 记号是否是指定的关键字 (不区分大小写)。
+     */
+    boolean isKeyword(int token, String keyword) {
+        return kind[token] == IDENT && end[token] - start[token] == keyword.length()
+                && source.regionMatches(true, start[token], keyword, 0, keyword.length());
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (c > 127 && Character.isLetter(c));
+    }
+
+    private static boolean isIdentPart(char c) {
+        return isIdentStart(c) || isDigit(c) || c == '.';
+    }
+}
@@ -0,0 +1,165 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+/**
+ * 按归一化年龄 (variable.particle_age / variable.particle_lifetime) 预计算的查找表。
+ *
+ * 只依赖归一化年龄和常量的纯表达式 (尺寸渐变、透明度淡出等) 在加载时按固定分辨率采样到 [0, 1] 上，
+ * 运行时只需一次下标计算和线性插值。归一化年龄不在 [0, 1] 内 (寿命为 0、粒子超龄) 时退回精确求值。
+ *
+ * 判定是结构上的：年龄和寿命变量只能以 "age / lifetime" 的形式出现，因此表达式确实只是归一化年龄的函数。
+ * 烘焙时在网格点之间 (并使用不同的寿命) 与精确求值比较，记录最大误差；误差超出容差的表达式
+ * (例如 math.floor 产生的阶跃) 不使用查找表。
+ */
+public final class MolangLut implements IMolangExpression {
+
+    public static final int DEFAULT_RESOLUTION = 256;
+    public static final int MAX_RESOLUTION = 65536;
+    // 相对容差 (相对于 max(1, 输出的最大绝对值))
+    public static final float TOLERANCE = 1e-3f;
+    // 查表本身的代价 (MolangCost 单位)，比它便宜的表达式不烘焙
+    public static final float LOOKUP_COST = 6;
+
+    // 误差检查时使用的寿命：网格点之间的归一化年龄由不同的 age / lifetime 组合得到
+    private static final float[] CHECK_LIFETIMES = { 1f, 0.7f, 2.5f, 13f };
+    private static final int CHECK_STEPS = 4;
+
+    private final IMolangExpression exact;
+    private final float[] table;
+    private final int resolution;
+    private float maxError;
+    private float range;
+
+    private MolangLut(IMolangExpression exact, int resolution) {
+        this.exact = exact;
+        this.resolution = resolution;
+        this.table = new float[resolution + 1];
+    }
+
+    /**
+     * 表达式是否可以 (且值得) 烘焙为查找表。
+     */
+    public static boolean isAgeDriven(IMolangExpression tree) {
+        return !tree.isConstant() && MolangOptimizer.isPureTree(tree) && MolangCost.estimate(tree) > LOOKUP_COST
+                && normalizedAgeOnly(tree);
+    }
+
+    private static boolean normalizedAgeOnly(IMolangExpression node) {
+        if (node instanceof BinaryOp op && op.getType() == BinaryOp.OpType.DIVIDE) {
+            IMolangExpression[] c = node.children();
+            if (isSlot(c[0], MolangVariableSchema.PARTICLE_AGE)
+                    && isSlot(c[1], MolangVariableSchema.PARTICLE_LIFETIME)) {
+                return true;
+            }
+        }
+        IMolangExpression[] children = node.children();
+        if (children.length == 0) {
+            // 除常量之外的叶子 (变量、查询、无参函数) 都可能依赖其他状态
+            return node instanceof Constant;
+        }
+        if (node instanceof InitCached || node instanceof Shared) {
+            return false;
+        }
+        for (IMolangExpression child : children) {
+            if (!normalizedAgeOnly(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSlot(IMolangExpression node, int slot) {
+        return node instanceof Variable v && !(node instanceof EmitterVariable) && v.getSlot() == slot;
+    }
+
+    /**
+     * 烘焙查找表并计算误差。调用方应先用 {@link #isAgeDriven} 判定。
+     */
+    public static MolangLut bake(IMolangExpression tree, MolangVariableSchema schema, int resolution) {
+        resolution = Math.max(2, Math.min(MAX_RESOLUTION, resolution));
+        MolangLut lut = new MolangLut(tree, resolution);
+        MolangContext context = new MolangContext(schema);
+        float[] slots = context.slots;
+        slots[MolangVariableSchema.PARTICLE_LIFETIME] = 1;
+        float range = 0;
+        for (int i = 0; i <= resolution; i++) {
+            slots[MolangVariableSchema.PARTICLE_AGE] = (float) i / resolution;
+            lut.table[i] = tree.eval(context);
+            range = Math.max(range, Math.abs(lut.table[i]));
+        }
+
+        float maxError = 0;
+        int n = resolution * CHECK_STEPS;
+        for (int i = 0; i <= n; i++) {
+            float lifetime = CHECK_LIFETIMES[i % CHECK_LIFETIMES.length];
+            slots[MolangVariableSchema.PARTICLE_AGE] = (float) i / n * lifetime;
+            slots[MolangVariableSchema.PARTICLE_LIFETIME] = lifetime;
+            float expected = tree.eval(context);
+            float actual = lut.eval(context);
+            if (Float.isNaN(expected) != Float.isNaN(actual)) {
+                maxError = Float.POSITIVE_INFINITY;
+            } else if (!Float.isNaN(expected)) {
+                maxError = Math.max(maxError, Math.abs(expected - actual));
+            }
+        }
+        lut.maxError = maxError;
+        lut.range = range;
+        return lut;
+    }
+
+    /**
+     * 最大误差是否在容差之内。
+     */
+    public boolean isAccurate() {
+        return maxError <= TOLERANCE * Math.max(1, range);
+    }
+
+    public float getMaxError() {
+        return maxError;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public IMolangExpression getExact() {
+        return exact;
+    }
+
+    @Override
+    public float eval(MolangContext context) {
+        float[] slots = context.slots;
+        float t = slots[MolangVariableSchema.PARTICLE_AGE] / slots[MolangVariableSchema.PARTICLE_LIFETIME];
+        if (!(t >= 0 && t <= 1)) {
+            return exact.eval(context);
+        }
+        return lookup(t);
+    }
+
+    @Override
+    public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+        float[] age = batch.column(MolangVariableSchema.PARTICLE_AGE);
+        float[] lifetime = batch.column(MolangVariableSchema.PARTICLE_LIFETIME);
+        MolangContext[] contexts = batch.contexts();
+        for (int i = from; i < to; i++) {
+            float t = age[i] / lifetime[i];
+            out[i] = t >= 0 && t <= 1 ? lookup(t) : exact.eval(contexts[i]);
+        }
+    }
+
+    private float lookup(float t) {
+        float x = t * resolution;
+        int i = (int) x;
+        if (i >= resolution) {
+            return table[resolution];
+        }
+        float a = table[i];
+        return a + (table[i + 1] - a) * (x - i);
+    }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+}
@@ -0,0 +1,172 @@
+package org.Lcing.snowstorm_engine.molang;
+
+/**
+ * Molang 和形状组件使用的数学函数。
+ * 三角函数以度为单位 (与 Molang 的 math.sin / math.cos 一致)。
+ *
+ * 两种精度模式：
+ * - EXACT: 直接调用 java.lang.Math (双精度计算后转换为 float)。
+ * - FAST: 查表 + 线性插值的 sin/cos，多项式 atan2，位运算初值 + 牛顿迭代的 cbrt，整数指数的 pow 用连乘。
+ * 误差远小于粒子渲染能分辨的范围 (见 /snowstorm bench math)。
+ *
+ * 解释器和编译后的字节码 (以及基准测试中的栈式程序) 都通过这里计算，因此切换模式后结果仍然一致。
+ * 常量折叠发生在加载时，切换模式后需要重新加载粒子才会影响已折叠的常量。
+ */
+public final class MolangMath {
+
+    public enum Mode {
+        EXACT, FAST
+    }
+
+    private static volatile Mode mode = Mode.FAST;
+
+    // sin 表: 一周 SIN_SIZE 个采样 (2 的幂，取模可以用位与)，多一个元素用于插值
+    private static final int SIN_SIZE = 4096;
+    private static final int SIN_MASK = SIN_SIZE - 1;
+    private static final float SIN_STEPS_PER_DEGREE = SIN_SIZE / 360.0f;
+    private static final float[] SIN_TABLE = new float[SIN_SIZE + 1];
+    // 超出此范围的角度直接使用精确计算 (float 精度已不足以表示小数部分)
+    private static final float FAST_TRIG_LIMIT = 1.0e6f;
+
+    static {
+        for (int i = 0; i <= SIN_SIZE; i++) {
+            SIN_TABLE[i] = (float) Math.sin(2 * Math.PI * i / SIN_SIZE);
+        }
+    }
+
+    private MolangMath() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode value) {
+        mode = value;
+    }
+
+    public static float sinDeg(float deg) {
+        if (mode == Mode.FAST) {
+            return fastSinDeg(deg);
+        }
+        return (float) Math.sin(Math.toRadians(deg));
+    }
+
+    public static float cosDeg(float deg) {
+        if (mode == Mode.FAST) {
+            return fastSinDeg(deg + 90);
+        }
+        return (float) Math.cos(Math.toRadians(deg));
+    }
+
+    /**
+     * sqrt 在两种模式下相同: Math.sqrt 本身就是 JIT 内建的单条指令。
+     */
+    public static float sqrt(float x) {
+        return (float) Math.sqrt(x);
+    }
+
+    public static float pow(float base, float exp) {
+        if (mode == Mode.FAST) {
+            int n = (int) exp;
+            if (n == exp && n >= -16 && n <= 16) {
+                return powInt(base, n);
+            }
+            if (exp == 0.5f) {
+                return (float) Math.sqrt(base);
+            }
+        }
+        return (float) Math.pow(base, exp);
+    }
+
+    /**
+     * 返回弧度 (与 Math.atan2 相同)。
+     */
+    public static float atan2(float y, float x) {
+        if (mode == Mode.FAST) {
+            return fastAtan2(y, x);
+        }
+        return (float) Math.atan2(y, x);
+    }
+
+    /**
+     * 返回弧度。
+     */
+    public static float acos(float x) {
+        if (mode == Mode.FAST && x >= -1 && x <= 1) {
+            return fastAtan2((float) Math.sqrt(1 - x * x), x);
+        }
+        return (float) Math.acos(x);
+    }
+
+    public static float cbrt(float x) {
+        if (mode == Mode.FAST) {
+            return fastCbrt(x);
+        }
+        return (float) Math.cbrt(x);
+    }
+
+    static float fastSinDeg(float deg) {
+        if (!(Math.abs(deg) < FAST_TRIG_LIMIT)) {
+            // 过大的角度或 NaN
+            return (float) Math.sin(Math.toRadians(deg));
+        }
+        float f = deg * SIN_STEPS_PER_DEGREE;
+        int i = (int) f;
+        if (f < i)
+            i--; // 向下取整
+        float frac = f - i;
+        int k = i & SIN_MASK;
+        float a = SIN_TABLE[k];
+        return a + (SIN_TABLE[k + 1] - a) * frac;
+    }
+
+    static float fastAtan2(float y, float x) {
+        float ax = Math.abs(x);
+        float ay = Math.abs(y);
+        float max = Math.max(ax, ay);
+        if (max == 0 || Float.isNaN(max) || Float.isInfinite(max)) {
+            return (float) Math.atan2(y, x);
+        }
+        // [0, 1] 上的 atan 奇次多项式近似，最大误差约 2e-6 弧度
+        float a = Math.min(ax, ay) / max;
+        float s = a * a;
+        float r = (((((-0.01172120f * s + 0.05265332f) * s - 0.11643287f) * s + 0.19354346f) * s
+                - 0.33262347f) * s + 0.99997726f) * a;
+        if (ay > ax)
+            r = (float) (Math.PI / 2) - r;
+        if (x < 0)
+            r = (float) Math.PI - r;
+        return y < 0 ? -r : r;
+    }
+
+    static float fastCbrt(float x) {
+        if (x == 0 || Float.isNaN(x) || Float.isInfinite(x)) {
+            return x;
+        }
+        float ax = Math.abs(x);
+        if (ax < Float.MIN_NORMAL) {
+            // 非规格化数的位运算初值不可靠
+            return (float) Math.cbrt(x);
+        }
+        // 指数除以 3 作为初值，两次牛顿迭代 (用 double 计算，避免 y³ 在 float 范围边缘溢出)
+        double y = Float.intBitsToFloat(Float.floatToRawIntBits(ax) / 3 + 0x2a5137a0);
+        y = y - (y * y * y - ax) / (3 * y * y);
+        y = y - (y * y * y - ax) / (3 * y * y);
+        return (float) (x < 0 ? -y : y);
+    }
+
+    private static float powInt(float base, int n) {
+        boolean inverse = n < 0;
+        int e = inverse ? -n : n;
+        float result = 1;
+        float b = base;
+        while (e != 0) {
+            if ((e & 1) != 0)
+                result *= b;
+            b *= b;
+            e >>= 1;
+        }
+        return inverse ? 1 / result : result;
+    }
+}
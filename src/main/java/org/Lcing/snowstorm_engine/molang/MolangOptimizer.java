@@ -0,0 +1,104 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.BinaryOp;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.Conditional;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.NullCoalesce;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.UnaryMinus;
+
+/**
+ * Molang 表达式树优化器 (解析后执行一次)。
+ * 自底向上进行常量折叠和代数化简：
+ * - 所有子节点都是常量的纯节点被替换为常量 (例如 2*3.14159/4、math.clamp(0.5, 0, 1)、-(5))
+ * - x*1、1*x、x/1、x+0、0+x、x-0 化简为 x
+ * - x*0、0*x 在 x 为纯表达式时化简为 0 (随机函数仍需保留以维持随机序列)
+ * - -(-x) 化简为 x
+ * - 条件为常量的条件表达式化简为被选中的分支，值为常量 (且不是 NaN) 的 a ?? b 化简为 a
+ */
+public final class MolangOptimizer {
+
+    private MolangOptimizer() {
+    }
+
+    public static IMolangExpression optimize(IMolangExpression expr) {
+        IMolangExpression[] children = expr.children();
+        if (children.length == 0) {
+            return expr;
+        }
+
+        boolean changed = false;
+        boolean allConstant = true;
+        IMolangExpression[] optimized = new IMolangExpression[children.length];
+        for (int i = 0; i < children.length; i++) {
+            optimized[i] = optimize(children[i]);
+            changed |= optimized[i] != children[i];
+            allConstant &= optimized[i].isConstant();
+        }
+        IMolangExpression node = changed ? expr.withChildren(optimized) : expr;
+
+        // 常量折叠: 纯节点的结果只取决于子节点，不会读取上下文
+        if (allConstant && node.isPure()) {
+            return IMolangExpression.constant(node.eval(null));
+        }
+
+        if (node instanceof BinaryOp op) {
+            return simplify(op, optimized[0], optimized[1]);
+        }
+        if (node instanceof Conditional && optimized[0].isConstant()) {
+            return optimized[0].eval(null) != 0 ? optimized[1] : optimized[2];
+        }
+        if (node instanceof NullCoalesce && optimized[0].isConstant() && !Float.isNaN(optimized[0].eval(null))) {
+            return optimized[0];
+        }
+        if (node instanceof UnaryMinus && optimized[0] instanceof UnaryMinus inner) {
+            return inner.children()[0];
+        }
+        return node;
+    }
+
+    private static IMolangExpression simplify(BinaryOp op, IMolangExpression l, IMolangExpression r) {
+        switch (op.getType()) {
+            case ADD:
+                if (isValue(l, 0))
+                    return r;
+                if (isValue(r, 0))
+                    return l;
+                break;
+            case SUBTRACT:
+                if (isValue(r, 0))
+                    return l;
+                break;
+            case MULTIPLY:
+                if (isValue(l, 1))
+                    return r;
+                if (isValue(r, 1))
+                    return l;
+                if ((isValue(l, 0) && isPureTree(r)) || (isValue(r, 0) && isPureTree(l)))
+                    return IMolangExpression.ZERO;
+                break;
+            case DIVIDE:
+                if (isValue(r, 1))
+                    return l;
+                break;
+        }
+        return op;
+    }
+
+    private static boolean isValue(IMolangExpression expr, float value) {
+        return expr.isConstant() && expr.eval(null) == value;
+    }
+
+    /**
+     * 整棵子树是否都没有副作用 (不含随机函数)。
+     */
+    public static boolean isPureTree(IMolangExpression expr) {
+        if (!expr.isPure()) {
+            return false;
+        }
+        for (IMolangExpression child : expr.children()) {
+            if (!isPureTree(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
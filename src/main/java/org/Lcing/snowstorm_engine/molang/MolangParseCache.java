@@ -0,0 +1,332 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 全局 Molang 解析缓存 (所有粒子定义共享)。
+ *
+ * - 源码缓存：规范化后的源码 -> 优化后的表达式树。命中时不再分词和解析，
+ * 但树中的变量槽位来自最初解析时的变量表，必须与当前变量表一致 (已存在的变量槽位相同，
+ * 新变量按顺序分配后恰好得到相同的槽位)，否则重新解析。内置变量的槽位是固定的，
+ * 因此 "variable.particle_age / variable.particle_lifetime" 之类的表达式总能命中。
+ * - 子树哈希一致化：结构相同的子树 (相同的节点类型、参数和子节点) 共用同一个节点对象，
+ * 例如不同定义中的 math.random(-1, 1) 和常量 1。
+ *
+ * 两个表都只弱引用表达式：不再被任何模板使用的树会被回收。
+ * 表达式节点是不可变的，运行时状态 (调用点目标、求值频率、缓存结果) 保存在 {@link MolangCallSite}
+ * 和 {@link MolangContext} 中，因此共享节点是安全的。
+ * 包含查询或未知函数的解析结果会修改解析器状态 (查询槽位、未知函数列表)，不会进入源码缓存。
+ */
+public final class MolangParseCache {
+
+    private static final Map<String, Ref> SOURCES = new HashMap<>();
+    private static final Map<NodeKey, Ref> NODES = new HashMap<>();
+    private static final ReferenceQueue<IMolangExpression> QUEUE = new ReferenceQueue<>();
+
+    // 只有子节点、没有其他参数的节点类型
+    private static final Set<Class<?>> PLAIN_NODES = Set.of(UnaryMinus.class, Conditional.class,
+            NullCoalesce.class, MathRandom.class, MathSin.class, MathCos.class, MathAbs.class, MathClamp.class,
+            MathLerp.class, MathFloor.class, MathCeil.class, MathMod.class, MathPow.class, MathSqrt.class,
+            MathAtan2.class, MathMin.class, MathMax.class, MathDieRoll.class, MathHermiteBlend.class);
+
+    private static boolean enabled = true;
+    private static int hits = 0;
+    private static int misses = 0;
+    private static int rejected = 0;
+    private static int sharedNodes = 0;
+
+    private MolangParseCache() {
+    }
+
+    private static class Ref extends WeakReference<IMolangExpression> {
+        final Object key;
+
+        Ref(Object key, IMolangExpression value) {
+            super(value, QUEUE);
+            this.key = key;
+        }
+    }
+
+    /**
+     * 节点的结构键：标签 (类型和参数) 加上已一致化的子节点 (按引用比较)。
+     */
+    private static final class NodeKey {
+        final String label;
+        final Object[] parts;
+        final int hash;
+
+        NodeKey(String label, Object[] parts) {
+            this.label = label;
+            this.parts = parts;
+            int h = label.hashCode();
+            for (Object part : parts) {
+                h = h * 31 + System.identityHashCode(part);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey other) || other.hash != hash || !other.label.equals(label)
+                    || other.parts.length != parts.length) {
+                return false;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (other.parts[i] != parts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static synchronized int getHits() {
+        return hits;
+    }
+
+    public static synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * 源码命中但变量槽位与当前变量表不一致而重新解析的次数。
+     */
+    public static synchronized int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * 一致化时复用已有节点的次数。
+     */
+    public static synchronized int getSharedNodes() {
+        return sharedNodes;
+    }
+
+    public static synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        rejected = 0;
+        sharedNodes = 0;
+    }
+
+    /**
+     * 清空缓存。注册表变化后调用 (函数和查询在解析时绑定)。
+     */
+    public static synchronized void clear() {
+        SOURCES.clear();
+        NODES.clear();
+        while (QUEUE.poll() != null) {
+            // 丢弃已入队的引用
+        }
+    }
+
+    /**
+     * 源码缓存的键：规范化空白 (连续空白视为一个空格) 后的源码，加上赋值作用域和数学精度模式
+     * (常量折叠的结果取决于它)。
+     */
+    static String key(String source, MolangVariableSchema.Scope assignScope) {
+        StringBuilder sb = new StringBuilder(source.length() + 16);
+        boolean space = false;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        sb.append('|').append(assignScope).append('|').append(MolangMath.getMode());
+        return sb.toString();
+    }
+
+    /**
+     * 查找已解析的树，并在当前变量表中分配它使用的变量。槽位不一致时返回 null。
+     */
+    static synchronized IMolangExpression lookup(String key, MolangVariableSchema schema) {
+        if (!enabled) {
+            return null;
+        }
+        expunge();
+        Ref ref = SOURCES.get(key);
+        IMolangExpression tree = ref != null ? ref.get() : null;
+        if (tree == null) {
+            misses++;
+            return null;
+        }
+        Map<String, int[]> bindings = new LinkedHashMap<>();
+        collectBindings(tree, bindings);
+        if (!bindSlots(bindings, schema)) {
+            rejected++;
+            return null;
+        }
+        hits++;
+        return tree;
+    }
+
+    static synchronized void store(String key, IMolangExpression tree) {
+        if (enabled) {
+            SOURCES.put(key, new Ref(key, tree));
+        }
+    }
+
+    /**
+     * 自底向上一致化表达式树：结构相同的子树返回同一个节点对象。
+     */
+    static synchronized IMolangExpression intern(IMolangExpression node) {
+        if (!enabled) {
+            return node;
+        }
+        expunge();
+        return internNode(node);
+    }
+
+    private static IMolangExpression internNode(IMolangExpression node) {
+        IMolangExpression[] children = node.children();
+        if (children.length > 0) {
+            IMolangExpression[] interned = new IMolangExpression[children.length];
+            boolean changed = false;
+            for (int i = 0; i < children.length; i++) {
+                interned[i] = internNode(children[i]);
+                changed |= interned[i] != children[i];
+            }
+            if (changed) {
+                node = node.withChildren(interned);
+                children = interned;
+            }
+        }
+
+        NodeKey key = keyOf(node, children);
+        if (key == null) {
+            // 未知节点类型 (例如其他模组注册的函数) 不参与一致化
+            return node;
+        }
+        Ref ref = NODES.get(key);
+        IMolangExpression existing = ref != null ? ref.get() : null;
+        if (existing != null) {
+            sharedNodes++;
+            return existing;
+        }
+        NODES.put(key, new Ref(key, node));
+        return node;
+    }
+
+    private static NodeKey keyOf(IMolangExpression node, IMolangExpression[] children) {
+        String label;
+        Object[] parts = children;
+        if (node instanceof Constant c) {
+            label = "#" + Float.floatToIntBits(c.getValue());
+        } else if (node instanceof Variable v) {
+            label = (node instanceof EmitterVariable ? "e:" : "v:") + v.getName() + ":" + v.getSlot();
+        } else if (node instanceof BinaryOp op) {
+            label = op.getType().name();
+        } else if (node instanceof Comparison cmp) {
+            label = cmp.getType().name();
+        } else if (node instanceof Assign assign) {
+            label = "set:" + assign.getName() + ":" + assign.getSlot() + ":" + assign.isEmitter();
+        } else if (node instanceof Script script) {
+            label = "script:" + Arrays.toString(script.getTempSlots());
+        } else if (node instanceof FunctionCall call) {
+            label = "fn:" + call.getName() + ":" + call.isPure();
+            parts = append(children, call.getFunction());
+        } else if (node instanceof Query query) {
+            label = "q:" + query.getName();
+            parts = append(children, query.getQuery());
+        } else if (PLAIN_NODES.contains(node.getClass())) {
+            label = node.getClass().getSimpleName();
+        } else {
+            return null;
+        }
+        return new NodeKey(label, parts);
+    }
+
+    private static Object[] append(Object[] parts, Object extra) {
+        Object[] out = Arrays.copyOf(parts, parts.length + 1, Object[].class);
+        out[parts.length] = extra;
+        return out;
+    }
+
+    /**
+     * 按首次出现顺序收集树中读写的变量：名称 -> {槽位, 是否为发射器变量}。
+     */
+    private static void collectBindings(IMolangExpression node, Map<String, int[]> out) {
+        if (node instanceof Variable v) {
+            out.putIfAbsent(v.getName(), new int[] { v.getSlot(), node instanceof EmitterVariable ? 1 : 0 });
+        } else if (node instanceof Assign assign) {
+            out.putIfAbsent(assign.getName(), new int[] { assign.getSlot(), assign.isEmitter() ? 1 : 0 });
+        }
+        for (IMolangExpression child : node.children()) {
+            collectBindings(child, out);
+        }
+    }
+
+    /**
+     * 检查变量在当前变量表中的槽位是否与树一致，一致时分配缺少的变量。
+     */
+    private static boolean bindSlots(Map<String, int[]> bindings, MolangVariableSchema schema) {
+        int next = schema.size();
+        for (Map.Entry<String, int[]> entry : bindings.entrySet()) {
+            String name = entry.getKey();
+            int slot = entry.getValue()[0];
+            boolean emitter = entry.getValue()[1] != 0;
+            int current = schema.find(name);
+            if (current >= 0) {
+                if (current != slot || (schema.scopeOf(current) == MolangVariableSchema.Scope.EMITTER) != emitter) {
+                    return false;
+                }
+            } else {
+                // 新变量必须恰好分配到相同的槽位，且按名称得到的作用域不能与树矛盾
+                boolean emitterByName = MolangVariableSchema.scopeForName(name) == MolangVariableSchema.Scope.EMITTER;
+                if (slot != next++ || (emitterByName && !emitter)) {
+                    return false;
+                }
+            }
+        }
+        for (Map.Entry<String, int[]> entry : bindings.entrySet()) {
+            if (schema.find(entry.getKey()) < 0) {
+                if (entry.getValue()[1] != 0) {
+                    schema.slotOf(entry.getKey(), MolangVariableSchema.Scope.EMITTER);
+                } else {
+                    schema.slotOf(entry.getKey());
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void expunge() {
+        Object ref;
+        while ((ref = QUEUE.poll()) != null) {
+            Ref r = (Ref) ref;
+            if (r.key instanceof String) {
+                SOURCES.remove(r.key, r);
+            } else {
+                NODES.remove(r.key, r);
+            }
+        }
+    }
+}
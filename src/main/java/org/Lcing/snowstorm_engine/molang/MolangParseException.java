@@ -0,0 +1,30 @@
+package org.Lcing.snowstorm_engine.molang;
+
+/**
+ * Molang 源码有语法错误。位置是源码中的字符下标 (从 0 开始)，消息中显示为从 1 开始的列号。
+ */
+public class MolangParseException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String source;
+    private final int position;
+
+    public MolangParseException(String message, String source, int position) {
+        super(message);
+        this.source = source;
+        this.position = position;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public String getMessage() {
+        return super.getMessage() + " at column " + (position + 1) + " in \"" + source + "\"";
+    }
+}
@@ -1,24 +1,96 @@
 package org.Lcing.snowstorm_engine.molang;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * 一个简单的 Molang 递归下降解析器。
- * 将诸如 "variable.age * 0.5 + 1" 之类的字符串解析为 IMolangExpression 树。
+ * Molang 解析器。
+ * 将诸如 "variable.age * 0.5 + 1" 之类的字符串解析为 IMolangExpression 树：
+ * 先由 {@link MolangLexer} 一次分词为记号数组，再按运算符优先级爬升解析。语法错误抛出带位置的 {@link MolangParseException}。
+ * 支持多语句脚本 ("temp.a = ...; variable.b = ...; return ...;")：temp.* 变量分配到每次求值清零的槽位，
+ * variable.* 的写入直接写槽位，不经过按名称的查找。
+ * 运算符优先级从低到高: ?: (及二元 ?)、??、||、&&、== !=、< <= > >=、+ -、* /、一元 - + !。
+ * 解析器绑定到一个粒子定义的 {@link MolangVariableSchema}，变量名在解析时被解析为槽位。
+ * 非常量表达式被包装为 {@link MolangCallSite} 并记录下来，以便定义编译完成后对它们统一做进一步优化。
  */
 public class MolangParser {
 
-    public static IMolangExpression parse(String expression) {
+    private final MolangVariableSchema schema;
+    private final List<MolangCallSite> callSites = new ArrayList<>();
+    // 绑定到发射器级槽位的 PER_TICK 查询 (按查询名和参数去重)
+    private final List<MolangQueryRegistry.Binding> queryBindings = new ArrayList<>();
+    private final Map<String, Integer> querySlots = new HashMap<>();
+    private final Set<String> unknownFunctions = new LinkedHashSet<>();
+
+    public MolangParser(MolangVariableSchema schema) {
+        this.schema = schema;
+    }
+
+    public MolangVariableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 此解析器产生的所有调用点。
+     */
+    public List<MolangCallSite> getCallSites() {
+        return callSites;
+    }
+
+    /**
+     * 需要每个发射器每 tick 计算一次的查询。
+     */
+    public List<MolangQueryRegistry.Binding> getQueryBindings() {
+        return queryBindings;
+    }
+
+    /**
+     * 解析过程中遇到的未注册函数 (已按 0 处理)。
+     */
+    public Set<String> getUnknownFunctions() {
+        return Collections.unmodifiableSet(unknownFunctions);
+    }
+
+    public IMolangExpression parse(String expression) {
+        return parse(expression, null);
+    }
+
+    /**
+     * 解析表达式或脚本。
+     *
+     * @param assignScope 脚本中首次出现的 variable.* 赋值目标使用的作用域 (例如发射器脚本写入的变量为
+     *                    {@link MolangVariableSchema.Scope#EMITTER}，粒子读取时从发射器上下文取值)。
+     *                    为 null 时按变量名决定。
+     * @throws MolangParseException 源码有语法错误
+     */
+    public IMolangExpression parse(String expression, MolangVariableSchema.Scope assignScope) {
         if (expression == null || expression.trim().isEmpty()) {
             return IMolangExpression.ZERO;
         }
-        // 非常基础的分词器：按已知定界符分割但保留它们？
-        // 为了简单起见，我们将在专用的游标类中逐字符处理。
-        return new State(expression).parseExpression();
+        // 相同的源码 (在变量槽位一致时) 直接复用已解析的树，否则解析后进行常量折叠、代数化简和子树一致化
+        String key = MolangParseCache.key(expression, assignScope);
+        IMolangExpression tree = MolangParseCache.lookup(key, schema);
+        if (tree == null) {
+            State state = new State(expression, assignScope);
+            tree = MolangParseCache.intern(MolangOptimizer.optimize(state.parseScript()));
+            if (state.cacheable) {
+                MolangParseCache.store(key, tree);
+            }
+        }
+        if (tree.isConstant()) {
+            return tree;
+        }
+        MolangCallSite site = new MolangCallSite(expression, tree);
+        callSites.add(site);
+        return site;
     }
 
-    public static IMolangExpression parseJson(com.google.gson.JsonElement element) {
+    public IMolangExpression parseJson(com.google.gson.JsonElement element) {
         if (element == null)
             return IMolangExpression.ZERO;
         if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()) {
@@ -27,252 +99,340 @@ public class MolangParser {
         return parse(element.getAsString());
     }
 
-    private static class State {
-        private final String src;
-        private int pos = 0;
+    /**
+     * 解析脚本 (例如 emitter_initialization 的 creation_expression)。
+     *
+     * @see #parse(String, MolangVariableSchema.Scope)
+     */
+    public IMolangExpression parseJson(com.google.gson.JsonElement element, MolangVariableSchema.Scope assignScope) {
+        if (element == null || !element.isJsonPrimitive() || element.getAsJsonPrimitive().isNumber()) {
+            return parseJson(element);
+        }
+        return parse(element.getAsString(), assignScope);
+    }
+
+    /**
+     * 绑定查询。PER_TICK 且参数为常量的查询读取发射器级槽位，其余的每次求值调用处理函数。
+     */
+    private IMolangExpression bindQuery(String name, IMolangExpression[] args) {
+        String lower = name.toLowerCase();
+        MolangQueryRegistry.Entry entry = MolangQueryRegistry.get(lower);
+        boolean constantArgs = true;
+        for (IMolangExpression arg : args) {
+            constantArgs &= arg.isConstant();
+        }
+        if (entry.frequency != MolangQueryRegistry.Frequency.PER_TICK || !constantArgs) {
+            return new MolangExpressions.Query(lower, entry.query, args);
+        }
 
-        public State(String src) {
-            this.src = src;
+        float[] values = new float[args.length];
+        StringBuilder key = new StringBuilder(lower);
+        if (args.length > 0) {
+            key.append('(');
+            for (int i = 0; i < args.length; i++) {
+                values[i] = args[i].eval(null);
+                key.append(i > 0 ? "," : "").append(values[i]);
+            }
+            key.append(')');
+        }
+        String k = key.toString();
+        Integer slot = querySlots.get(k);
+        if (slot == null) {
+            slot = schema.slotOf(k, MolangVariableSchema.Scope.EMITTER);
+            querySlots.put(k, slot);
+            queryBindings.add(new MolangQueryRegistry.Binding(slot, entry.query, values));
         }
+        return new MolangExpressions.EmitterVariable(k, slot);
+    }
 
-        private int peek() {
-            if (pos >= src.length())
-                return -1;
-            return src.charAt(pos);
+    private class State {
+        private final MolangLexer lexer;
+        private final int[] kinds;
+        private final MolangVariableSchema.Scope assignScope;
+        // 当前记号的下标
+        private int p = 0;
+        // 本脚本使用的 temp.* 槽位
+        private final Set<Integer> temps = new LinkedHashSet<>();
+        // 解析结果是否只取决于源码和变量槽位 (绑定查询槽位、遇到未知函数时会修改解析器状态)
+        boolean cacheable = true;
+
+        public State(String src, MolangVariableSchema.Scope assignScope) {
+            this.lexer = MolangLexer.tokenize(src);
+            this.kinds = lexer.kind;
+            this.assignScope = assignScope;
         }
 
-        private int next() {
-            int c = peek();
-            if (c != -1)
-                pos++;
-            return c;
+        private int kind() {
+            return kinds[p];
         }
 
-        private boolean consume(char expected) {
-            skipWhitespace();
-            if (peek() == expected) {
-                pos++;
+        private boolean accept(int kind) {
+            if (kinds[p] == kind) {
+                p++;
                 return true;
             }
             return false;
         }
 
-        private void skipWhitespace() {
-            while (peek() != -1 && Character.isWhitespace(peek())) {
-                pos++;
+        private void expect(int kind) {
+            if (!accept(kind)) {
+                throw error("Expected " + MolangLexer.describe(kind) + " but found "
+                        + MolangLexer.describe(kinds[p]));
             }
         }
 
-        // 表达式 -> 项 { (+|-) 项 }
-        public IMolangExpression parseExpression() {
-            IMolangExpression left = parseTerm();
+        private MolangParseException error(String message) {
+            return new MolangParseException(message, lexer.source, lexer.start[p]);
+        }
 
+        // 脚本 -> 语句 { ; 语句 } [;]
+        // 单个表达式 (可以带结尾分号) 的值就是表达式的值；多条语句的值为 return 的值，没有 return 时为 0。
+        public IMolangExpression parseScript() {
+            List<IMolangExpression> statements = new ArrayList<>();
+            IMolangExpression result = null;
             while (true) {
-                skipWhitespace();
-                int c = peek();
-                if (c == '+') {
-                    consume('+');
-                    IMolangExpression right = parseTerm();
-                    left = new MolangExpressions.BinaryOp(left, right, MolangExpressions.BinaryOp.OpType.ADD);
-                } else if (c == '-') {
-                    consume('-');
-                    IMolangExpression right = parseTerm();
-                    left = new MolangExpressions.BinaryOp(left, right, MolangExpressions.BinaryOp.OpType.SUBTRACT);
-                } else {
-                    break;
+                if (kind() != MolangLexer.EOF && kind() != MolangLexer.SEMI) {
+                    boolean isReturn = lexer.isKeyword(p, "return");
+                    if (isReturn) {
+                        p++;
+                    }
+                    IMolangExpression statement = isReturn ? parseExpression() : parseStatement();
+                    // return 之后的语句不会执行
+                    if (result == null) {
+                        if (isReturn) {
+                            result = statement;
+                        } else {
+                            statements.add(statement);
+                        }
+                    }
+                }
+                if (accept(MolangLexer.SEMI)) {
+                    continue;
                 }
+                if (kind() != MolangLexer.EOF) {
+                    throw error("Unexpected " + MolangLexer.describe(kind()));
+                }
+                break;
             }
-            return left;
-        }
-
-        // 项 -> 因子 { (*|/) 因子 }
-        private IMolangExpression parseTerm() {
-            IMolangExpression left = parseFactor();
 
-            while (true) {
-                skipWhitespace();
-                int c = peek();
-                if (c == '*') {
-                    consume('*');
-                    IMolangExpression right = parseFactor();
-                    left = new MolangExpressions.BinaryOp(left, right, MolangExpressions.BinaryOp.OpType.MULTIPLY);
-                } else if (c == '/') {
-                    consume('/');
-                    IMolangExpression right = parseFactor();
-                    left = new MolangExpressions.BinaryOp(left, right, MolangExpressions.BinaryOp.OpType.DIVIDE);
-                } else {
-                    break;
-                }
+            if (result == null && statements.size() == 1
+                    && !(statements.get(0) instanceof MolangExpressions.Assign)) {
+                result = statements.remove(0);
+            }
+            if (result == null) {
+                result = IMolangExpression.ZERO;
             }
-            return left;
+            if (statements.isEmpty() && temps.isEmpty()) {
+                return result;
+            }
+            int[] tempSlots = temps.stream().mapToInt(Integer::intValue).toArray();
+            return new MolangExpressions.Script(tempSlots, statements.toArray(new IMolangExpression[0]), result);
         }
 
-        // 因子 -> 数字 | 变量 | 函数 | ( 表达式 ) | -因子 (一元减号)
-        private IMolangExpression parseFactor() {
-            skipWhitespace();
-            int c = peek();
-
-            // 括号
-            if (consume('(')) {
-                IMolangExpression expr = parseExpression();
-                consume(')');
-                return expr;
+        // 语句 -> 名称 = 表达式 | 表达式
+        private IMolangExpression parseStatement() {
+            if (kind() == MolangLexer.IDENT && kinds[p + 1] == MolangLexer.ASSIGN) {
+                String name = lexer.identifier(p);
+                p += 2;
+                return assign(name, parseExpression());
             }
+            return parseExpression();
+        }
 
-            // 一元减号：检查 '-' 后面是否跟着字母（函数/变量）
-            // 或另一个 '(' （表达式）
-            if (c == '-') {
-                int nextPos = pos + 1;
-                if (nextPos < src.length()) {
-                    char nextChar = src.charAt(nextPos);
-                    // 如果下一个字符是字母或 '('，则视为一元减号
-                    if (Character.isLetter(nextChar) || nextChar == '(') {
-                        next(); // 消耗 '-'
-                        IMolangExpression inner = parseFactor();
-                        return new MolangExpressions.UnaryMinus(inner);
-                    }
-                }
-                // 否则继续执行以解析像 -5.0 这样的负数
+        private IMolangExpression assign(String name, IMolangExpression value) {
+            if (name.startsWith("temp.")) {
+                int slot = schema.slotOf(name);
+                temps.add(slot);
+                return new MolangExpressions.Assign(name, slot, false, value);
             }
-
-            // 数字
-            if (Character.isDigit(c) || c == '.' || c == '-') {
-                return parseNumber();
+            if (name.startsWith("variable.")) {
+                int slot = assignScope != null ? schema.slotOf(name, assignScope) : schema.slotOf(name);
+                boolean emitter = schema.scopeOf(slot) == MolangVariableSchema.Scope.EMITTER;
+                return new MolangExpressions.Assign(name, slot, emitter, value);
             }
+            // query.* 等命名空间是只读的，只计算右侧
+            return value;
+        }
 
-            // 标识符 (变量或函数)
-            if (Character.isLetter(c) || c == '_') {
-                return parseIdentifier();
+        // 表达式 -> 二元 [ ? 表达式 [ : 表达式 ] ]   (右结合，优先级最低)
+        public IMolangExpression parseExpression() {
+            IMolangExpression condition = parseBinary(1);
+            if (accept(MolangLexer.QUESTION)) {
+                IMolangExpression whenTrue = parseExpression();
+                // 二元形式 cond ? value 在条件不成立时为 0
+                IMolangExpression whenFalse = accept(MolangLexer.COLON) ? parseExpression() : IMolangExpression.ZERO;
+                return new MolangExpressions.Conditional(condition, whenTrue, whenFalse);
             }
-
-            // 默认回退
-            next(); // 消耗无效字符
-            return IMolangExpression.ZERO;
+            return condition;
         }
 
-        private IMolangExpression parseIdentifier() {
-            StringBuilder sb = new StringBuilder();
+        // 二元运算按优先级爬升解析，所有二元运算符都是左结合的
+        private IMolangExpression parseBinary(int minPrecedence) {
+            IMolangExpression left = parseUnary();
             while (true) {
-                int c = peek();
-                if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
-                    sb.append((char) next());
-                } else {
-                    break;
+                int op = kind();
+                int precedence = precedence(op);
+                if (precedence < minPrecedence) {
+                    return left;
                 }
+                p++;
+                left = binary(op, left, parseBinary(precedence + 1));
             }
-            String name = sb.toString();
-
-            // 扩展基岩版变量简写
-            if (name.startsWith("v.")) {
-                name = "variable." + name.substring(2);
-            } else if (name.startsWith("q.")) {
-                name = "query." + name.substring(2);
-            } else if (name.startsWith("t.")) {
-                name = "temp." + name.substring(2);
-            } else if (name.startsWith("c.")) {
-                name = "context." + name.substring(2);
-            }
+        }
 
-            skipWhitespace();
-            // 函数调用?
-            if (peek() == '(') {
-                return parseFunctionCall(name);
-            }
+        private IMolangExpression binary(int op, IMolangExpression left, IMolangExpression right) {
+            return switch (op) {
+                case MolangLexer.COALESCE -> new MolangExpressions.NullCoalesce(left, right);
+                case MolangLexer.OR -> new MolangExpressions.Conditional(left, IMolangExpression.constant(1),
+                        truth(right));
+                case MolangLexer.AND -> new MolangExpressions.Conditional(left, truth(right), IMolangExpression.ZERO);
+                case MolangLexer.EQ -> compare(left, right, MolangExpressions.Comparison.CompareType.EQUAL);
+                case MolangLexer.NE -> compare(left, right, MolangExpressions.Comparison.CompareType.NOT_EQUAL);
+                case MolangLexer.LT -> compare(left, right, MolangExpressions.Comparison.CompareType.LESS);
+                case MolangLexer.LE -> compare(left, right, MolangExpressions.Comparison.CompareType.LESS_EQUAL);
+                case MolangLexer.GT -> compare(left, right, MolangExpressions.Comparison.CompareType.GREATER);
+                case MolangLexer.GE -> compare(left, right, MolangExpressions.Comparison.CompareType.GREATER_EQUAL);
+                case MolangLexer.PLUS -> new MolangExpressions.BinaryOp(left, right,
+                        MolangExpressions.BinaryOp.OpType.ADD);
+                case MolangLexer.MINUS -> new MolangExpressions.BinaryOp(left, right,
+                        MolangExpressions.BinaryOp.OpType.SUBTRACT);
+                case MolangLexer.STAR -> new MolangExpressions.BinaryOp(left, right,
+                        MolangExpressions.BinaryOp.OpType.MULTIPLY);
+                case MolangLexer.SLASH -> new MolangExpressions.BinaryOp(left, right,
+                        MolangExpressions.BinaryOp.OpType.DIVIDE);
+                default -> throw new IllegalStateException("Not a binary operator: " + op);
+            };
+        }
 
-            return new MolangExpressions.Variable(name);
+        private IMolangExpression compare(IMolangExpression left, IMolangExpression right,
+                MolangExpressions.Comparison.CompareType type) {
+            return new MolangExpressions.Comparison(left, right, type);
         }
 
-        private IMolangExpression parseFunctionCall(String funcName) {
-            consume('(');
-            List<IMolangExpression> args = new ArrayList<>();
-            if (peek() != ')') {
-                args.add(parseExpression());
-                while (consume(',')) {
-                    args.add(parseExpression());
-                }
+        /**
+         * 把值转换为 0/1 (比较的结果已经是 0/1)。
+         */
+        private IMolangExpression truth(IMolangExpression value) {
+            if (value instanceof MolangExpressions.Comparison) {
+                return value;
             }
-            consume(')');
-
-            // 不区分大小写匹配 (基岩版允许 Math.random 和 math.random)
-            String fn = funcName.toLowerCase();
+            return compare(value, IMolangExpression.ZERO, MolangExpressions.Comparison.CompareType.NOT_EQUAL);
+        }
 
-            if (fn.equals("math.random") && args.size() >= 2) {
-                return new MolangExpressions.MathRandom(args.get(0), args.get(1));
-            }
-            if (fn.equals("math.sin") && args.size() >= 1) {
-                return new MolangExpressions.MathSin(args.get(0));
-            }
-            if (fn.equals("math.cos") && args.size() >= 1) {
-                return new MolangExpressions.MathCos(args.get(0));
-            }
-            if (fn.equals("math.abs") && args.size() >= 1) {
-                return new MolangExpressions.MathAbs(args.get(0));
-            }
-            if (fn.equals("math.clamp") && args.size() >= 3) {
-                return new MolangExpressions.MathClamp(args.get(0), args.get(1), args.get(2));
+        // 一元 -> - 一元 | + 一元 | ! 一元 | 基本
+        private IMolangExpression parseUnary() {
+            if (accept(MolangLexer.MINUS)) {
+                IMolangExpression inner = parseUnary();
+                if (inner instanceof MolangExpressions.Constant c) {
+                    return IMolangExpression.constant(-c.getValue());
+                }
+                return new MolangExpressions.UnaryMinus(inner);
             }
-            if (fn.equals("math.lerp") && args.size() >= 3) {
-                return new MolangExpressions.MathLerp(args.get(0), args.get(1), args.get(2));
+            if (accept(MolangLexer.PLUS)) {
+                return parseUnary();
             }
-            if (fn.equals("math.floor") && args.size() >= 1) {
-                return new MolangExpressions.MathFloor(args.get(0));
+            // 逻辑非: !x 即 x == 0
+            if (accept(MolangLexer.NOT)) {
+                return compare(parseUnary(), IMolangExpression.ZERO, MolangExpressions.Comparison.CompareType.EQUAL);
             }
-            if (fn.equals("math.ceil") && args.size() >= 1) {
-                return new MolangExpressions.MathCeil(args.get(0));
+            return parsePrimary();
+        }
+
+        // 基本 -> 数字 | 变量 | 函数调用 | ( 表达式 )
+        private IMolangExpression parsePrimary() {
+            switch (kind()) {
+                case MolangLexer.NUMBER -> {
+                    return IMolangExpression.constant(lexer.number[p++]);
+                }
+                case MolangLexer.LPAREN -> {
+                    p++;
+                    IMolangExpression expr = parseExpression();
+                    expect(MolangLexer.RPAREN);
+                    return expr;
+                }
+                case MolangLexer.IDENT -> {
+                    return parseIdentifier();
+                }
+                case MolangLexer.STRING -> throw error("String literals are not supported");
+                case MolangLexer.ARROW, MolangLexer.LBRACE, MolangLexer.LBRACKET ->
+                    throw error(MolangLexer.describe(kind()) + " is not supported");
+                default -> throw error("Expected a value but found " + MolangLexer.describe(kind()));
             }
-            if (fn.equals("math.mod") && args.size() >= 2) {
-                return new MolangExpressions.MathMod(args.get(0), args.get(1));
+        }
+
+        private IMolangExpression parseIdentifier() {
+            String name = lexer.identifier(p++);
+
+            // 函数调用?
+            if (kind() == MolangLexer.LPAREN) {
+                return parseFunctionCall(name);
             }
-            if (fn.equals("math.pow") && args.size() >= 2) {
-                return new MolangExpressions.MathPow(args.get(0), args.get(1));
+
+            // 不带参数的 math.random 等价于 math.random(0, 1)，与函数调用一样不区分大小写
+            if (name.equalsIgnoreCase("math.random")) {
+                return new MolangExpressions.MathRandom(IMolangExpression.ZERO, IMolangExpression.constant(1));
             }
-            if (fn.equals("math.sqrt") && args.size() >= 1) {
-                return new MolangExpressions.MathSqrt(args.get(0));
+
+            // 已注册的查询在此绑定，未注册的 query.* 仍是普通变量
+            if (isQuery(name) && MolangQueryRegistry.contains(name)) {
+                cacheable = false;
+                return bindQuery(name, IMolangExpression.NO_CHILDREN);
             }
-            if (fn.equals("math.atan2") && args.size() >= 2) {
-                return new MolangExpressions.MathAtan2(args.get(0), args.get(1));
+
+            int slot = schema.slotOf(name);
+            if (name.startsWith("temp.")) {
+                temps.add(slot);
             }
-            if (fn.equals("math.min") && args.size() >= 2) {
-                return new MolangExpressions.MathMin(args.get(0), args.get(1));
+            if (schema.scopeOf(slot) == MolangVariableSchema.Scope.EMITTER) {
+                return new MolangExpressions.EmitterVariable(name, slot);
             }
-            if (fn.equals("math.max") && args.size() >= 2) {
-                return new MolangExpressions.MathMax(args.get(0), args.get(1));
+            return new MolangExpressions.Variable(name, slot);
+        }
+
+        private IMolangExpression parseFunctionCall(String funcName) {
+            expect(MolangLexer.LPAREN);
+            List<IMolangExpression> args = new ArrayList<>();
+            if (kind() != MolangLexer.RPAREN) {
+                do {
+                    args.add(parseExpression());
+                } while (accept(MolangLexer.COMMA));
             }
-            if (fn.equals("math.die_roll") && args.size() >= 3) {
-                return new MolangExpressions.MathDieRoll(args.get(0), args.get(1), args.get(2));
+            expect(MolangLexer.RPAREN);
+
+            IMolangExpression[] argArray = args.toArray(new IMolangExpression[0]);
+            if (isQuery(funcName) && MolangQueryRegistry.contains(funcName)) {
+                cacheable = false;
+                return bindQuery(funcName, argArray);
             }
-            if (fn.equals("math.hermite_blend") && args.size() >= 1) {
-                return new MolangExpressions.MathHermiteBlend(args.get(0));
+
+            // 不区分大小写匹配 (基岩版允许 Math.random 和 math.random)
+            IMolangExpression call = MolangFunctionRegistry.bind(funcName, argArray);
+            if (call != null) {
+                return call;
             }
 
-            // 未知函数回退
+            // 未知函数 (或参数不足) 回退为 0
+            unknownFunctions.add(funcName);
+            cacheable = false;
             return IMolangExpression.ZERO;
         }
 
-        private IMolangExpression parseNumber() {
-            StringBuilder sb = new StringBuilder();
-            if (peek() == '-') { // 如果在数字开头处理负数
-                sb.append((char) next());
-            }
-
-            boolean hasDot = false;
-            while (true) {
-                int c = peek();
-                if (Character.isDigit(c)) {
-                    sb.append((char) next());
-                } else if (c == '.' && !hasDot) {
-                    sb.append((char) next());
-                    hasDot = true;
-                } else {
-                    break;
-                }
-            }
-            try {
-                float val = Float.parseFloat(sb.toString());
-                return IMolangExpression.constant(val);
-            } catch (NumberFormatException e) {
-                return IMolangExpression.ZERO;
-            }
+        private boolean isQuery(String name) {
+            return name.regionMatches(true, 0, "query.", 0, 6);
         }
     }
+
+    // 二元运算符的优先级 (越大结合越紧)，不是二元运算符时为 -1
+    private static int precedence(int kind) {
+        return switch (kind) {
+            case MolangLexer.COALESCE -> 1;
+            case MolangLexer.OR -> 2;
+            case MolangLexer.AND -> 3;
+            case MolangLexer.EQ, MolangLexer.NE -> 4;
+            case MolangLexer.LT, MolangLexer.LE, MolangLexer.GT, MolangLexer.GE -> 5;
+            case MolangLexer.PLUS, MolangLexer.MINUS -> 6;
+            case MolangLexer.STAR, MolangLexer.SLASH -> 7;
+            default -> -1;
+        };
+    }
 }
@@ -0,0 +1,220 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 采样式 Molang 求值分析器 (默认关闭)。
+ *
+ * 开启时，模板编译在每个调用点的求值目标外包一层 {@link Profiled}，按 (定义, 组件, 源码) 统计求值次数，
+ * 并每 {@link #SAMPLE_INTERVAL} 次求值计时一次，按采样比例估计总耗时。
+ * 关闭时不安装任何包装，求值路径与未分析时完全相同；开关只对之后编译的模板生效。
+ *
+ * 发射器级表达式按每次发射器 tick 计数；公共子表达式的耗时计入首先求值它的表达式。
+ */
+public final class MolangProfiler {
+
+    // 每个包装每多少次求值计时一次 (2 的幂)
+    public static final int SAMPLE_INTERVAL = 16;
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+
+    private MolangProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static void reset() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * 一个表达式的统计数据。
+     */
+    public static final class Entry {
+        private final String definition;
+        private final String owner;
+        private final String source;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sampledCount = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+
+        Entry(String definition, String owner, String source) {
+            this.definition = definition;
+            this.owner = owner;
+            this.source = source;
+        }
+
+        public String getDefinition() {
+            return definition;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * 按采样比例估计的总耗时 (纳秒)。
+         */
+        public double getEstimatedNanos() {
+            long samples = sampledCount.sum();
+            return samples == 0 ? 0 : sampledNanos.sum() * ((double) count.sum() / samples);
+        }
+
+        public double getNanosPerEval() {
+            long samples = sampledCount.sum();
+            return samples == 0 ? 0 : (double) sampledNanos.sum() / samples;
+        }
+    }
+
+    /**
+     * 计数和采样计时包装。计数器只在单个包装内递增，不要求精确同步。
+     */
+    public static final class Profiled implements IMolangExpression {
+        private final IMolangExpression target;
+        private final Entry entry;
+        private int tick;
+
+        Profiled(IMolangExpression target, Entry entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            entry.count.increment();
+            if ((++tick & (SAMPLE_INTERVAL - 1)) != 0) {
+                return target.eval(context);
+            }
+            long start = System.nanoTime();
+            float value = target.eval(context);
+            entry.sampledNanos.add(System.nanoTime() - start);
+            entry.sampledCount.increment();
+            return value;
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            int n = to - from;
+            entry.count.add(n);
+            if ((++tick & (SAMPLE_INTERVAL - 1)) != 0) {
+                target.evalBatch(batch, out, from, to);
+                return;
+            }
+            long start = System.nanoTime();
+            target.evalBatch(batch, out, from, to);
+            entry.sampledNanos.add(System.nanoTime() - start);
+            entry.sampledCount.add(n);
+        }
+
+        @Override
+        public boolean isConstant() {
+            return target.isConstant();
+        }
+
+        @Override
+        public boolean isPure() {
+            return target.isPure();
+        }
+
+        public IMolangExpression getTarget() {
+            return target;
+        }
+    }
+
+    /**
+     * 包装一个求值目标。分析器关闭时原样返回。
+     */
+    public static IMolangExpression wrap(IMolangExpression target, String definition, String owner, String source) {
+        if (!enabled || target == null) {
+            return target;
+        }
+        String key = definition + '\n' + owner + '\n' + source;
+        Entry entry = ENTRIES.computeIfAbsent(key, k -> new Entry(definition, owner, source));
+        return new Profiled(target, entry);
+    }
+
+    /**
+     * 包装调用点的求值目标和批量目标。
+     */
+    public static void instrument(MolangCallSite site, String definition, String owner) {
+        if (!enabled) {
+            return;
+        }
+        site.setTarget(wrap(site.getTarget(), definition, owner, site.getSource()));
+        if (site.getBatchTarget() != null) {
+            site.setBatchTarget(wrap(site.getBatchTarget(), definition, owner, site.getSource()));
+        }
+    }
+
+    /**
+     * 按估计总耗时排序的统计数据。
+     */
+    public static List<Entry> snapshot() {
+        List<Entry> list = new ArrayList<>(ENTRIES.values());
+        list.sort(Comparator.comparingDouble(Entry::getEstimatedNanos).reversed());
+        return list;
+    }
+
+    /**
+     * 生成报告：总耗时最高的 limit 个表达式，以及每个定义的合计。
+     */
+    public static List<String> report(int limit) {
+        List<String> lines = new ArrayList<>();
+        List<Entry> entries = snapshot();
+        if (entries.isEmpty()) {
+            lines.add(enabled ? "Molang profile: no samples yet"
+                    : "Molang profile: disabled (/snowstorm profile molang start)");
+            return lines;
+        }
+        double total = 0;
+        Map<String, double[]> perDefinition = new LinkedHashMap<>();
+        for (Entry e : entries) {
+            double nanos = e.getEstimatedNanos();
+            total += nanos;
+            double[] sum = perDefinition.computeIfAbsent(e.getDefinition(), k -> new double[2]);
+            sum[0] += nanos;
+            sum[1] += e.getCount();
+        }
+        lines.add(String.format("Molang profile: %d expressions, %.2f ms total (sampled 1/%d)", entries.size(),
+                total / 1e6, SAMPLE_INTERVAL));
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            Entry e = entries.get(i);
+            lines.add(String.format("%2d. %8.2f ms %10d evals %7.1f ns/eval  %s / %s : %s", i + 1,
+                    e.getEstimatedNanos() / 1e6, e.getCount(), e.getNanosPerEval(), e.getDefinition(), e.getOwner(),
+                    abbreviate(e.getSource(), 80)));
+        }
+        lines.add("Per definition:");
+        perDefinition.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue()[0], a.getValue()[0]))
+                .limit(limit)
+                .forEach(d -> lines.add(String.format("    %8.2f ms %10.0f evals  %s", d.getValue()[0] / 1e6,
+                        d.getValue()[1], d.getKey())));
+        return lines;
+    }
+
+    private static String abbreviate(String source, int max) {
+        String s = source.replaceAll("\\s+", " ").trim();
+        return s.length() <= max ? s : s.substring(0, max - 3) + "...";
+    }
+}
@@ -0,0 +1,84 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Molang 查询 (query.*) 注册表。
+ * 查询在解析时绑定：
+ * - {@link Frequency#PER_TICK} 且参数都是常量的查询被分配一个发射器级槽位，每个发射器每 tick 只计算一次，
+ * 所有粒子读取同一个值 (之后的求值频率分析也会把依赖它的表达式提升到发射器级)。
+ * - 其他查询成为 {@link MolangExpressions.Query} 节点，每次求值直接调用处理函数。
+ * 未注册的 query.* 名称仍按普通变量处理 (可以通过 {@link MolangContext#setVariable} 写入)。
+ *
+ * 其他模组可以在粒子加载之前通过 {@link #register} 添加查询。
+ */
+public class MolangQueryRegistry {
+
+    @FunctionalInterface
+    public interface Query {
+        /**
+         * @param ctx  求值上下文。PER_TICK 查询收到的是发射器上下文，可通过 {@link MolangContext#getOwner()} 取得发射器。
+         * @param args 参数 (无参数时为空数组)。数组在调用之间复用，不要保留它的引用
+         */
+        float evaluate(MolangContext ctx, float[] args);
+    }
+
+    public enum Frequency {
+        // 在一个 tick 内不变 (时间、相机、附着实体等)
+        PER_TICK,
+        // 每次求值都可能不同 (例如依赖粒子位置)
+        PER_EVALUATION
+    }
+
+    static class Entry {
+        final Query query;
+        final Frequency frequency;
+
+        Entry(Query query, Frequency frequency) {
+            this.query = query;
+            this.frequency = frequency;
+        }
+    }
+
+    /**
+     * 一个已绑定到发射器级槽位的 PER_TICK 查询。
+     */
+    public static class Binding {
+        final int slot;
+        final Query query;
+        final float[] args;
+
+        Binding(int slot, Query query, float[] args) {
+            this.slot = slot;
+            this.query = query;
+            this.args = args;
+        }
+
+        /**
+         * 计算查询并写入发射器上下文。
+         */
+        public void evaluate(MolangContext emitterContext) {
+            emitterContext.set(slot, query.evaluate(emitterContext, args));
+        }
+    }
+
+    // 其他模组在并行的模组构造阶段注册，解析器在资源重新加载线程中读取
+    private static final Map<String, Entry> QUERIES = new ConcurrentHashMap<>();
+
+    /**
+     * 注册查询。名称为完整形式 (query.xxx)，不区分大小写，同名时覆盖之前的注册。
+     */
+    public static void register(String name, Frequency frequency, Query query) {
+        QUERIES.put(name.toLowerCase(), new Entry(query, frequency));
+        MolangParseCache.clear();
+    }
+
+    public static boolean contains(String name) {
+        return QUERIES.containsKey(name.toLowerCase());
+    }
+
+    static Entry get(String name) {
+        return QUERIES.get(name.toLowerCase());
+    }
+}
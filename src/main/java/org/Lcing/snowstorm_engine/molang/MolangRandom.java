@@ -0,0 +1,65 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SplitMix64 随机数生成器的静态实现。
+ * 状态只是一个 long (存放在 {@link MolangContext} 中)，没有对象分配和原子操作。
+ * 粒子的随机流由发射器的随机流派生 ({@link #split})，因此给定发射器种子后整个效果是可复现的。
+ */
+public final class MolangRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final float FLOAT_UNIT = 0x1.0p-24f;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // 未指定种子时的种子来源 (只在创建发射器时使用一次)
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(System.nanoTime());
+
+    private MolangRandom() {
+    }
+
+    /**
+     * 生成一个新的 (不可复现的) 种子。
+     */
+    public static long newSeed() {
+        return mix64(SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime());
+    }
+
+    /**
+     * 推进状态。
+     */
+    static long advance(long state) {
+        return state + GOLDEN_GAMMA;
+    }
+
+    /**
+     * 由 (已推进的) 状态得到输出。
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 从父随机流派生一个独立的子流的初始状态 (推进父流一次)。
+     */
+    static long split(MolangContext parent) {
+        return mix64(parent.nextLong()) ^ 0x5DEECE66DL;
+    }
+
+    static float toFloat(long bits) {
+        return (bits >>> 40) * FLOAT_UNIT;
+    }
+
+    static double toDouble(long bits) {
+        return (bits >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * [0, bound) 上的整数 (bound 必须为正)。使用乘法映射，偏差可以忽略。
+     */
+    static int toInt(long bits, int bound) {
+        return (int) (((bits >>> 32) * bound) >>> 32);
+    }
+}
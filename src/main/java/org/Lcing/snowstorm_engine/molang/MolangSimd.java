@@ -0,0 +1,104 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+/**
+ * 基于 Vector API (jdk.incubator.vector) 的批量求值入口。
+ * 只由四则运算、取负、abs、min/max、clamp、lerp、floor、sqrt 和变量/常量组成的表达式，
+ * 在批量求值时每次处理 FloatVector.SPECIES_PREFERRED 个粒子。
+ *
+ * 向量模块需要以 --add-modules jdk.incubator.vector 启动 JVM。模块不可用时 {@link #isAvailable()} 返回 false，
+ * 所有表达式继续使用标量批量求值。本类不直接引用向量 API，实际实现在 {@link MolangSimdKernel} 中，
+ * 只有确认模块可用后才会加载。
+ */
+public final class MolangSimd {
+    private static final boolean AVAILABLE = detect();
+    private static boolean enabled = true;
+
+    private static int vectorizedCount = 0;
+
+    private MolangSimd() {
+    }
+
+    private static boolean detect() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return MolangSimdKernel.lanes() > 1;
+        } catch (Throwable t) {
+            // 模块存在但无法链接 (例如当前模块层不可读)
+            return false;
+        }
+    }
+
+    /**
+     * 向量模块是否可用。
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * 每个向量的粒子数 (模块不可用时为 1)。
+     */
+    public static int lanes() {
+        return AVAILABLE ? MolangSimdKernel.lanes() : 1;
+    }
+
+    public static int getVectorizedCount() {
+        return vectorizedCount;
+    }
+
+    public static void resetStats() {
+        vectorizedCount = 0;
+    }
+
+    /**
+     * 表达式树是否只包含可以向量化的节点。{@link Shared} 节点按其内部表达式处理 (纯表达式，重新计算结果相同)。
+     */
+    public static boolean isVectorizable(IMolangExpression node) {
+        if (node instanceof Constant || node instanceof Variable) {
+            return true;
+        }
+        if (node instanceof Shared || node instanceof BinaryOp || node instanceof UnaryMinus
+                || node instanceof MathAbs || node instanceof MathMin || node instanceof MathMax
+                || node instanceof MathClamp || node instanceof MathLerp || node instanceof MathFloor
+                || node instanceof MathSqrt) {
+            for (IMolangExpression child : node.children()) {
+                if (!isVectorizable(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 尝试为调用点设置向量化的批量求值目标。标量求值 (eval) 不受影响。
+     *
+     * @return 是否已向量化
+     */
+    public static boolean vectorize(MolangCallSite site) {
+        if (!AVAILABLE || !enabled) {
+            return false;
+        }
+        IMolangExpression tree = site.getTree();
+        // 单个变量或常量的批量求值已经是数组复制，无需向量化
+        if (tree.children().length == 0 || !isVectorizable(tree)) {
+            return false;
+        }
+        site.setBatchTarget(MolangSimdKernel.compile(tree));
+        vectorizedCount++;
+        return true;
+    }
+}
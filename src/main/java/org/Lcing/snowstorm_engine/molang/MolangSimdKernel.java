@@ -0,0 +1,320 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions.*;
+
+/**
+ * 向量化的批量求值 (只能通过 {@link MolangSimd} 使用)。
+ * 表达式树被转换为一组按列执行的运算：每个运算对 [from, to) 以向量宽度为步长处理，剩余部分用标量循环补齐。
+ * 标量部分与 {@link MolangExpressions} 中的实现逐位一致 (除零返回 0 等)。
+ */
+final class MolangSimdKernel implements IMolangExpression {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final IMolangExpression tree;
+    private final Op root;
+
+    private MolangSimdKernel(IMolangExpression tree, Op root) {
+        this.tree = tree;
+        this.root = root;
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static MolangSimdKernel compile(IMolangExpression tree) {
+        return new MolangSimdKernel(tree, build(tree));
+    }
+
+    @Override
+    public float eval(MolangContext context) {
+        return tree.eval(context);
+    }
+
+    @Override
+    public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+        root.run(batch, out, from, to);
+    }
+
+    @Override
+    public boolean isConstant() {
+        return tree.isConstant();
+    }
+
+    @Override
+    public boolean isPure() {
+        return MolangOptimizer.isPureTree(tree);
+    }
+
+    private static Op build(IMolangExpression node) {
+        if (node instanceof Constant c) {
+            return new Const(c.getValue());
+        }
+        if (node instanceof EmitterVariable v) {
+            return new LoadEmitter(v.getSlot());
+        }
+        if (node instanceof Variable v) {
+            return new Load(v.getSlot());
+        }
+        IMolangExpression[] c = node.children();
+        if (node instanceof Shared) {
+            return build(c[0]);
+        }
+        if (node instanceof BinaryOp op) {
+            int kind = switch (op.getType()) {
+                case ADD -> Binary.ADD;
+                case SUBTRACT -> Binary.SUB;
+                case MULTIPLY -> Binary.MUL;
+                case DIVIDE -> Binary.DIV;
+            };
+            return new Binary(kind, build(c[0]), build(c[1]));
+        }
+        if (node instanceof MathMin)
+            return new Binary(Binary.MIN, build(c[0]), build(c[1]));
+        if (node instanceof MathMax)
+            return new Binary(Binary.MAX, build(c[0]), build(c[1]));
+        if (node instanceof UnaryMinus)
+            return new Unary(Unary.NEG, build(c[0]));
+        if (node instanceof MathAbs)
+            return new Unary(Unary.ABS, build(c[0]));
+        if (node instanceof MathSqrt)
+            return new Unary(Unary.SQRT, build(c[0]));
+        if (node instanceof MathFloor)
+            return new Unary(Unary.FLOOR, build(c[0]));
+        if (node instanceof MathClamp)
+            return new Clamp(build(c[0]), build(c[1]), build(c[2]));
+        if (node instanceof MathLerp)
+            return new Lerp(build(c[0]), build(c[1]), build(c[2]));
+        throw new IllegalArgumentException("Not vectorizable: " + node.getClass().getSimpleName());
+    }
+
+    private abstract static class Op {
+        abstract void run(ParticleBatch batch, float[] out, int from, int to);
+    }
+
+    private static final class Const extends Op {
+        final float value;
+
+        Const(float value) {
+            this.value = value;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            java.util.Arrays.fill(out, from, to, value);
+        }
+    }
+
+    private static final class Load extends Op {
+        final int slot;
+
+        Load(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            System.arraycopy(batch.column(slot), from, out, from, to - from);
+        }
+    }
+
+    private static final class LoadEmitter extends Op {
+        final int slot;
+
+        LoadEmitter(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            if (from < to) {
+                java.util.Arrays.fill(out, from, to, batch.contexts()[from].emitter.slots[slot]);
+            }
+        }
+    }
+
+    private static final class Unary extends Op {
+        static final int NEG = 0, ABS = 1, SQRT = 2, FLOOR = 3;
+        final int kind;
+        final Op arg;
+
+        Unary(int kind, Op arg) {
+            this.kind = kind;
+            this.arg = arg;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            arg.run(batch, out, from, to);
+            if (kind == FLOOR) {
+                // Vector API (JDK 17) 没有 floor 运算
+                for (int i = from; i < to; i++)
+                    out[i] = (float) Math.floor(out[i]);
+                return;
+            }
+            int i = from;
+            int upper = from + SPECIES.loopBound(to - from);
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector x = FloatVector.fromArray(SPECIES, out, i);
+                FloatVector r = switch (kind) {
+                    case NEG -> x.neg();
+                    case ABS -> x.abs();
+                    default -> x.lanewise(VectorOperators.SQRT);
+                };
+                r.intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                float x = out[i];
+                out[i] = switch (kind) {
+                    case NEG -> -x;
+                    case ABS -> Math.abs(x);
+                    default -> (float) Math.sqrt(x);
+                };
+            }
+        }
+    }
+
+    private static final class Binary extends Op {
+        static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, MIN = 4, MAX = 5;
+        final int kind;
+        final Op left, right;
+
+        Binary(int kind, Op left, Op right) {
+            this.kind = kind;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            left.run(batch, out, from, to);
+            if (right instanceof Const c) {
+                runScalar(out, c.value, from, to);
+                return;
+            }
+            float[] r;
+            boolean scratch = !(right instanceof Load);
+            if (scratch) {
+                r = batch.acquire();
+                right.run(batch, r, from, to);
+            } else {
+                // 直接读取变量列，省去一次复制
+                r = batch.column(((Load) right).slot);
+            }
+            int i = from;
+            int upper = from + SPECIES.loopBound(to - from);
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector x = FloatVector.fromArray(SPECIES, out, i);
+                FloatVector y = FloatVector.fromArray(SPECIES, r, i);
+                apply(x, y).intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                out[i] = apply(out[i], r[i]);
+            }
+            if (scratch) {
+                batch.release();
+            }
+        }
+
+        private void runScalar(float[] out, float value, int from, int to) {
+            FloatVector y = FloatVector.broadcast(SPECIES, value);
+            int i = from;
+            int upper = from + SPECIES.loopBound(to - from);
+            for (; i < upper; i += SPECIES.length()) {
+                apply(FloatVector.fromArray(SPECIES, out, i), y).intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                out[i] = apply(out[i], value);
+            }
+        }
+
+        private FloatVector apply(FloatVector x, FloatVector y) {
+            return switch (kind) {
+                case ADD -> x.add(y);
+                case SUB -> x.sub(y);
+                case MUL -> x.mul(y);
+                case DIV -> x.div(y).blend(0f, y.compare(VectorOperators.EQ, 0f));
+                case MIN -> x.min(y);
+                default -> x.max(y);
+            };
+        }
+
+        private float apply(float x, float y) {
+            return switch (kind) {
+                case ADD -> x + y;
+                case SUB -> x - y;
+                case MUL -> x * y;
+                case DIV -> y == 0 ? 0 : x / y;
+                case MIN -> Math.min(x, y);
+                default -> Math.max(x, y);
+            };
+        }
+    }
+
+    private static final class Clamp extends Op {
+        final Op val, min, max;
+
+        Clamp(Op val, Op min, Op max) {
+            this.val = val;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            val.run(batch, out, from, to);
+            float[] mn = batch.acquire();
+            min.run(batch, mn, from, to);
+            float[] mx = batch.acquire();
+            max.run(batch, mx, from, to);
+            int i = from;
+            int upper = from + SPECIES.loopBound(to - from);
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector x = FloatVector.fromArray(SPECIES, out, i);
+                FloatVector lo = FloatVector.fromArray(SPECIES, mn, i);
+                FloatVector hi = FloatVector.fromArray(SPECIES, mx, i);
+                lo.max(x.min(hi)).intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                out[i] = Math.max(mn[i], Math.min(out[i], mx[i]));
+            }
+            batch.release();
+            batch.release();
+        }
+    }
+
+    private static final class Lerp extends Op {
+        final Op a, b, t;
+
+        Lerp(Op a, Op b, Op t) {
+            this.a = a;
+            this.b = b;
+            this.t = t;
+        }
+
+        @Override
+        void run(ParticleBatch batch, float[] out, int from, int to) {
+            a.run(batch, out, from, to);
+            float[] bv = batch.acquire();
+            b.run(batch, bv, from, to);
+            float[] tv = batch.acquire();
+            t.run(batch, tv, from, to);
+            int i = from;
+            int upper = from + SPECIES.loopBound(to - from);
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector x = FloatVector.fromArray(SPECIES, out, i);
+                FloatVector y = FloatVector.fromArray(SPECIES, bv, i);
+                FloatVector w = FloatVector.fromArray(SPECIES, tv, i);
+                x.add(y.sub(x).mul(w)).intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                out[i] = out[i] + (bv[i] - out[i]) * tv[i];
+            }
+            batch.release();
+            batch.release();
+        }
+    }
+}
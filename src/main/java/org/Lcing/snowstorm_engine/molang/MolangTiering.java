@@ -0,0 +1,200 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Molang 分层执行。
+ *
+ * 加载时不再编译所有表达式：每个表达式先由树解释器执行，并带有一个调用计数器
+ * (批量求值按粒子数计数)。计数达到阈值后，表达式在后台线程中编译 (含差分校验)，
+ * 编译结果通过 volatile 字段原子地替换解释器；调用点的目标仍是计数包装时直接替换为编译结果，
+ * 之后的求值不再经过包装。
+ * 很少生成的定义因此不需要付出编译代价，常用的表达式在运行一段时间后得到与之前相同的编译代码。
+ * 后台线程不执行不纯的表达式 (查询读取客户端和摄像机状态，第三方函数可能有副作用)，
+ * 它们只编译、不做差分校验；编译中的任何异常都按编译失败计数，表达式继续由解释器执行。
+ *
+ * 阈值为 0 时在加载时同步编译 (与分层之前的行为相同)，同样不执行不纯的表达式。
+ */
+public final class MolangTiering {
+
+    public static final int DEFAULT_THRESHOLD = 2000;
+
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    // 已安装计数包装的表达式、已提交编译、编译成功替换的数量，以及后台编译的总耗时
+    private static final AtomicInteger tieredCount = new AtomicInteger();
+    private static final AtomicInteger queuedCount = new AtomicInteger();
+    private static final AtomicInteger promotedCount = new AtomicInteger();
+    private static final AtomicLong compileNanos = new AtomicLong();
+
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Snowstorm Molang Compiler");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private MolangTiering() {
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 设置提升阈值 (调用次数)。只影响之后编译的模板，0 表示加载时同步编译。
+     */
+    public static void setThreshold(int value) {
+        threshold = Math.max(0, value);
+    }
+
+    public static int getTieredCount() {
+        return tieredCount.get();
+    }
+
+    public static int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    public static int getPromotedCount() {
+        return promotedCount.get();
+    }
+
+    /**
+     * 后台编译 (含差分校验) 的总耗时，单位纳秒。
+     */
+    public static long getCompileNanos() {
+        return compileNanos.get();
+    }
+
+    public static void resetStats() {
+        tieredCount.set(0);
+        queuedCount.set(0);
+        promotedCount.set(0);
+        compileNanos.set(0);
+    }
+
+    /**
+     * 为调用点安装分层执行 (编译器关闭或表达式为常量时不做任何事)。
+     */
+    public static void install(MolangCallSite site, MolangVariableSchema schema) {
+        if (!MolangCompiler.isEnabled() || site.isConstant()) {
+            return;
+        }
+        if (threshold == 0) {
+            // 与后台编译相同，加载时也不执行不纯的表达式 (此时没有所属发射器和游戏状态)
+            site.setTarget(MolangCompiler.compile(site.getTree(), schema, false));
+            return;
+        }
+        site.setTarget(new Tiered(site.getTree(), schema, site));
+        tieredCount.incrementAndGet();
+    }
+
+    /**
+     * 为不属于调用点的表达式 (提升到发射器级的表达式、初始化级缓存) 安装分层执行。
+     */
+    public static IMolangExpression wrap(IMolangExpression tree, MolangVariableSchema schema) {
+        if (!MolangCompiler.isEnabled() || tree.isConstant()) {
+            return tree;
+        }
+        if (threshold == 0) {
+            return MolangCompiler.compile(tree, schema, false);
+        }
+        tieredCount.incrementAndGet();
+        return new Tiered(tree, schema, null);
+    }
+
+    /**
+     * 计数包装。提升之前执行树解释器，提升之后执行编译结果。
+     */
+    public static final class Tiered implements IMolangExpression {
+        private final IMolangExpression tree;
+        private final MolangVariableSchema schema;
+        // 所属调用点 (可以为 null)，提升后尝试把调用点的目标直接换成编译结果
+        private final MolangCallSite site;
+        private final int limit;
+        private volatile IMolangExpression delegate;
+        // 计数器只在求值线程中递增，不要求精确
+        private int count;
+        private boolean queued;
+
+        Tiered(IMolangExpression tree, MolangVariableSchema schema, MolangCallSite site) {
+            this.tree = tree;
+            this.schema = schema;
+            this.site = site;
+            this.limit = threshold;
+            this.delegate = tree;
+        }
+
+        @Override
+        public float eval(MolangContext context) {
+            if (!queued && ++count >= limit) {
+                promote();
+            }
+            return delegate.eval(context);
+        }
+
+        @Override
+        public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+            if (!queued && (count += to - from) >= limit) {
+                promote();
+            }
+            delegate.evalBatch(batch, out, from, to);
+        }
+
+        @Override
+        public boolean isConstant() {
+            return tree.isConstant();
+        }
+
+        @Override
+        public boolean isPure() {
+            // 包装不公开子节点，必须检查整棵树
+            return MolangOptimizer.isPureTree(tree);
+        }
+
+        /**
+         * 是否已替换为编译结果。
+         */
+        public boolean isPromoted() {
+            return delegate != tree;
+        }
+
+        private void promote() {
+            queued = true;
+            queuedCount.incrementAndGet();
+            try {
+                COMPILER.execute(this::compile);
+            } catch (RejectedExecutionException e) {
+                // 线程池不可用时继续使用解释器
+            }
+        }
+
+        /**
+         * 在后台线程中执行。不纯的表达式 (查询等) 只编译、不执行，异常按编译失败计数，解释器保持不变。
+         */
+        private void compile() {
+            long start = System.nanoTime();
+            try {
+                IMolangExpression compiled = MolangCompiler.compile(tree, schema, false);
+                if (compiled == tree) {
+                    // 编译失败或差分校验不一致，保持解释器
+                    return;
+                }
+                delegate = compiled;
+                if (site != null) {
+                    site.replaceTarget(this, compiled);
+                }
+                promotedCount.incrementAndGet();
+            } catch (Throwable t) {
+                MolangCompiler.countFailure();
+            } finally {
+                compileNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+}
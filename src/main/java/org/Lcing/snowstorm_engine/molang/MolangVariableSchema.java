@@ -0,0 +1,185 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Molang 变量表。
+ * 每个粒子定义拥有一个变量表，在解析表达式时把变量名映射为整数槽位，
+ * 运行时 {@link MolangContext} 只需按槽位访问一个 float 数组。
+ * 内置变量的槽位是固定的，运行时代码可以直接使用下面的常量。
+ */
+public class MolangVariableSchema {
+
+    // 内置变量槽位 (所有变量表中相同)
+    public static final int PARTICLE_AGE = 0;
+    public static final int PARTICLE_LIFETIME = 1;
+    public static final int PARTICLE_RANDOM_1 = 2;
+    public static final int PARTICLE_RANDOM_2 = 3;
+    public static final int PARTICLE_X = 4;
+    public static final int PARTICLE_Y = 5;
+    public static final int PARTICLE_Z = 6;
+    public static final int PARTICLE_ROTATION = 7;
+    public static final int EMITTER_AGE = 8;
+
+    private static final String[] BUILTINS = {
+            "variable.particle_age",
+            "variable.particle_lifetime",
+            "variable.particle_random_1",
+            "variable.particle_random_2",
+            "variable.particle_x",
+            "variable.particle_y",
+            "variable.particle_z",
+            "variable.particle_rotation",
+            "variable.emitter_age"
+    };
+
+    /**
+     * 变量的更新频率，用于表达式求值频率分析。
+     */
+    public enum Scope {
+        // 发射器级变量，每个发射器 tick 更新一次 (variable.emitter_*)
+        EMITTER,
+        // 粒子生成时确定、之后不再变化的变量 (随机数、寿命)
+        PARTICLE_INIT,
+        // 每个粒子每 tick 都可能变化的变量
+        PARTICLE
+    }
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Scope> scopes = new ArrayList<>();
+    // 粒子上下文需要的槽位数量：最后一个非发射器级槽位之后的发射器级槽位只存在于发射器上下文中
+    private int particleSize = 0;
+    // 表达式实际读取的内置变量 (按槽位的位掩码)，由模板编译时计算；计算之前视为全部读取
+    private int readBuiltins = -1;
+
+    public MolangVariableSchema() {
+        for (String name : BUILTINS) {
+            slotOf(name);
+        }
+    }
+
+    /**
+     * 获取变量的槽位，如果变量尚未注册则分配一个新槽位。
+     * 应仅在编译期 (解析表达式、组件 fromJson) 调用。
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = names.size();
+            slots.put(name, slot);
+            names.add(name);
+            scopes.add(null);
+            setScope(slot, scopeForName(name));
+        }
+        return slot;
+    }
+
+    /**
+     * 获取变量的槽位，新分配时使用指定的频率 (例如绑定到发射器级的查询)。已存在的变量保持原来的频率。
+     */
+    public int slotOf(String name, Scope scope) {
+        if (slots.containsKey(name)) {
+            return slots.get(name);
+        }
+        int slot = slotOf(name);
+        setScope(slot, scope);
+        return slot;
+    }
+
+    private void setScope(int slot, Scope scope) {
+        scopes.set(slot, scope);
+        if (scope != Scope.EMITTER) {
+            particleSize = Math.max(particleSize, slot + 1);
+        } else if (slot == particleSize - 1) {
+            // 新分配的槽位改为发射器级，向前找到最后一个非发射器级槽位
+            int n = slot;
+            while (n > 0 && scopes.get(n - 1) == Scope.EMITTER) {
+                n--;
+            }
+            particleSize = n;
+        }
+    }
+
+    /**
+     * 声明槽位会被直接写入粒子上下文 (例如曲线结果)，无论它的作用域如何。
+     */
+    public void reserveParticleSlot(int slot) {
+        particleSize = Math.max(particleSize, slot + 1);
+    }
+
+    static Scope scopeForName(String name) {
+        if (name.startsWith("variable.emitter_")) {
+            return Scope.EMITTER;
+        }
+        if (name.startsWith("variable.particle_random_") || name.equals("variable.particle_lifetime")) {
+            return Scope.PARTICLE_INIT;
+        }
+        return Scope.PARTICLE;
+    }
+
+    /**
+     * 分配一个内部槽位 (不会与 Molang 变量名冲突)，用于缓存提升后的表达式结果。
+     */
+    public int allocateInternal(String prefix, Scope scope) {
+        String name = "#" + prefix + "." + names.size();
+        int slot = slotOf(name);
+        setScope(slot, scope);
+        return slot;
+    }
+
+    public Scope scopeOf(int slot) {
+        return scopes.get(slot);
+    }
+
+    /**
+     * 查找变量的槽位，不存在时返回 -1。
+     */
+    public int find(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    public String nameOf(int slot) {
+        return names.get(slot);
+    }
+
+    /**
+     * 当前已分配的槽位数量 (即上下文数组的长度)。
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * 设置表达式实际读取的内置变量 (位 i 对应槽位 i)。
+     */
+    public void setReadBuiltins(int mask) {
+        this.readBuiltins = mask;
+    }
+
+    /**
+     * 内置变量是否被任何表达式读取。运行时只为被读取的内置变量写入上下文。
+     */
+    public boolean isRead(int builtinSlot) {
+        return (readBuiltins & (1 << builtinSlot)) != 0;
+    }
+
+    /**
+     * 内置变量的数量 (槽位 [0, count) 是内置变量)。
+     */
+    public static int builtinCount() {
+        return BUILTINS.length;
+    }
+
+    /**
+     * 粒子上下文数组的长度。发射器级变量由粒子经 {@link MolangContext} 的发射器指针读取，
+     * 排在最后的发射器级槽位 (提升的表达式结果、发射器变量) 不在每个粒子中重复分配。
+     */
+    public int particleSize() {
+        return particleSize;
+    }
+}
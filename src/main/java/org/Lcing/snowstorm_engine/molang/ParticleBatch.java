@@ -0,0 +1,94 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一批粒子上下文，用于批量求值 ({@link IMolangExpression#evalBatch})。
+ * 变量按槽位收集为连续的 float 列 (按需收集并缓存)，表达式节点逐列运算，
+ * 使逐节点开销变为逐批开销，内层循环也可以被 JIT 向量化。
+ *
+ * 列是上下文的快照：当上下文中的变量被改写后 (例如组件更新了粒子位置)，必须调用 {@link #invalidate()}。
+ */
+public class ParticleBatch {
+    private MolangContext[] contexts = new MolangContext[0];
+    private int size;
+
+    // 按槽位缓存的列及其版本号
+    private float[][] columns = new float[0][];
+    private int[] columnVersion = new int[0];
+    private int version = 1;
+
+    // 中间结果的临时数组栈
+    private final List<float[]> scratch = new ArrayList<>();
+    private int scratchTop = 0;
+
+    /**
+     * 将批次指向一组上下文 ([0, size))。之前收集的列全部失效。
+     */
+    public void reset(MolangContext[] contexts, int size) {
+        this.contexts = contexts;
+        this.size = size;
+        invalidate();
+    }
+
+    public MolangContext[] contexts() {
+        return contexts;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 丢弃已收集的列。上下文中的变量被修改后调用。
+     */
+    public void invalidate() {
+        version++;
+    }
+
+    /**
+     * 获取指定槽位在 [0, size) 上的变量列。
+     */
+    public float[] column(int slot) {
+        if (slot >= columns.length) {
+            int n = Math.max(slot + 1, columns.length * 2);
+            columns = java.util.Arrays.copyOf(columns, n);
+            columnVersion = java.util.Arrays.copyOf(columnVersion, n);
+        }
+        float[] col = columns[slot];
+        if (col == null || col.length < size) {
+            col = new float[Math.max(size, 64)];
+            columns[slot] = col;
+            columnVersion[slot] = 0;
+        }
+        if (columnVersion[slot] != version) {
+            MolangContext[] ctx = contexts;
+            for (int i = 0; i < size; i++) {
+                col[i] = ctx[i].slots[slot];
+            }
+            columnVersion[slot] = version;
+        }
+        return col;
+    }
+
+    /**
+     * 借用一个长度不小于 size 的临时数组，必须按后进先出的顺序调用 {@link #release()} 归还。
+     */
+    public float[] acquire() {
+        if (scratchTop == scratch.size()) {
+            scratch.add(new float[Math.max(size, 64)]);
+        }
+        float[] arr = scratch.get(scratchTop);
+        if (arr.length < size) {
+            arr = new float[size];
+            scratch.set(scratchTop, arr);
+        }
+        scratchTop++;
+        return arr;
+    }
+
+    public void release() {
+        scratchTop--;
+    }
+}
@@ -2,7 +2,7 @@ package org.Lcing.snowstorm_engine.network;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraftforge.network.NetworkEvent;
-import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.runtime.ParticleEffectTemplate;
 import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
 import org.Lcing.snowstorm_engine.runtime.SnowstormManager;
 
@@ -13,12 +13,26 @@ public class SpawnEmitterPacket {
     private final double x;
     private final double y;
     private final double z;
+    // 可选的随机种子: 设置后所有客户端生成完全相同的粒子
+    private final boolean hasSeed;
+    private final long seed;
 
     public SpawnEmitterPacket(String identifier, double x, double y, double z) {
         this.identifier = identifier;
         this.x = x;
         this.y = y;
         this.z = z;
+        this.hasSeed = false;
+        this.seed = 0;
+    }
+
+    public SpawnEmitterPacket(String identifier, double x, double y, double z, long seed) {
+        this.identifier = identifier;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.hasSeed = true;
+        this.seed = seed;
     }
 
     public SpawnEmitterPacket(FriendlyByteBuf buf) {
@@ -26,6 +40,8 @@ public class SpawnEmitterPacket {
         this.x = buf.readDouble();
         this.y = buf.readDouble();
         this.z = buf.readDouble();
+        this.hasSeed = buf.readBoolean();
+        this.seed = hasSeed ? buf.readLong() : 0;
     }
 
     public void encode(FriendlyByteBuf buf) {
@@ -33,6 +49,10 @@ public class SpawnEmitterPacket {
         buf.writeDouble(x);
         buf.writeDouble(y);
         buf.writeDouble(z);
+        buf.writeBoolean(hasSeed);
+        if (hasSeed) {
+            buf.writeLong(seed);
+        }
     }
 
     public void handle(Supplier<NetworkEvent.Context> ctx) {
@@ -40,15 +60,16 @@ public class SpawnEmitterPacket {
             // 客户端执行
             try {
                 // 从注册表中查找粒子
-                ParticleDefinition def = SnowstormManager.getInstance().getParticleDefinition(identifier);
+                ParticleEffectTemplate template = SnowstormManager.getInstance().getTemplate(identifier);
 
-                if (def == null) {
+                if (template == null) {
                     System.err.println("[Snowstorm] Could not find particle definition for identifier: " + identifier);
                     return;
                 }
 
                 // 创建发射器
-                SnowstormEmitter emitter = new SnowstormEmitter(def);
+                SnowstormEmitter emitter = hasSeed ? new SnowstormEmitter(template, seed)
+                        : new SnowstormEmitter(template);
                 emitter.x = x;
                 emitter.y = y;
                 emitter.z = z;
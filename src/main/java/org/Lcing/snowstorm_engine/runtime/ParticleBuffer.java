@@ -0,0 +1,203 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.runtime.components.FacingCameraMode;
+
+import java.util.Arrays;
+
+/**
+ * 粒子数据的结构数组 (SoA) 存储。
+ * 每个属性都是一个按粒子槽位索引的原始数组，活跃粒子始终紧密排列在 [0, size) 中。
+ * 移除粒子时把最后一个粒子交换到空出的槽位，因此槽位索引在移除后可能指向另一个粒子。
+ */
+public class ParticleBuffer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int size = 0;
+
+    // 位置 / 上一帧位置 / 速度
+    public double[] x, y, z;
+    public double[] prevX, prevY, prevZ;
+    public double[] vx, vy, vz;
+
+    // 生命周期
+    public float[] age;
+    public float[] lifetime;
+    public boolean[] dead;
+
+    // 渲染属性
+    public float[] sizeX, sizeY;
+    public float[] u0, v0, u1, v1;
+    public FacingCameraMode[] renderMode;
+
+    // 旋转 (度, 度/秒)
+    public float[] rotation;
+    public float[] rotationRate;
+
+    // 颜色 (RGBA, 0.0-1.0)
+    public float[] colorR, colorG, colorB, colorA;
+
+    // 光照
+    public boolean[] useLighting;
+
+    // 每个粒子的 Molang 上下文
+    public MolangContext[] context;
+
+    public ParticleBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParticleBuffer(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+
+    /**
+     * 在末尾分配一个新槽位并写入默认值。
+     *
+     * @return 新粒子的槽位索引
+     */
+    public int add(double px, double py, double pz, MolangContext ctx) {
+        if (size == x.length) {
+            allocate(x.length * 2);
+        }
+        int i = size++;
+
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+        prevX[i] = px;
+        prevY[i] = py;
+        prevZ[i] = pz;
+        vx[i] = 0;
+        vy[i] = 0;
+        vz[i] = 0;
+
+        age[i] = 0;
+        lifetime[i] = 1.0f;
+        dead[i] = false;
+
+        sizeX[i] = 0.25f;
+        sizeY[i] = 0.25f;
+        u0[i] = 0;
+        v0[i] = 0;
+        u1[i] = 1;
+        v1[i] = 1;
+        renderMode[i] = FacingCameraMode.ROTATE_XYZ;
+
+        rotation[i] = 0;
+        rotationRate[i] = 0;
+
+        colorR[i] = 1.0f;
+        colorG[i] = 1.0f;
+        colorB[i] = 1.0f;
+        colorA[i] = 1.0f;
+
+        useLighting[i] = false;
+        context[i] = ctx;
+        return i;
+    }
+
+    /**
+     * 移除指定槽位的粒子：最后一个粒子被移动到该槽位。
+     * 正向遍历时，移除后应重新处理同一索引。
+     */
+    public void remove(int i) {
+        int last = --size;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            z[i] = z[last];
+            prevX[i] = prevX[last];
+            prevY[i] = prevY[last];
+            prevZ[i] = prevZ[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            vz[i] = vz[last];
+
+            age[i] = age[last];
+            lifetime[i] = lifetime[last];
+            dead[i] = dead[last];
+
+            sizeX[i] = sizeX[last];
+            sizeY[i] = sizeY[last];
+            u0[i] = u0[last];
+            v0[i] = v0[last];
+            u1[i] = u1[last];
+            v1[i] = v1[last];
+            renderMode[i] = renderMode[last];
+
+            rotation[i] = rotation[last];
+            rotationRate[i] = rotationRate[last];
+
+            colorR[i] = colorR[last];
+            colorG[i] = colorG[last];
+            colorB[i] = colorB[last];
+            colorA[i] = colorA[last];
+
+            useLighting[i] = useLighting[last];
+            context[i] = context[last];
+        }
+        // 释放上下文引用以便 GC
+        context[last] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(context, 0, size, null);
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        z = grow(z, capacity);
+        prevX = grow(prevX, capacity);
+        prevY = grow(prevY, capacity);
+        prevZ = grow(prevZ, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+        vz = grow(vz, capacity);
+
+        age = grow(age, capacity);
+        lifetime = grow(lifetime, capacity);
+        dead = grow(dead, capacity);
+
+        sizeX = grow(sizeX, capacity);
+        sizeY = grow(sizeY, capacity);
+        u0 = grow(u0, capacity);
+        v0 = grow(v0, capacity);
+        u1 = grow(u1, capacity);
+        v1 = grow(v1, capacity);
+        renderMode = renderMode == null ? new FacingCameraMode[capacity] : Arrays.copyOf(renderMode, capacity);
+
+        rotation = grow(rotation, capacity);
+        rotationRate = grow(rotationRate, capacity);
+
+        colorR = grow(colorR, capacity);
+        colorG = grow(colorG, capacity);
+        colorB = grow(colorB, capacity);
+        colorA = grow(colorA, capacity);
+
+        useLighting = grow(useLighting, capacity);
+        context = context == null ? new MolangContext[capacity] : Arrays.copyOf(context, capacity);
+    }
+
+    private static double[] grow(double[] arr, int capacity) {
+        return arr == null ? new double[capacity] : Arrays.copyOf(arr, capacity);
+    }
+
+    private static float[] grow(float[] arr, int capacity) {
+        return arr == null ? new float[capacity] : Arrays.copyOf(arr, capacity);
+    }
+
+    private static boolean[] grow(boolean[] arr, int capacity) {
+        return arr == null ? new boolean[capacity] : Arrays.copyOf(arr, capacity);
+    }
+}
@@ -0,0 +1,175 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangCallSite;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangCost;
+import org.Lcing.snowstorm_engine.molang.MolangLut;
+import org.Lcing.snowstorm_engine.runtime.components.IParticleComponent;
+import org.Lcing.snowstorm_engine.runtime.components.ParticleLifetimeComponent;
+import org.Lcing.snowstorm_engine.runtime.components.RateInstantComponent;
+import org.Lcing.snowstorm_engine.runtime.components.RateManualComponent;
+import org.Lcing.snowstorm_engine.runtime.components.RateSteadyComponent;
+
+/**
+ * 粒子定义的静态代价模型 (加载时计算，每个发射器实例)。
+ *
+ * 表达式代价来自 {@link MolangCost}，按调用点的求值频率归类：
+ * 发射器级表达式每 tick 计算一次，初始化级表达式每个粒子计算一次，其余表达式每个粒子每 tick 计算
+ * (只在生成时使用的随机表达式也归入此类，因此结果偏高)。
+ * 稳定状态下的粒子数由生成速率、最大粒子数和寿命得出 (N = min(max, rate * lifetime))。
+ * 速率、数量和寿命不是常量时，在变量全为 0 的发射器上下文中求值一次作为估计。
+ *
+ * 超出预算的定义在加载时记录警告；开启限流时为模板设置粒子数上限，使估计代价回到预算之内。
+ */
+public class ParticleCostModel {
+    public static final int TICKS_PER_SECOND = 20;
+
+    // 每个粒子每 tick 的固定开销 (状态更新、删除检查) 和每条曲线的插值开销
+    private static final float PARTICLE_BASE_COST = 8;
+    private static final float CURVE_COST = 6;
+    private static final float QUERY_COST = 10;
+    // 没有 particle_lifetime_expression 时发射器使用 1~3 秒的随机寿命
+    private static final float DEFAULT_LIFETIME = 2;
+
+    // 每个发射器每秒的代价预算 (0 表示不检查)
+    private static volatile double budget = 5_000_000;
+    private static volatile boolean throttle = false;
+
+    public static double getBudget() {
+        return budget;
+    }
+
+    public static void setBudget(double value) {
+        budget = value;
+    }
+
+    public static boolean isThrottleEnabled() {
+        return throttle;
+    }
+
+    public static void setThrottleEnabled(boolean value) {
+        throttle = value;
+    }
+
+    /**
+     * 一个定义的代价估计。
+     */
+    public static class Estimate {
+        // 每次求值的代价 (按频率汇总)
+        public final float emitterCostPerTick;
+        public final float initCostPerParticle;
+        public final float tickCostPerParticle;
+        public final int curveCount;
+        // 生成参数的估计值
+        public final float spawnsPerSecond;
+        public final float lifetime;
+        public final float steadyParticles;
+
+        Estimate(float emitterCostPerTick, float initCostPerParticle, float tickCostPerParticle, int curveCount,
+                float spawnsPerSecond, float lifetime, float steadyParticles) {
+            this.emitterCostPerTick = emitterCostPerTick;
+            this.initCostPerParticle = initCostPerParticle;
+            this.tickCostPerParticle = tickCostPerParticle;
+            this.curveCount = curveCount;
+            this.spawnsPerSecond = spawnsPerSecond;
+            this.lifetime = lifetime;
+            this.steadyParticles = steadyParticles;
+        }
+
+        /**
+         * 每秒粒子更新次数。
+         */
+        public double getParticleUpdatesPerSecond() {
+            return (double) steadyParticles * TICKS_PER_SECOND;
+        }
+
+        /**
+         * 每秒总代价。
+         */
+        public double getCostPerSecond() {
+            return TICKS_PER_SECOND * (emitterCostPerTick + (double) steadyParticles * tickCostPerParticle)
+                    + (double) spawnsPerSecond * initCostPerParticle;
+        }
+
+        public boolean isOverBudget() {
+            return budget > 0 && getCostPerSecond() > budget;
+        }
+
+        /**
+         * 使代价回到预算之内的粒子数上限 (至少为 1)。
+         */
+        public int budgetParticleCap() {
+            double perParticle = TICKS_PER_SECOND * tickCostPerParticle
+                    + (lifetime > 0 ? initCostPerParticle / lifetime : 0);
+            double available = budget - TICKS_PER_SECOND * emitterCostPerTick;
+            return (int) Math.max(1, Math.min(Integer.MAX_VALUE, available / perParticle));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f 粒子 x %.0f/粒子·tick (初始化 %.0f, 发射器 %.0f/tick, %d 条曲线), "
+                    + "%.0f 次粒子更新/秒, 代价 %.3g/秒", steadyParticles, tickCostPerParticle, initCostPerParticle,
+                    emitterCostPerTick, curveCount, getParticleUpdatesPerSecond(), getCostPerSecond());
+        }
+    }
+
+    /**
+     * 估计模板的代价。应在模板编译完成后调用 (需要调用点的求值频率)。
+     */
+    public static Estimate estimate(ParticleEffectTemplate template) {
+        float emitterCost = template.getQueryCount() * QUERY_COST;
+        float initCost = 0;
+        float tickCost = PARTICLE_BASE_COST + template.getCurveList().length * CURVE_COST;
+        for (MolangCallSite site : template.getCallSites()) {
+            float cost = template.isLut(site) ? MolangLut.LOOKUP_COST : MolangCost.estimate(site);
+            switch (site.getFrequency()) {
+                case CONSTANT -> {
+                }
+                case EMITTER_TICK -> emitterCost += cost;
+                case PARTICLE_INIT -> initCost += cost;
+                default -> tickCost += cost;
+            }
+        }
+
+        MolangContext probe = new MolangContext(template.getSchema());
+        float lifetime = DEFAULT_LIFETIME;
+        float spawns = 0;
+        float particles = 0;
+        for (IParticleComponent comp : template.getComponents()) {
+            if (comp instanceof ParticleLifetimeComponent c) {
+                lifetime = Math.max(0.05f, probe(c.getMaxLifetime(), probe));
+            }
+        }
+        for (IParticleComponent comp : template.getComponents()) {
+            if (comp instanceof RateSteadyComponent c) {
+                float rate = Math.max(0, probe(c.getSpawnRate(), probe));
+                float max = Math.max(0, probe(c.getMaxParticles(), probe));
+                particles = Math.min(max, rate * lifetime);
+                spawns = Math.min(rate, max / lifetime);
+            } else if (comp instanceof RateInstantComponent c) {
+                // 按每个寿命周期发射一次估计
+                particles = Math.max(0, probe(c.getNumParticles(), probe));
+                spawns = particles / lifetime;
+            } else if (comp instanceof RateManualComponent c) {
+                particles = Math.max(0, probe(c.getMaxParticles(), probe));
+                spawns = particles / lifetime;
+            }
+        }
+        return new Estimate(emitterCost, initCost, tickCost, template.getCurveList().length, spawns, lifetime,
+                particles);
+    }
+
+    private static float probe(IMolangExpression expr, MolangContext context) {
+        if (expr == null) {
+            return 0;
+        }
+        try {
+            float value = expr.isConstant() ? expr.eval(null) : expr.eval(context);
+            return Float.isFinite(value) ? value : 0;
+        } catch (RuntimeException e) {
+            // 查询或函数在加载时可能无法求值 (例如没有世界)
+            return 0;
+        }
+    }
+}
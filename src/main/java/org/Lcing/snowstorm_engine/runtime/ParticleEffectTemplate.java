@@ -0,0 +1,387 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import com.google.gson.JsonElement;
+import net.minecraft.resources.ResourceLocation;
+import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangCallSite;
+import org.Lcing.snowstorm_engine.molang.MolangQueryRegistry;
+import org.Lcing.snowstorm_engine.molang.MolangSimd;
+import org.Lcing.snowstorm_engine.molang.MolangTiering;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangCse;
+import org.Lcing.snowstorm_engine.molang.MolangExpressions;
+import org.Lcing.snowstorm_engine.molang.MolangFrequency;
+import org.Lcing.snowstorm_engine.molang.MolangLut;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangProfiler;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.runtime.components.ComponentRegistry;
+import org.Lcing.snowstorm_engine.runtime.components.IParticleComponent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的粒子效果模板。
+ * 每个粒子定义在加载时只编译一次：组件和曲线的 JSON 被解析、Molang 表达式被编译、纹理和材质被解析。
+ * 模板在所有发射器之间共享，因此组件中只能保存配置，运行时状态应放在 {@link SnowstormEmitter} 中。
+ */
+public class ParticleEffectTemplate {
+    private static final String EMITTER_SCRIPT = "minecraft:emitter_initialization";
+
+    private final ParticleDefinition definition;
+    private final MolangVariableSchema schema;
+    private final List<IParticleComponent> components;
+    private final Map<String, SnowstormCurve> curves;
+
+    // 曲线及其输出变量槽位 (按相同顺序)，避免每帧按名称写入
+    private final SnowstormCurve[] curveList;
+    private final int[] curveSlots;
+
+    // 定义中所有非常量表达式
+    private final List<MolangCallSite> callSites;
+
+    // 提升到发射器级的表达式及其在发射器上下文中的结果槽位
+    private final IMolangExpression[] emitterExpressions;
+    private final int[] emitterSlots;
+    // 公共子表达式数量
+    private final int sharedCount;
+    // 按归一化年龄查表的调用点，以及查表的分辨率和误差统计
+    private final Set<MolangCallSite> lutSites;
+    private final int lutResolution;
+    private float lutMaxError = 0;
+    private int lutRejected = 0;
+    private float lutRejectedError = 0;
+    // 每个发射器每 tick 计算一次的查询
+    private final MolangQueryRegistry.Binding[] queryBindings;
+    // 未注册的函数名 (已按 0 处理)
+    private final Set<String> unknownFunctions;
+    // 静态代价估计，以及超出预算时的粒子数上限
+    private final ParticleCostModel.Estimate cost;
+    private volatile int particleCap = Integer.MAX_VALUE;
+
+    // 纹理与材质
+    private final String texturePath;
+    private final ResourceLocation textureLocation;
+    private final MaterialType materialType;
+
+    private ParticleEffectTemplate(ParticleDefinition definition) {
+        this.definition = definition;
+        this.schema = new MolangVariableSchema();
+        MolangParser parser = new MolangParser(schema);
+
+        // 解析描述中的纹理和材质
+        String path = null;
+        ResourceLocation location = null;
+        MaterialType material = MaterialType.PARTICLES_BLEND;
+        var desc = definition.getEffect().getDescription();
+        if (desc != null) {
+            var renderParams = desc.getRenderParameters();
+            if (renderParams != null) {
+                path = renderParams.getTexturePath();
+                material = MaterialType.fromString(renderParams.getMaterial());
+
+                // 加载纹理
+                if (path != null) {
+                    location = TextureManager.getTexture(path);
+                }
+            }
+        }
+        this.texturePath = path;
+        this.textureLocation = location;
+        this.materialType = material;
+
+        // 初始化组件 (同时记录每个调用点所属的组件或曲线，用于分析器)
+        List<IParticleComponent> comps = new ArrayList<>();
+        List<String> siteOwners = new ArrayList<>();
+        Map<String, JsonElement> defComponents = definition.getEffect().getComponents();
+        if (defComponents != null) {
+            // 发射器脚本最先解析: 它写入的变量在其他组件的表达式中按发射器变量绑定
+            List<Map.Entry<String, JsonElement>> entries = new ArrayList<>(defComponents.entrySet());
+            entries.sort((a, b) -> Boolean.compare(!EMITTER_SCRIPT.equals(a.getKey()),
+                    !EMITTER_SCRIPT.equals(b.getKey())));
+            for (Map.Entry<String, JsonElement> entry : entries) {
+                IParticleComponent comp = ComponentRegistry.create(entry.getKey());
+                if (comp != null) {
+                    comp.fromJson(entry.getValue(), parser);
+                    comps.add(comp);
+                }
+                while (siteOwners.size() < parser.getCallSites().size()) {
+                    siteOwners.add(entry.getKey());
+                }
+            }
+        }
+        this.components = Collections.unmodifiableList(comps);
+
+        // 解析曲线
+        Map<String, SnowstormCurve> parsedCurves = new LinkedHashMap<>();
+        Map<String, JsonElement> defCurves = definition.getEffect().getCurves();
+        if (defCurves != null) {
+            for (Map.Entry<String, JsonElement> entry : defCurves.entrySet()) {
+                SnowstormCurve curve = SnowstormCurve.fromJson(entry.getValue(), parser);
+                if (curve != null) {
+                    parsedCurves.put(entry.getKey(), curve);
+                }
+                while (siteOwners.size() < parser.getCallSites().size()) {
+                    siteOwners.add("curve " + entry.getKey());
+                }
+            }
+        }
+        this.curves = Collections.unmodifiableMap(parsedCurves);
+
+        this.curveList = new SnowstormCurve[parsedCurves.size()];
+        this.curveSlots = new int[parsedCurves.size()];
+        int c = 0;
+        for (Map.Entry<String, SnowstormCurve> entry : parsedCurves.entrySet()) {
+            curveList[c] = entry.getValue();
+            curveSlots[c] = schema.slotOf(entry.getKey());
+            // 曲线结果写入粒子上下文，即使名称属于发射器作用域也要在粒子上下文中保留槽位
+            schema.reserveParticleSlot(curveSlots[c]);
+            c++;
+        }
+
+        this.queryBindings = parser.getQueryBindings().toArray(new MolangQueryRegistry.Binding[0]);
+        this.unknownFunctions = Set.copyOf(parser.getUnknownFunctions());
+
+        // 变量表已固定，将表达式按求值频率提升并编译为字节码
+        this.callSites = List.copyOf(parser.getCallSites());
+        List<IMolangExpression> hoisted = new ArrayList<>();
+        List<Integer> hoistedSlots = new ArrayList<>();
+        List<MolangCallSite> tickSites = new ArrayList<>();
+        List<String> tickOwners = new ArrayList<>();
+        List<MolangCallSite> hoistedSites = new ArrayList<>();
+        String id = definition.getIdentifier();
+        Integer resolution = desc != null ? desc.getLutResolution() : null;
+        this.lutResolution = resolution != null ? resolution : MolangLut.DEFAULT_RESOLUTION;
+        // 曲线形状按相同的分辨率采样
+        for (SnowstormCurve curve : curveList) {
+            curve.bake(lutResolution);
+        }
+        Set<MolangCallSite> baked = Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        int initIndex = 0;
+        for (int i = 0; i < callSites.size(); i++) {
+            MolangCallSite site = callSites.get(i);
+            String owner = i < siteOwners.size() ? siteOwners.get(i) : "?";
+            MolangFrequency frequency = MolangFrequency.classify(site.getTree(), schema);
+            if (frequency == MolangFrequency.PARTICLE_INIT && initIndex >= Long.SIZE) {
+                // 初始化缓存位已用完
+                frequency = MolangFrequency.PARTICLE_TICK;
+            }
+            site.setFrequency(frequency);
+
+            switch (frequency) {
+                case EMITTER_TICK -> {
+                    // 每个发射器 tick 在发射器上下文中计算一次，粒子读取共享结果 (结果槽位最后分配)
+                    hoisted.add(MolangProfiler.wrap(compileTree(site.getTree()), id, owner, site.getSource()));
+                    hoistedSites.add(site);
+                }
+                case PARTICLE_INIT -> {
+                    int slot = schema.allocateInternal("particle_init", MolangVariableSchema.Scope.PARTICLE);
+                    site.setTarget(new MolangExpressions.InitCached(
+                            MolangProfiler.wrap(compileTree(site.getTree()), id, owner, site.getSource()), slot,
+                            initIndex++));
+                }
+                default -> {
+                    // 只依赖归一化年龄的表达式查表，不再参与公共子表达式消除和编译
+                    if (lutResolution > 0 && MolangLut.isAgeDriven(site.getTree())) {
+                        MolangLut lut = MolangLut.bake(site.getTree(), schema, lutResolution);
+                        if (lut.isAccurate()) {
+                            site.setTarget(lut);
+                            MolangProfiler.instrument(site, id, owner);
+                            baked.add(site);
+                            lutMaxError = Math.max(lutMaxError, lut.getMaxError());
+                            continue;
+                        }
+                        lutRejected++;
+                        lutRejectedError = Math.max(lutRejectedError, lut.getMaxError());
+                    }
+                    tickSites.add(site);
+                    tickOwners.add(owner);
+                }
+            }
+        }
+
+        // 逐帧表达式之间的公共子表达式每粒子每 tick 只计算一次
+        this.sharedCount = MolangCse.apply(tickSites, schema);
+        for (int i = 0; i < tickSites.size(); i++) {
+            MolangCallSite site = tickSites.get(i);
+            // 先由解释器执行，调用次数达到阈值后在后台编译
+            MolangTiering.install(site, schema);
+            // 纯算术表达式在批量求值时使用向量实现 (模块不可用时不做任何事)
+            MolangSimd.vectorize(site);
+            // 分析器关闭时不做任何事
+            MolangProfiler.instrument(site, id, tickOwners.get(i));
+        }
+        // 发射器级结果槽位排在所有粒子级槽位之后，不占用粒子上下文的空间
+        for (MolangCallSite site : hoistedSites) {
+            int slot = schema.allocateInternal("emitter_tick", MolangVariableSchema.Scope.EMITTER);
+            hoistedSlots.add(slot);
+            site.setTarget(new MolangExpressions.EmitterValue(slot));
+        }
+        this.lutSites = Collections.unmodifiableSet(baked);
+        this.emitterExpressions = hoisted.toArray(new IMolangExpression[0]);
+        this.emitterSlots = hoistedSlots.stream().mapToInt(Integer::intValue).toArray();
+        // 运行时只写入表达式实际读取的内置变量
+        schema.setReadBuiltins(readBuiltins(callSites));
+        this.cost = ParticleCostModel.estimate(this);
+    }
+
+    /**
+     * 表达式树读取的内置变量 (位掩码)。查询和函数可以通过上下文读取任意变量，出现时视为读取全部。
+     */
+    private static int readBuiltins(List<MolangCallSite> sites) {
+        int mask = 0;
+        for (MolangCallSite site : sites) {
+            mask |= readBuiltins(site.getTree());
+        }
+        return mask;
+    }
+
+    private static int readBuiltins(IMolangExpression node) {
+        if (node instanceof MolangExpressions.Query || node instanceof MolangExpressions.FunctionCall) {
+            return -1;
+        }
+        int mask = 0;
+        if (node instanceof MolangExpressions.Variable v && !(node instanceof MolangExpressions.EmitterVariable)
+                && v.getSlot() < MolangVariableSchema.builtinCount()) {
+            mask = 1 << v.getSlot();
+        }
+        for (IMolangExpression child : node.children()) {
+            mask |= readBuiltins(child);
+        }
+        return mask;
+    }
+
+    private IMolangExpression compileTree(IMolangExpression tree) {
+        return MolangTiering.wrap(tree, schema);
+    }
+
+    /**
+     * 编译粒子定义。此后变量表已固定，可以据此创建上下文。
+     */
+    public static ParticleEffectTemplate compile(ParticleDefinition definition) {
+        return new ParticleEffectTemplate(definition);
+    }
+
+    public ParticleDefinition getDefinition() {
+        return definition;
+    }
+
+    public String getIdentifier() {
+        return definition.getIdentifier();
+    }
+
+    public MolangVariableSchema getSchema() {
+        return schema;
+    }
+
+    public List<IParticleComponent> getComponents() {
+        return components;
+    }
+
+    public Map<String, SnowstormCurve> getCurves() {
+        return curves;
+    }
+
+    public List<MolangCallSite> getCallSites() {
+        return callSites;
+    }
+
+    public int getSharedCount() {
+        return sharedCount;
+    }
+
+    /**
+     * 是否已烘焙为按归一化年龄的查找表。
+     */
+    public boolean isLut(MolangCallSite site) {
+        return lutSites.contains(site);
+    }
+
+    public int getLutCount() {
+        return lutSites.size();
+    }
+
+    public int getLutResolution() {
+        return lutResolution;
+    }
+
+    /**
+     * 已查表的表达式相对精确求值的最大误差。
+     */
+    public float getLutMaxError() {
+        return lutMaxError;
+    }
+
+    /**
+     * 可以查表但误差超出容差 (仍按表达式求值) 的数量，以及其中的最大误差。
+     */
+    public int getLutRejected() {
+        return lutRejected;
+    }
+
+    public float getLutRejectedError() {
+        return lutRejectedError;
+    }
+
+    /**
+     * 在发射器上下文中计算所有发射器级表达式。发射器每 tick (以及创建时) 调用一次。
+     */
+    void evaluateEmitterExpressions(MolangContext emitterContext) {
+        // 查询先于依赖它们的发射器级表达式
+        for (MolangQueryRegistry.Binding binding : queryBindings) {
+            binding.evaluate(emitterContext);
+        }
+        for (int k = 0; k < emitterSlots.length; k++) {
+            emitterContext.set(emitterSlots[k], emitterExpressions[k].eval(emitterContext));
+        }
+    }
+
+    public Set<String> getUnknownFunctions() {
+        return unknownFunctions;
+    }
+
+    int getQueryCount() {
+        return queryBindings.length;
+    }
+
+    public ParticleCostModel.Estimate getCost() {
+        return cost;
+    }
+
+    /**
+     * 每个发射器的粒子数上限 (限流)，默认不限制。
+     */
+    public int getParticleCap() {
+        return particleCap;
+    }
+
+    public void setParticleCap(int cap) {
+        this.particleCap = cap;
+    }
+
+    SnowstormCurve[] getCurveList() {
+        return curveList;
+    }
+
+    int[] getCurveSlots() {
+        return curveSlots;
+    }
+
+    public String getTexturePath() {
+        return texturePath;
+    }
+
+    public ResourceLocation getTextureLocation() {
+        return textureLocation;
+    }
+
+    public MaterialType getMaterialType() {
+        return materialType;
+    }
+}
@@ -4,36 +4,84 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangLut;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基岩版曲线 (linear, bezier, catmull_rom, bezier_chain)。
+ *
+ * 曲线的形状只取决于归一化位置 t = input / horizontal_range (限制在 [0, 1])，节点是常量，
+ * 因此加载时把形状按固定分辨率采样到查找表中 ({@link #bake(int)})，运行时只需一次下标计算和线性插值。
+ * horizontal_range 为常量时除法折叠为乘以常量；依赖变量时每个粒子精确计算 t，再查表。
+ * 烘焙时在网格点之间与解析求值比较，误差超出容差 (例如 bezier_chain 中左右值不同的阶跃) 时不使用查找表。
+ */
 public class SnowstormCurve {
-    private String type; // "linear" (其它: "bezier", "catmull_rom" 尚未实现)
+
+    public enum Type {
+        LINEAR, BEZIER, CATMULL_ROM, BEZIER_CHAIN
+    }
+
+    // 误差检查时每个网格区间内的采样数
+    private static final int CHECK_STEPS = 4;
+
+    private String type;
+    private Type kind;
     private IMolangExpression input;
     private IMolangExpression horizontalRange;
+    // linear, bezier, catmull_rom 的节点 (水平方向等距)
     private float[] nodes;
+    // bezier_chain 的关键点，按时间排序
+    private float[] chainTimes;
+    private float[] leftValues;
+    private float[] rightValues;
+    private float[] leftSlopes;
+    private float[] rightSlopes;
+
+    // 查找表 (null 表示按解析式求值)，table[i] 是 t = i / resolution 处的值
+    private float[] table;
+    private int resolution;
+    // horizontal_range 为常量时 resolution / range，否则为 NaN
+    private float scale = Float.NaN;
+    private float maxError;
+    private boolean rejected;
 
-    public static SnowstormCurve fromJson(JsonElement json) {
+    public static SnowstormCurve fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return null;
         JsonObject obj = json.getAsJsonObject();
 
         SnowstormCurve curve = new SnowstormCurve();
         curve.type = obj.has("type") ? obj.get("type").getAsString() : "linear";
+        curve.kind = switch (curve.type) {
+            case "bezier" -> Type.BEZIER;
+            case "catmull_rom" -> Type.CATMULL_ROM;
+            case "bezier_chain" -> Type.BEZIER_CHAIN;
+            // 未知类型按线性处理
+            default -> Type.LINEAR;
+        };
 
         if (obj.has("input")) {
-            curve.input = MolangParser.parseJson(obj.get("input"));
+            curve.input = parser.parseJson(obj.get("input"));
         } else {
             curve.input = IMolangExpression.constant(0);
         }
 
         if (obj.has("horizontal_range")) {
-            curve.horizontalRange = MolangParser.parseJson(obj.get("horizontal_range"));
+            curve.horizontalRange = parser.parseJson(obj.get("horizontal_range"));
         } else {
             curve.horizontalRange = IMolangExpression.constant(1);
         }
 
-        if (obj.has("nodes") && obj.get("nodes").isJsonArray()) {
-            JsonArray arr = obj.getAsJsonArray("nodes");
+        JsonElement nodes = obj.get("nodes");
+        if (curve.kind == Type.BEZIER_CHAIN && nodes != null && nodes.isJsonObject()) {
+            curve.readChain(nodes.getAsJsonObject());
+        } else if (nodes != null && nodes.isJsonArray()) {
+            JsonArray arr = nodes.getAsJsonArray();
             curve.nodes = new float[arr.size()];
             for (int i = 0; i < arr.size(); i++) {
                 curve.nodes[i] = arr.get(i).getAsFloat();
@@ -41,45 +89,283 @@ public class SnowstormCurve {
         } else {
             curve.nodes = new float[] { 0 };
         }
+        if (curve.kind == Type.BEZIER_CHAIN && curve.chainTimes == null) {
+            // 节点不是对象时没有关键点，按线性处理
+            curve.kind = Type.LINEAR;
+        }
+        if (curve.kind == Type.CATMULL_ROM && curve.nodes.length < 4) {
+            // 少于 4 个节点时没有完整的区间 (首尾节点只是控制点)
+            curve.kind = Type.LINEAR;
+        }
 
         return curve;
     }
 
+    /**
+     * bezier_chain 的节点: { "时间": { "value", "slope" } 或 { "left_value", "right_value", "left_slope", "right_slope" } }
+     */
+    private void readChain(JsonObject obj) {
+        List<float[]> keys = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+            if (!entry.getValue().isJsonObject()) {
+                continue;
+            }
+            float time;
+            try {
+                time = Float.parseFloat(entry.getKey());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            JsonObject node = entry.getValue().getAsJsonObject();
+            float value = read(node, "value", 0);
+            float slope = read(node, "slope", 0);
+            keys.add(new float[] { time, read(node, "left_value", value), read(node, "right_value", value),
+                    read(node, "left_slope", slope), read(node, "right_slope", slope) });
+        }
+        if (keys.isEmpty()) {
+            nodes = new float[] { 0 };
+            return;
+        }
+        keys.sort((a, b) -> Float.compare(a[0], b[0]));
+        int n = keys.size();
+        chainTimes = new float[n];
+        leftValues = new float[n];
+        rightValues = new float[n];
+        leftSlopes = new float[n];
+        rightSlopes = new float[n];
+        for (int i = 0; i < n; i++) {
+            float[] key = keys.get(i);
+            chainTimes[i] = key[0];
+            leftValues[i] = key[1];
+            rightValues[i] = key[2];
+            leftSlopes[i] = key[3];
+            rightSlopes[i] = key[4];
+        }
+        nodes = new float[0];
+    }
+
+    private static float read(JsonObject node, String name, float fallback) {
+        JsonElement e = node.get(name);
+        return e != null && e.isJsonPrimitive() ? e.getAsFloat() : fallback;
+    }
+
+    /**
+     * 把曲线形状采样为查找表，并在网格点之间与解析求值比较。resolution 为 0 时不烘焙。
+     * 线性曲线的节点本身就是查找表 (没有误差)。
+     */
+    public void bake(int resolution) {
+        if (horizontalRange.isConstant()) {
+            float range = horizontalRange.eval(null);
+            // range 为 0 时 t 总是 0
+            scale = range != 0 ? 1 / range : 0;
+        }
+        if (kind == Type.LINEAR) {
+            table = nodes.length > 0 ? nodes : new float[] { 0 };
+            this.resolution = table.length - 1;
+        } else {
+            if (resolution <= 0) {
+                return;
+            }
+            resolution = Math.min(MolangLut.MAX_RESOLUTION, Math.max(2, resolution));
+            float[] baked = new float[resolution + 1];
+            float range = 0;
+            for (int i = 0; i <= resolution; i++) {
+                baked[i] = (float) shape((double) i / resolution);
+                range = Math.max(range, Math.abs(baked[i]));
+            }
+            float error = 0;
+            int n = resolution * CHECK_STEPS;
+            for (int i = 0; i <= n; i++) {
+                double t = (double) i / n;
+                error = (float) Math.max(error, Math.abs(shape(t) - lookup(baked, resolution, (float) t)));
+            }
+            maxError = error;
+            if (!(error <= MolangLut.TOLERANCE * Math.max(1, range))) {
+                rejected = true;
+                return;
+            }
+            table = baked;
+            this.resolution = resolution;
+        }
+        if (!Float.isNaN(scale)) {
+            scale *= this.resolution;
+        }
+    }
+
+    public Type getType() {
+        return kind;
+    }
+
+    /**
+     * 是否使用查找表求值。
+     */
+    public boolean isBaked() {
+        return table != null;
+    }
+
+    /**
+     * 是否因误差超出容差而放弃查找表。
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * 查找表与解析求值之间的最大绝对误差。
+     */
+    public float getMaxError() {
+        return maxError;
+    }
+
     public float eval(org.Lcing.snowstorm_engine.molang.MolangContext ctx) {
         float in = input.eval(ctx);
-        float range = horizontalRange.eval(ctx);
+        if (table != null && !Float.isNaN(scale)) {
+            return lookup(in * scale);
+        }
+        return sample(in, horizontalRange.eval(ctx));
+    }
 
-        // 归一化输入 (0.0 到 1.0)
-        // 通常曲线从输入 [0, range] 映射到节点索引
+    /**
+     * 对批次中 [from, to) 的粒子求值曲线，结果写入 out。
+     */
+    public void evalBatch(ParticleBatch batch, float[] out, int from, int to) {
+        input.evalBatch(batch, out, from, to);
+        if (table != null && !Float.isNaN(scale)) {
+            float s = scale;
+            for (int i = from; i < to; i++) {
+                out[i] = lookup(out[i] * s);
+            }
+            return;
+        }
+        float[] range = batch.acquire();
+        horizontalRange.evalBatch(batch, range, from, to);
+        for (int i = from; i < to; i++) {
+            out[i] = sample(out[i], range[i]);
+        }
+        batch.release();
+    }
+
+    private float sample(float in, float range) {
+        // 归一化输入 (0.0 到 1.0)，通常 input 是粒子年龄，horizontal_range 是寿命
         float t = (range != 0) ? (in / range) : 0;
+        if (table != null) {
+            return lookup(t * resolution);
+        }
+        return (float) shape(t);
+    }
 
-        // 将 t 限制在 [0, 1]? 假设输入/范围是严格增长/限制的?
-        // 通常 particle_age / particle_lifetime 是 0..1.
-        // 让我们实现限制以防万一。
-        if (t < 0)
+    /**
+     * 查表，x 是以网格间距为单位的位置 (t * resolution)，限制在 [0, resolution]。NaN 按 0 处理。
+     */
+    private float lookup(float x) {
+        float[] tab = table;
+        if (!(x > 0)) {
+            return tab[0];
+        }
+        int i = (int) x;
+        if (i >= tab.length - 1) {
+            return tab[tab.length - 1];
+        }
+        float a = tab[i];
+        return a + (tab[i + 1] - a) * (x - i);
+    }
+
+    private static float lookup(float[] tab, int resolution, float t) {
+        float x = t * resolution;
+        int i = (int) x;
+        if (i >= resolution) {
+            return tab[resolution];
+        }
+        float a = tab[i];
+        return a + (tab[i + 1] - a) * (x - i);
+    }
+
+    /**
+     * 解析求值曲线形状，t 限制在 [0, 1]。
+     */
+    double shape(double t) {
+        if (!(t > 0))
             t = 0;
         if (t > 1)
             t = 1;
-
-        if (nodes == null || nodes.length == 0)
+        if (kind == Type.BEZIER_CHAIN)
+            return chain(t);
+        int n = nodes.length;
+        if (n == 0)
             return 0;
-        if (nodes.length == 1)
+        if (n == 1)
             return nodes[0];
+        return switch (kind) {
+            case BEZIER -> bezier(t);
+            case CATMULL_ROM -> catmullRom(t);
+            default -> linear(t);
+        };
+    }
 
-        // 线性插值
-        // nodes[0] 在 t=0, nodes[len-1] 在 t=1
-        float scaledT = t * (nodes.length - 1);
-        int index = (int) scaledT;
-        float frac = scaledT - index;
+    /**
+     * 线性插值，nodes[0] 在 t=0, nodes[n-1] 在 t=1。
+     */
+    private double linear(double t) {
+        double x = t * (nodes.length - 1);
+        int i = Math.min((int) x, nodes.length - 2);
+        return nodes[i] + (nodes[i + 1] - nodes[i]) * (x - i);
+    }
 
-        if (index < 0)
-            return nodes[0];
-        if (index >= nodes.length - 1)
-            return nodes[nodes.length - 1];
+    /**
+     * 以节点为控制点的贝塞尔曲线 (基岩版为 4 个节点的三次曲线)。控制点水平等距，因此参数就是水平位置。
+     */
+    private double bezier(double t) {
+        int degree = nodes.length - 1;
+        double u = 1 - t;
+        double sum = 0;
+        double binomial = 1;
+        for (int k = 0; k <= degree; k++) {
+            sum += binomial * Math.pow(t, k) * Math.pow(u, degree - k) * nodes[k];
+            binomial = binomial * (degree - k) / (k + 1);
+        }
+        return sum;
+    }
 
-        float v0 = nodes[index];
-        float v1 = nodes[index + 1];
+    /**
+     * 均匀 Catmull-Rom 样条。首尾节点只作为控制点，曲线在 t=0 经过 nodes[1]，在 t=1 经过 nodes[n-2]。
+     */
+    private double catmullRom(double t) {
+        int segments = nodes.length - 3;
+        double x = t * segments;
+        int i = Math.min((int) x, segments - 1);
+        double s = x - i;
+        double p0 = nodes[i], p1 = nodes[i + 1], p2 = nodes[i + 2], p3 = nodes[i + 3];
+        double v0 = (p2 - p0) * 0.5;
+        double v1 = (p3 - p1) * 0.5;
+        return ((2 * p1 - 2 * p2 + v0 + v1) * s + (-3 * p1 + 3 * p2 - 2 * v0 - v1)) * s * s + v0 * s + p1;
+    }
 
-        return v0 + (v1 - v0) * frac;
+    /**
+     * 贝塞尔链: 相邻关键点之间是三次贝塞尔曲线，控制点由关键点的值和斜率决定。
+     * 第一个关键点之前取其左值，最后一个之后取其右值。
+     */
+    private double chain(double t) {
+        float[] times = chainTimes;
+        int n = times.length;
+        if (t < times[0])
+            return leftValues[0];
+        if (t >= times[n - 1])
+            return rightValues[n - 1];
+        int i = 0;
+        while (i + 2 < n && t >= times[i + 1]) {
+            i++;
+        }
+        double gap = (double) times[i + 1] - times[i];
+        double s = (t - times[i]) / gap;
+        double p0 = rightValues[i];
+        double p3 = leftValues[i + 1];
+        double p1 = p0 + rightSlopes[i] * gap / 3;
+        double p2 = p3 - leftSlopes[i + 1] * gap / 3;
+        double u = 1 - s;
+        return u * u * u * p0 + 3 * u * u * s * p1 + 3 * u * s * s * p2 + s * s * s * p3;
     }
 }
@@ -1,37 +1,69 @@
 package org.Lcing.snowstorm_engine.runtime;
 
-import com.google.gson.JsonElement;
 import net.minecraft.resources.ResourceLocation;
 import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
 import org.Lcing.snowstorm_engine.molang.MolangContext;
-import org.Lcing.snowstorm_engine.runtime.components.ComponentRegistry;
+import org.Lcing.snowstorm_engine.molang.MolangRandom;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
 import org.Lcing.snowstorm_engine.runtime.components.IParticleComponent;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.AbstractList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import com.mojang.math.Vector4f;
 
 /**
  * Snowstorm 发射器。
  * 负责管理一组粒子，处理它们的生成、更新和渲染状态。
+ * 配置 (组件、曲线、纹理) 来自共享的 {@link ParticleEffectTemplate}，发射器只保存运行时状态。
  */
 public class SnowstormEmitter {
     // 核心
-    private final ParticleDefinition definition;
+    private final ParticleEffectTemplate template;
+    private final MolangVariableSchema schema;
     private final MolangContext context;
-    private final List<SnowstormParticle> particles = new ArrayList<>();
-    private final List<IParticleComponent> components = new ArrayList<>();
-    private final Map<String, SnowstormCurve> curves = new HashMap<>();
+    // 随机种子: 发射器和所有粒子的随机数 (math.random、形状采样、寿命抖动等) 都由它派生
+    private final long seed;
+    private final ParticleBuffer particles = new ParticleBuffer();
+    private final List<SnowstormParticle> particleList = new AbstractList<>() {
+        @Override
+        public SnowstormParticle get(int index) {
+            Objects.checkIndex(index, particles.size());
+            return new SnowstormParticle(particles, index);
+        }
+
+        @Override
+        public int size() {
+            return particles.size();
+        }
+    };
+    // 复用的粒子视图 (分别用于更新和生成，避免在组件回调中互相覆盖)
+    private final SnowstormParticle updateView = new SnowstormParticle(particles, 0);
+    private final SnowstormParticle spawnView = new SnowstormParticle(particles, 0);
+    // 批量求值使用的列缓存和临时数组
+    private final ParticleBatch batch = new ParticleBatch();
+    private final List<IParticleComponent> components;
+    private final SnowstormCurve[] curveList;
+    private final int[] curveSlots;
+    // 需要每 tick 写入粒子上下文的内置变量 (只写入表达式实际读取的变量)
+    private final boolean publishAge;
+    private final boolean publishLifetime;
+    private final boolean publishPosition;
+    private final boolean publishRotation;
 
     // 状态
     private float age = 0;
     public boolean isSpawning = true;
     public double x, y, z; // 发射器世界坐标
 
+    // 组件的运行时状态 (组件本身在发射器之间共享)
+    public float spawnAccumulator = 0; // emitter_rate_steady: 小数生成累加器
+    public boolean instantSpawned = false; // emitter_rate_instant: 本次循环是否已生成
+    public boolean lifetimeStarted = false; // emitter_lifetime_once: 是否已评估 active_time
+
     // 本地空间设置
     public boolean localSpacePosition = false;
     public boolean localSpaceRotation = false;
@@ -40,11 +72,6 @@ public class SnowstormEmitter {
     // 容量
     private int maxParticles = 1000;
 
-    // 纹理与材质
-    private String texturePath;
-    private ResourceLocation textureLocation;
-    private MaterialType materialType = MaterialType.PARTICLES_BLEND;
-
     public void setMaxParticles(int max) {
         this.maxParticles = max;
     }
@@ -54,61 +81,57 @@ public class SnowstormEmitter {
     }
 
     public ResourceLocation getTextureLocation() {
-        return textureLocation;
+        return template.getTextureLocation();
     }
 
     public MaterialType getMaterialType() {
-        return materialType;
+        return template.getMaterialType();
     }
 
-    public SnowstormEmitter(ParticleDefinition definition) {
-        this.definition = definition;
-        this.context = new MolangContext();
-
-        // 解析描述中的纹理和材质
-        var desc = definition.getEffect().getDescription();
-        if (desc != null) {
-            var renderParams = desc.getRenderParameters();
-            if (renderParams != null) {
-                this.texturePath = renderParams.getTexturePath();
-                this.materialType = MaterialType.fromString(renderParams.getMaterial());
-
-                // 加载纹理
-                if (this.texturePath != null) {
-                    this.textureLocation = TextureManager.getTexture(this.texturePath);
-                    // System.out.println("[Snowstorm] Texture: " + this.texturePath + " -> " +
-                    // this.textureLocation);
-                }
-            }
-        }
+    public SnowstormEmitter(ParticleEffectTemplate template) {
+        this(template, MolangRandom.newSeed());
+    }
 
-        // 初始化组件
-        Map<String, JsonElement> defComponents = definition.getEffect().getComponents();
-        if (defComponents != null) {
-            for (Map.Entry<String, JsonElement> entry : defComponents.entrySet()) {
-                String key = entry.getKey();
-                IParticleComponent comp = ComponentRegistry.create(key);
-                if (comp != null) {
-                    comp.fromJson(entry.getValue());
-                    components.add(comp);
-                } else {
-                    // System.out.println("Unknown component: " + key);
-                }
+    /**
+     * 使用指定种子创建发射器。相同的模板、种子和 tick 序列产生完全相同的粒子，
+     * 因此多个客户端只需同步种子即可渲染相同的效果。
+     */
+    public SnowstormEmitter(ParticleEffectTemplate template, long seed) {
+        this.template = template;
+        this.seed = seed;
+        this.schema = template.getSchema();
+        this.components = template.getComponents();
+        this.curveList = template.getCurveList();
+        this.curveSlots = template.getCurveSlots();
+        this.publishAge = schema.isRead(MolangVariableSchema.PARTICLE_AGE);
+        this.publishLifetime = schema.isRead(MolangVariableSchema.PARTICLE_LIFETIME);
+        this.publishPosition = schema.isRead(MolangVariableSchema.PARTICLE_X)
+                || schema.isRead(MolangVariableSchema.PARTICLE_Y) || schema.isRead(MolangVariableSchema.PARTICLE_Z);
+        this.publishRotation = schema.isRead(MolangVariableSchema.PARTICLE_ROTATION);
+        this.context = new MolangContext(schema);
+        this.context.setSeed(seed);
+        // 查询可以通过上下文取得发射器 (位置、附着实体等)
+        this.context.setOwner(this);
+        // 发射器随机变量只在创建时确定，粒子经发射器指针读取 (没有表达式使用时不消耗随机数)
+        for (int r = 1; r <= 4; r++) {
+            int slot = schema.find("variable.emitter_random_" + r);
+            if (slot >= 0) {
+                this.context.set(slot, this.context.nextFloat());
             }
         }
-
-        // 解析曲线
-        Map<String, JsonElement> defCurves = definition.getEffect().getCurves();
-        if (defCurves != null) {
-            for (Map.Entry<String, JsonElement> entry : defCurves.entrySet()) {
-                SnowstormCurve curve = SnowstormCurve.fromJson(entry.getValue());
-                if (curve != null) {
-                    curves.put(entry.getKey(), curve);
-                    // System.out.println("[Snowstorm] Parsed curve: " + entry.getKey());
-                }
-            }
+        for (IParticleComponent comp : components) {
+            comp.onEmitterCreated(this);
         }
-        // System.out.println("[Snowstorm] Total curves parsed: " + curves.size());
+        // 创建后可能立即生成粒子，先计算一次发射器级表达式
+        template.evaluateEmitterExpressions(context);
+    }
+
+    /**
+     * 直接从定义创建发射器。每次都会重新编译定义，频繁生成时应使用
+     * {@link SnowstormManager#getTemplate(String)} 获取已编译的模板。
+     */
+    public SnowstormEmitter(ParticleDefinition definition) {
+        this(ParticleEffectTemplate.compile(definition));
     }
 
     private java.util.function.Supplier<com.mojang.math.Matrix4f> transformProvider;
@@ -152,7 +175,13 @@ public class SnowstormEmitter {
         double dz = this.z - prevZ;
 
         age += dt;
-        context.setVariable("variable.emitter_age", age);
+        context.set(MolangVariableSchema.EMITTER_AGE, age);
+        context.clearSharedCache();
+        for (IParticleComponent comp : components) {
+            comp.preUpdate(this, dt);
+        }
+        // 只依赖发射器变量的表达式每 tick 计算一次，所有粒子共享结果
+        template.evaluateEmitterExpressions(context);
 
         // 1. 更新组件 (发射器逻辑)
         for (IParticleComponent comp : components) {
@@ -160,69 +189,197 @@ public class SnowstormEmitter {
         }
 
         // 2. 更新粒子
-        Iterator<SnowstormParticle> it = particles.iterator();
-        while (it.hasNext()) {
-            SnowstormParticle p = it.next();
-
+        // 按组件顺序整批更新: 每个表达式对所有粒子求值一次，而不是每个粒子遍历一次所有表达式
+        ParticleBuffer buf = particles;
+        int n = buf.size();
+        for (int i = 0; i < n; i++) {
             // 处理本地空间: 如果发射器移动了，粒子也随之移动
             if (this.localSpacePosition) {
-                p.x += dx;
-                p.y += dy;
-                p.z += dz;
-                p.prevX += dx;
-                p.prevY += dy;
-                p.prevZ += dz;
+                buf.x[i] += dx;
+                buf.y[i] += dy;
+                buf.z[i] += dz;
+                buf.prevX[i] += dx;
+                buf.prevY[i] += dy;
+                buf.prevZ[i] += dz;
             }
 
-            // 首先: 更新粒子基本状态并评估曲线
-            // 这将在上下文中设置曲线变量 (例如 variable.size)
-            p.update(dt, curves);
+            // 首先: 更新粒子基本状态
+            updateParticleState(buf, i, dt);
+        }
 
-            // 然后: 更新可能使用了曲线变量的组件
-            for (IParticleComponent comp : components) {
-                comp.updateParticle(p, dt);
+        // 粒子脚本 (particle_initialization) 可能写入曲线和组件读取的变量
+        for (IParticleComponent comp : components) {
+            comp.preUpdateParticles(buf, dt);
+        }
+
+        // 评估曲线，在上下文中设置曲线变量 (例如 variable.size)
+        batch.reset(buf.context, n);
+        evaluateCurves(buf, n);
+
+        // 然后: 更新可能使用了曲线变量的组件
+        for (IParticleComponent comp : components) {
+            batch.invalidate();
+            comp.updateParticles(buf, batch, updateView, dt);
+        }
+
+        int i = 0;
+        while (i < buf.size()) {
+            if (buf.dead[i]) {
+                // 交换删除: 最后一个粒子移动到槽位 i，下一轮重新处理 i
+                buf.remove(i);
+            } else {
+                i++;
             }
+        }
+    }
+
+    /**
+     * 推进单个粒子的年龄和旋转 (原 SnowstormParticle.update)。曲线随后由 {@link #evaluateCurves(ParticleBuffer, int)} 整批计算。
+     */
+    private void updateParticleState(ParticleBuffer buf, int i, float dt) {
+        MolangContext ctx = buf.context[i];
+
+        // 存储上一帧位置用于插值
+        buf.prevX[i] = buf.x[i];
+        buf.prevY[i] = buf.y[i];
+        buf.prevZ[i] = buf.z[i];
+
+        // 更新年龄
+        float particleAge = buf.age[i] + dt;
+        buf.age[i] = particleAge;
+        if (publishAge) {
+            ctx.set(MolangVariableSchema.PARTICLE_AGE, particleAge);
+        }
+        if (publishLifetime) {
+            ctx.set(MolangVariableSchema.PARTICLE_LIFETIME, buf.lifetime[i]);
+        }
+        // 年龄已更新，上一 tick 的公共子表达式结果失效
+        ctx.clearSharedCache();
+
+        if (particleAge >= buf.lifetime[i]) {
+            buf.dead[i] = true;
+            return;
+        }
+
+        // 注意: 位置更新 (pos += velocity * dt) 在 MotionDynamicComponent 中完成
+        // 为了将物理计算与加速度保持在一起。
+
+        // 应用旋转速率
+        buf.rotation[i] += buf.rotationRate[i] * dt;
 
-            if (p.isDead) {
-                it.remove();
+        // 更新 Molang 位置变量，以便其他表达式可以使用它们 (没有表达式读取时跳过)
+        if (publishPosition) {
+            ctx.set(MolangVariableSchema.PARTICLE_X, (float) buf.x[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Y, (float) buf.y[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Z, (float) buf.z[i]);
+        }
+        if (publishRotation) {
+            ctx.set(MolangVariableSchema.PARTICLE_ROTATION, buf.rotation[i]);
+        }
+    }
+
+    private void evaluateCurves(ParticleBuffer buf, int n) {
+        if (curveList.length == 0)
+            return;
+        MolangContext[] contexts = buf.context;
+        float[] out = batch.acquire();
+        for (int c = 0; c < curveList.length; c++) {
+            curveList[c].evalBatch(batch, out, 0, n);
+            int slot = curveSlots[c];
+            for (int i = 0; i < n; i++) {
+                // 已死亡的粒子不再更新曲线
+                if (!buf.dead[i]) {
+                    contexts[i].set(slot, out[i]);
+                }
             }
+            // 后面的曲线可能读取这条曲线的输出
+            batch.invalidate();
+        }
+        batch.release();
+    }
+
+    private void evaluateCurves(MolangContext ctx) {
+        for (int c = 0; c < curveList.length; c++) {
+            ctx.set(curveSlots[c], curveList[c].eval(ctx));
         }
     }
 
     public void spawnParticle() {
+        // 超出代价预算的定义被限制粒子数
+        if (particles.size() >= template.getParticleCap()) {
+            return;
+        }
         // 创建粒子
-        MolangContext pCtx = new MolangContext(); // 应该继承发射器的上下文吗？
-        SnowstormParticle p = new SnowstormParticle(x, y, z, pCtx);
+        MolangContext pCtx = new MolangContext(schema, context);
+        int i = particles.add(x, y, z, pCtx);
+
+        // 初始化标准变量
+        // 在实际实现中，我们应该在此处评估 "minecraft:particle_lifetime_expression"
+        // 目前，如果未设置，我们默认随机 1-3 秒
+        float lifetime = 1.0f + pCtx.nextFloat() * 2.0f;
+        particles.lifetime[i] = lifetime;
+
+        // 设置此粒子的随机变量
+        pCtx.set(MolangVariableSchema.PARTICLE_RANDOM_1, pCtx.nextFloat());
+        pCtx.set(MolangVariableSchema.PARTICLE_RANDOM_2, pCtx.nextFloat());
+
+        // 初始化 年龄/生命周期 以供第一帧曲线评估使用
+        pCtx.set(MolangVariableSchema.PARTICLE_AGE, 0f);
+        pCtx.set(MolangVariableSchema.PARTICLE_LIFETIME, lifetime);
 
         // 首先初始化曲线，以便曲线变量可用于组件初始化
-        p.initializeCurves(curves);
+        evaluateCurves(pCtx);
 
         // 通过组件初始化
+        SnowstormParticle p = spawnView.at(i);
         for (IParticleComponent comp : components) {
             comp.onInitializeParticle(p);
         }
 
-        particles.add(p);
+        // 初始化期间组件可能修改寿命等变量，初始化级缓存从第一帧开始生效
+        pCtx.clearInitCache();
+        pCtx.clearSharedCache();
     }
 
-    public List<SnowstormParticle> getParticles() {
+    public ParticleBuffer getParticleBuffer() {
         return particles;
     }
 
+    /**
+     * 活跃粒子的只读列表视图。每次 get 返回一个指向对应槽位的新视图；
+     * 移除粒子时槽位会被交换，因此不要跨 tick 持有列表或其中的元素。
+     * 遍历大量粒子时直接使用 {@link #getParticleBuffer()}。
+     */
+    public List<SnowstormParticle> getParticles() {
+        return particleList;
+    }
+
     public int getParticleCount() {
         return particles.size();
     }
 
+    public long getSeed() {
+        return seed;
+    }
+
     public MolangContext getContext() {
         return context;
     }
 
+    public MolangVariableSchema getSchema() {
+        return schema;
+    }
+
     public List<IParticleComponent> getComponents() {
         return components;
     }
 
     public Map<String, SnowstormCurve> getCurves() {
-        return curves;
+        return template.getCurves();
+    }
+
+    public ParticleEffectTemplate getTemplate() {
+        return template;
     }
 
     public float getAge() {
@@ -50,11 +50,18 @@ public class SnowstormManager {
      * @return 创建的发射器对象，如果 ID 未找到则返回 null。
      */
     public SnowstormEmitter createEmitter(String identifier, double x, double y, double z) {
-        org.Lcing.snowstorm_engine.definition.ParticleDefinition def = getParticleDefinition(identifier);
-        if (def == null)
+        return createEmitter(identifier, x, y, z, org.Lcing.snowstorm_engine.molang.MolangRandom.newSeed());
+    }
+
+    /**
+     * 使用指定随机种子创建发射器，效果可复现 (见 {@link SnowstormEmitter#getSeed()})。
+     */
+    public SnowstormEmitter createEmitter(String identifier, double x, double y, double z, long seed) {
+        ParticleEffectTemplate template = getTemplate(identifier);
+        if (template == null)
             return null;
 
-        SnowstormEmitter emitter = new SnowstormEmitter(def);
+        SnowstormEmitter emitter = new SnowstormEmitter(template, seed);
         emitter.x = x;
         emitter.y = y;
         emitter.z = z;
@@ -127,10 +134,18 @@ public class SnowstormManager {
     }
 
     private final java.util.Map<String, org.Lcing.snowstorm_engine.definition.ParticleDefinition> particleRegistry = new java.util.HashMap<>();
+    // 每个定义编译一次的模板，发射器从这里实例化
+    private final java.util.Map<String, ParticleEffectTemplate> templateRegistry = new java.util.HashMap<>();
 
     public void reloadParticles(net.minecraft.server.packs.resources.ResourceManager resourceManager) {
         particleRegistry.clear();
+        templateRegistry.clear();
+        org.Lcing.snowstorm_engine.molang.MolangCompiler.resetStats();
+        org.Lcing.snowstorm_engine.molang.MolangTiering.resetStats();
+        org.Lcing.snowstorm_engine.molang.MolangSimd.resetStats();
+        org.Lcing.snowstorm_engine.molang.MolangParseCache.resetStats();
         LOGGER.info("[Snowstorm] 正在重新加载粒子...");
+        long reloadStart = System.nanoTime();
 
         java.util.Collection<ResourceLocation> locations = resourceManager.listResources("snowstorm_engine/particles",
                 path -> path.endsWith(".particle.json") || path.endsWith(".json"));
@@ -143,23 +158,140 @@ public class SnowstormManager {
                             .load(is);
                     String id = def != null ? def.getIdentifier() : null;
                     if (id != null) {
-                        particleRegistry.put(id, def);
+                        ParticleEffectTemplate template = register(def);
+                        if (!template.getUnknownFunctions().isEmpty()) {
+                            LOGGER.warn("[Snowstorm] 粒子 '{}' 使用了未注册的 Molang 函数 (按 0 处理): {}", id,
+                                    template.getUnknownFunctions());
+                        }
+                        checkBudget(id, template);
+                        logLuts(id, template);
                         LOGGER.info("[Snowstorm] 已加载粒子 '{}' 来自 '{}'", id, location);
                     } else {
                         LOGGER.error("[Snowstorm] 无法从 '{}' 加载粒子: 缺少标识符 (identifier)", location);
                     }
                 }
+            } catch (org.Lcing.snowstorm_engine.molang.MolangParseException e) {
+                LOGGER.error("[Snowstorm] 粒子 '{}' 中的 Molang 表达式有误: {}", location, e.getMessage());
             } catch (Exception e) {
                 LOGGER.error("[Snowstorm] 加载粒子 '{}' 时发生错误", location, e);
             }
         }
-        LOGGER.info("[Snowstorm] 共加载 {} 个粒子。", particleRegistry.size());
+        LOGGER.info("[Snowstorm] 共加载 {} 个粒子 (用时 {} ms)。", particleRegistry.size(),
+                (System.nanoTime() - reloadStart) / 1_000_000);
+        LOGGER.info("[Snowstorm] Molang 编译: {} 个成功, {} 个失败, {} 个差分校验不一致 (已退回解释器)",
+                org.Lcing.snowstorm_engine.molang.MolangCompiler.getCompiledCount(),
+                org.Lcing.snowstorm_engine.molang.MolangCompiler.getFailedCount(),
+                org.Lcing.snowstorm_engine.molang.MolangCompiler.getMismatchCount());
+        if (org.Lcing.snowstorm_engine.molang.MolangTiering.getThreshold() > 0) {
+            LOGGER.info("[Snowstorm] Molang 分层执行: {} 个表达式先由解释器执行，调用 {} 次后在后台编译",
+                    org.Lcing.snowstorm_engine.molang.MolangTiering.getTieredCount(),
+                    org.Lcing.snowstorm_engine.molang.MolangTiering.getThreshold());
+        }
+        LOGGER.info("[Snowstorm] Molang 解析缓存: {} 次命中, {} 次未命中, {} 次槽位不一致, {} 个共享节点",
+                org.Lcing.snowstorm_engine.molang.MolangParseCache.getHits(),
+                org.Lcing.snowstorm_engine.molang.MolangParseCache.getMisses(),
+                org.Lcing.snowstorm_engine.molang.MolangParseCache.getRejected(),
+                org.Lcing.snowstorm_engine.molang.MolangParseCache.getSharedNodes());
+        if (org.Lcing.snowstorm_engine.molang.MolangSimd.isAvailable()) {
+            LOGGER.info("[Snowstorm] Molang 向量化: {} 个表达式 ({} 路)",
+                    org.Lcing.snowstorm_engine.molang.MolangSimd.getVectorizedCount(),
+                    org.Lcing.snowstorm_engine.molang.MolangSimd.lanes());
+        } else {
+            LOGGER.info("[Snowstorm] jdk.incubator.vector 不可用，批量求值使用标量实现");
+        }
+    }
+
+    /**
+     * 编译定义并注册。先编译后注册，表达式有语法错误 (抛出 MolangParseException) 时定义和模板都不会注册，
+     * 命令和网络包不会接受这个 ID。
+     */
+    ParticleEffectTemplate register(org.Lcing.snowstorm_engine.definition.ParticleDefinition def) {
+        ParticleEffectTemplate template = ParticleEffectTemplate.compile(def);
+        particleRegistry.put(def.getIdentifier(), def);
+        templateRegistry.put(def.getIdentifier(), template);
+        return template;
+    }
+
+    /**
+     * 按当前设置重新编译所有已加载定义的模板 (例如开关分析器之后)。
+     * 已存在的发射器继续使用旧模板，之后创建的发射器使用新模板。
+     */
+    public int recompileTemplates() {
+        int count = 0;
+        for (java.util.Map.Entry<String, org.Lcing.snowstorm_engine.definition.ParticleDefinition> entry : particleRegistry
+                .entrySet()) {
+            try {
+                ParticleEffectTemplate template = ParticleEffectTemplate.compile(entry.getValue());
+                checkBudget(entry.getKey(), template);
+                templateRegistry.put(entry.getKey(), template);
+                count++;
+            } catch (Exception e) {
+                LOGGER.error("[Snowstorm] 重新编译粒子 '{}' 时发生错误", entry.getKey(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 记录按归一化年龄查表的表达式和预采样的曲线数量，以及它们相对精确求值的误差。
+     */
+    private void logLuts(String id, ParticleEffectTemplate template) {
+        if (template.getLutCount() > 0) {
+            LOGGER.info("[Snowstorm] 粒子 '{}': {} 个表达式按归一化年龄查表 (分辨率 {}, 最大误差 {})", id,
+                    template.getLutCount(), template.getLutResolution(),
+                    String.format("%.3g", template.getLutMaxError()));
+        }
+        if (template.getLutRejected() > 0) {
+            LOGGER.info("[Snowstorm] 粒子 '{}': {} 个表达式查表误差超出容差 (最大误差 {})，按表达式求值", id,
+                    template.getLutRejected(), String.format("%.3g", template.getLutRejectedError()));
+        }
+        int baked = 0;
+        float bakedError = 0;
+        for (java.util.Map.Entry<String, SnowstormCurve> entry : template.getCurves().entrySet()) {
+            SnowstormCurve curve = entry.getValue();
+            if (curve.isBaked()) {
+                baked++;
+                bakedError = Math.max(bakedError, curve.getMaxError());
+            } else if (curve.isRejected()) {
+                LOGGER.info("[Snowstorm] 粒子 '{}': 曲线 '{}' ({}) 查表误差超出容差 (最大误差 {})，按解析式求值", id,
+                        entry.getKey(), curve.getType(), String.format("%.3g", curve.getMaxError()));
+            }
+        }
+        if (baked > 0) {
+            LOGGER.info("[Snowstorm] 粒子 '{}': {} 条曲线预采样为查找表 (与解析求值的最大误差 {})", id, baked,
+                    String.format("%.3g", bakedError));
+        }
+    }
+
+    /**
+     * 检查定义的静态代价估计，超出预算时记录警告 (开启限流时设置粒子数上限)。
+     */
+    private void checkBudget(String id, ParticleEffectTemplate template) {
+        ParticleCostModel.Estimate cost = template.getCost();
+        if (!cost.isOverBudget()) {
+            LOGGER.debug("[Snowstorm] 粒子 '{}' 代价估计: {}", id, cost);
+            return;
+        }
+        LOGGER.warn("[Snowstorm] 粒子 '{}' 的估计代价超出预算 {}: {}", id,
+                String.format("%.3g", ParticleCostModel.getBudget()), cost);
+        if (ParticleCostModel.isThrottleEnabled()) {
+            int cap = cost.budgetParticleCap();
+            template.setParticleCap(cap);
+            LOGGER.warn("[Snowstorm] 粒子 '{}' 已限流: 每个发射器最多 {} 个粒子", id, cap);
+        }
     }
 
     public org.Lcing.snowstorm_engine.definition.ParticleDefinition getParticleDefinition(String identifier) {
         return particleRegistry.get(identifier);
     }
 
+    /**
+     * 获取已编译的粒子效果模板，未找到时返回 null。
+     */
+    public ParticleEffectTemplate getTemplate(String identifier) {
+        return templateRegistry.get(identifier);
+    }
+
     public List<SnowstormEmitter> getEmitters() {
         return emitters;
     }
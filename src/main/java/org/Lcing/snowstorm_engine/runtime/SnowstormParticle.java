@@ -1,118 +1,298 @@
 package org.Lcing.snowstorm_engine.runtime;
 
 import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.runtime.components.FacingCameraMode;
 
 /**
- * 粒子实体类。
- * 存储单个粒子的所有状态数据（位置、速度、颜色、旋转等）。
+ * 粒子视图。
+ * 粒子数据实际存储在 {@link ParticleBuffer} 的并行数组中，此类只是指向某个槽位的轻量视图。
+ * 视图可以通过 {@link #at(int)} 重新定位，因此不要长期持有它。
+ *
+ * 旧版本的公共字段 (x, vx, age, isDead, sizeX ...) 已移除，每个字段都有同名的 getX / setX 访问器，
+ * 旧代码中的 particle.vx = v 改为 particle.setVx(v)，particle.isDead 改为 particle.isDead()。
+ * 旧的构造函数、initializeCurves 和 update 由发射器负责，没有对应的方法。
  */
 public class SnowstormParticle {
-    public double x, y, z;
-    public double prevX, prevY, prevZ;
-    public double vx, vy, vz;
+    private final ParticleBuffer buffer;
+    private int index;
+
+    public SnowstormParticle(ParticleBuffer buffer, int index) {
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    /**
+     * 将此视图移动到另一个槽位。
+     */
+    public SnowstormParticle at(int index) {
+        this.index = index;
+        return this;
+    }
+
+    public ParticleBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public MolangContext getContext() {
+        return buffer.context[index];
+    }
+
+    // 位置
+
+    public double getX() {
+        return buffer.x[index];
+    }
+
+    public double getY() {
+        return buffer.y[index];
+    }
+
+    public double getZ() {
+        return buffer.z[index];
+    }
+
+    public void setX(double x) {
+        buffer.x[index] = x;
+    }
+
+    public void setY(double y) {
+        buffer.y[index] = y;
+    }
+
+    public void setZ(double z) {
+        buffer.z[index] = z;
+    }
+
+    public void setPosition(double x, double y, double z) {
+        buffer.x[index] = x;
+        buffer.y[index] = y;
+        buffer.z[index] = z;
+    }
+
+    public double getPrevX() {
+        return buffer.prevX[index];
+    }
+
+    public double getPrevY() {
+        return buffer.prevY[index];
+    }
+
+    public double getPrevZ() {
+        return buffer.prevZ[index];
+    }
+
+    public void setPrevX(double prevX) {
+        buffer.prevX[index] = prevX;
+    }
+
+    public void setPrevY(double prevY) {
+        buffer.prevY[index] = prevY;
+    }
+
+    public void setPrevZ(double prevZ) {
+        buffer.prevZ[index] = prevZ;
+    }
+
+    // 速度
+
+    public double getVx() {
+        return buffer.vx[index];
+    }
+
+    public double getVy() {
+        return buffer.vy[index];
+    }
+
+    public double getVz() {
+        return buffer.vz[index];
+    }
+
+    public void setVx(double vx) {
+        buffer.vx[index] = vx;
+    }
+
+    public void setVy(double vy) {
+        buffer.vy[index] = vy;
+    }
+
+    public void setVz(double vz) {
+        buffer.vz[index] = vz;
+    }
+
+    public void setVelocity(double vx, double vy, double vz) {
+        buffer.vx[index] = vx;
+        buffer.vy[index] = vy;
+        buffer.vz[index] = vz;
+    }
 
     // 生命周期
-    public float age = 0;
-    public float lifetime = 1.0f;
-    public boolean isDead = false;
+
+    public float getAge() {
+        return buffer.age[index];
+    }
+
+    public void setAge(float age) {
+        buffer.age[index] = age;
+    }
+
+    public float getLifetime() {
+        return buffer.lifetime[index];
+    }
+
+    public void setLifetime(float lifetime) {
+        buffer.lifetime[index] = lifetime;
+    }
+
+    public boolean isDead() {
+        return buffer.dead[index];
+    }
+
+    public void setDead(boolean dead) {
+        buffer.dead[index] = dead;
+    }
+
+    public void kill() {
+        buffer.dead[index] = true;
+    }
 
     // 渲染属性
-    public float sizeX = 0.25f;
-    public float sizeY = 0.25f;
-    public float u0 = 0, v0 = 0, u1 = 1, v1 = 1;
-    public org.Lcing.snowstorm_engine.runtime.components.FacingCameraMode renderMode = org.Lcing.snowstorm_engine.runtime.components.FacingCameraMode.ROTATE_XYZ;
 
-    // 旋转属性 (度)
-    public float rotation = 0;
-    public float rotationRate = 0; // 度/秒
+    public float getSizeX() {
+        return buffer.sizeX[index];
+    }
 
-    // 颜色 (RGBA, 0.0-1.0)
-    public float colorR = 1.0f, colorG = 1.0f, colorB = 1.0f, colorA = 1.0f;
+    public float getSizeY() {
+        return buffer.sizeY[index];
+    }
 
-    // 光照
-    public boolean useLighting = false;
+    public void setSizeX(float sizeX) {
+        buffer.sizeX[index] = sizeX;
+    }
 
-    private final MolangContext context;
+    public void setSizeY(float sizeY) {
+        buffer.sizeY[index] = sizeY;
+    }
 
-    public SnowstormParticle(double x, double y, double z, MolangContext context) {
-        this.x = x;
-        this.y = y;
-        this.z = z;
-        this.prevX = x;
-        this.prevY = y;
-        this.prevZ = z;
-        this.context = context;
+    public void setSize(float sizeX, float sizeY) {
+        buffer.sizeX[index] = sizeX;
+        buffer.sizeY[index] = sizeY;
+    }
 
-        // 初始化标准变量
-        // 在实际实现中，我们应该在此处评估 "minecraft:particle_lifetime_expression"
-        // 目前，如果未设置，我们默认随机 1-3 秒
-        this.lifetime = 1.0f + context.getRandom().nextFloat() * 2.0f;
+    public float getU0() {
+        return buffer.u0[index];
+    }
 
-        // 设置此粒子的随机变量
-        context.setVariable("variable.particle_random_1", context.getRandom().nextFloat());
-        context.setVariable("variable.particle_random_2", context.getRandom().nextFloat());
+    public void setU0(float u0) {
+        buffer.u0[index] = u0;
+    }
 
-        // 初始化 年龄/生命周期 以供第一帧曲线评估使用
-        context.setVariable("variable.particle_age", 0f);
-        context.setVariable("variable.particle_lifetime", lifetime);
+    public float getV0() {
+        return buffer.v0[index];
     }
 
-    /**
-     * 在组件使用之前初始化曲线变量。
-     * 必须在 onInitializeParticle() 之前调用，以确保基于曲线的尺寸表达式能正常工作。
-     */
-    public void initializeCurves(java.util.Map<String, SnowstormCurve> curves) {
-        if (curves != null && !curves.isEmpty()) {
-            for (java.util.Map.Entry<String, SnowstormCurve> entry : curves.entrySet()) {
-                float val = entry.getValue().eval(context);
-                context.setVariable(entry.getKey(), val);
-                // System.out.println("[Snowstorm] Curve init: " + entry.getKey() + " = " +
-                // val);
-            }
-        }
-    }
-
-    public void update(float dt, java.util.Map<String, SnowstormCurve> curves) {
-        // 存储上一帧位置用于插值
-        this.prevX = this.x;
-        this.prevY = this.y;
-        this.prevZ = this.z;
-
-        // 更新年龄
-        age += dt;
-        context.setVariable("variable.particle_age", age);
-        context.setVariable("variable.particle_lifetime", lifetime);
-
-        if (age >= lifetime) {
-            // 调试: 始终记录粒子死亡以诊断计时问题
-            // System.out.println("[Snowstorm] DIED: age=" + String.format("%.3f", age) +
-            // "s, lifetime=" + String.format("%.3f", lifetime) + "s");
-            isDead = true;
-            return;
-        }
-
-        // 评估曲线
-        if (curves != null) {
-            for (java.util.Map.Entry<String, SnowstormCurve> entry : curves.entrySet()) {
-                float val = entry.getValue().eval(context);
-                context.setVariable(entry.getKey(), val);
-            }
-        }
-
-        // 注意: 位置更新 (pos += velocity * dt) 在 MotionDynamicComponent 中完成
-        // 为了将物理计算与加速度保持在一起。
-
-        // 应用旋转速率
-        rotation += rotationRate * dt;
-
-        // 更新 Molang 位置变量，以便其他表达式可以使用它们
-        context.setVariable("variable.particle_x", (float) x);
-        context.setVariable("variable.particle_y", (float) y);
-        context.setVariable("variable.particle_z", (float) z);
-        context.setVariable("variable.particle_rotation", rotation);
+    public void setV0(float v0) {
+        buffer.v0[index] = v0;
     }
 
-    public MolangContext getContext() {
-        return context;
+    public float getU1() {
+        return buffer.u1[index];
+    }
+
+    public void setU1(float u1) {
+        buffer.u1[index] = u1;
+    }
+
+    public float getV1() {
+        return buffer.v1[index];
+    }
+
+    public void setV1(float v1) {
+        buffer.v1[index] = v1;
+    }
+
+    public void setUV(float u0, float v0, float u1, float v1) {
+        buffer.u0[index] = u0;
+        buffer.v0[index] = v0;
+        buffer.u1[index] = u1;
+        buffer.v1[index] = v1;
+    }
+
+    public FacingCameraMode getRenderMode() {
+        return buffer.renderMode[index];
+    }
+
+    public void setRenderMode(FacingCameraMode mode) {
+        buffer.renderMode[index] = mode;
+    }
+
+    // 旋转
+
+    public float getRotation() {
+        return buffer.rotation[index];
+    }
+
+    public void setRotation(float rotation) {
+        buffer.rotation[index] = rotation;
+    }
+
+    public float getRotationRate() {
+        return buffer.rotationRate[index];
+    }
+
+    public void setRotationRate(float rotationRate) {
+        buffer.rotationRate[index] = rotationRate;
+    }
+
+    // 颜色
+
+    public void setColor(float r, float g, float b, float a) {
+        buffer.colorR[index] = r;
+        buffer.colorG[index] = g;
+        buffer.colorB[index] = b;
+        buffer.colorA[index] = a;
+    }
+
+    public float getColorR() {
+        return buffer.colorR[index];
+    }
+
+    public void setColorR(float colorR) {
+        buffer.colorR[index] = colorR;
+    }
+
+    public float getColorG() {
+        return buffer.colorG[index];
+    }
+
+    public void setColorG(float colorG) {
+        buffer.colorG[index] = colorG;
+    }
+
+    public float getColorB() {
+        return buffer.colorB[index];
+    }
+
+    public void setColorB(float colorB) {
+        buffer.colorB[index] = colorB;
+    }
+
+    public float getColorA() {
+        return buffer.colorA[index];
+    }
+
+    public void setColorA(float colorA) {
+        buffer.colorA[index] = colorA;
+    }
+
+    public boolean isUseLighting() {
+        return buffer.useLighting[index];
+    }
+
+    public void setUseLighting(boolean useLighting) {
+        buffer.useLighting[index] = useLighting;
     }
 }
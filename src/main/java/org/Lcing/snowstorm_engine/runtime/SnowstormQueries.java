@@ -0,0 +1,42 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import net.minecraft.client.Camera;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.phys.Vec3;
+import org.Lcing.snowstorm_engine.molang.MolangQueryRegistry;
+import org.Lcing.snowstorm_engine.molang.MolangQueryRegistry.Frequency;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+
+/**
+ * 内置的 Molang 查询。
+ * 查询处理函数只在客户端求值时执行，注册本身不会加载客户端类。
+ */
+public class SnowstormQueries {
+
+    public static void register() {
+        // 一天中的时间 [0, 1)，0 为日出
+        MolangQueryRegistry.register("query.time_of_day", Frequency.PER_TICK, (ctx, args) -> {
+            Minecraft mc = Minecraft.getInstance();
+            if (mc.level == null) {
+                return 0;
+            }
+            return (mc.level.getDayTime() % 24000L) / 24000f;
+        });
+
+        // 相机旋转 (度)，参数 0 为俯仰角 (x)，1 为偏航角 (y)
+        MolangQueryRegistry.register("query.camera_rotation", Frequency.PER_TICK, (ctx, args) -> {
+            Camera camera = Minecraft.getInstance().gameRenderer.getMainCamera();
+            int axis = args.length > 0 ? (int) args[0] : 0;
+            return axis == 0 ? camera.getXRot() : camera.getYRot();
+        });
+
+        // 粒子到相机的距离 (依赖粒子位置，每次求值计算)
+        MolangQueryRegistry.register("query.distance_from_camera", Frequency.PER_EVALUATION, (ctx, args) -> {
+            Vec3 cam = Minecraft.getInstance().gameRenderer.getMainCamera().getPosition();
+            double dx = ctx.get(MolangVariableSchema.PARTICLE_X) - cam.x;
+            double dy = ctx.get(MolangVariableSchema.PARTICLE_Y) - cam.y;
+            double dz = ctx.get(MolangVariableSchema.PARTICLE_Z) - cam.z;
+            return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        });
+    }
+}
@@ -71,12 +71,15 @@ public class SnowstormRenderer {
             }
             RenderSystem.setShaderTexture(0, texture);
 
-            for (SnowstormParticle p : emitter.getParticles()) {
+            ParticleBuffer particles = emitter.getParticleBuffer();
+            SnowstormParticle view = new SnowstormParticle(particles, 0);
+            for (int i = 0; i < particles.size(); i++) {
                 // 预渲染更新 (动画等)
+                view.at(i);
                 for (org.Lcing.snowstorm_engine.runtime.components.IParticleComponent comp : emitter.getComponents()) {
-                    comp.onRenderParticle(p, event.getPartialTick());
+                    comp.onRenderParticle(view, event.getPartialTick());
                 }
-                renderParticle(buffer, p, poseStack, camPos, event.getPartialTick());
+                renderParticle(buffer, particles, i, poseStack, camPos, event.getPartialTick());
             }
         }
 
@@ -91,12 +94,12 @@ public class SnowstormRenderer {
         RenderSystem.enableDepthTest();
     }
 
-    private static void renderParticle(BufferBuilder buffer, SnowstormParticle p, PoseStack poseStack, Vec3 camPos,
-            float partialTick) {
+    private static void renderParticle(BufferBuilder buffer, ParticleBuffer p, int i, PoseStack poseStack,
+            Vec3 camPos, float partialTick) {
         // 插值位置
-        double ix = p.prevX + (p.x - p.prevX) * partialTick;
-        double iy = p.prevY + (p.y - p.prevY) * partialTick;
-        double iz = p.prevZ + (p.z - p.prevZ) * partialTick;
+        double ix = p.prevX[i] + (p.x[i] - p.prevX[i]) * partialTick;
+        double iy = p.prevY[i] + (p.y[i] - p.prevY[i]) * partialTick;
+        double iz = p.prevZ[i] + (p.z[i] - p.prevZ[i]) * partialTick;
 
         // 使用相机相对坐标进行旋转逻辑 (指向相机的向量)
         float relX = (float) (ix - camPos.x);
@@ -108,17 +111,18 @@ public class SnowstormRenderer {
         com.mojang.math.Quaternion rotation;
 
         // 四边形尺寸 (来自粒子)
-        float sx = p.sizeX;
-        float sy = p.sizeY;
+        float sx = p.sizeX[i];
+        float sy = p.sizeY[i];
 
         Vector3f[] corners = null;
 
-        switch (p.renderMode) {
+        switch (p.renderMode[i]) {
             case LOOKAT_DIRECTION:
                 // 基于速度的方向
-                double len = Math.sqrt(p.vx * p.vx + p.vy * p.vy + p.vz * p.vz);
+                double pvx = p.vx[i], pvy = p.vy[i], pvz = p.vz[i];
+                double len = Math.sqrt(pvx * pvx + pvy * pvy + pvz * pvz);
                 if (len > 0.001) {
-                    Vector3f dir = new Vector3f((float) (p.vx / len), (float) (p.vy / len), (float) (p.vz / len));
+                    Vector3f dir = new Vector3f((float) (pvx / len), (float) (pvy / len), (float) (pvz / len));
                     // 通常基岩版: 纹理的 Y 轴 = 速度方向。
                     // 我们想要构建一个基底，其中 Y = Dir。
                     // Z = 指向粒子的向量 (面向相机? 还是仅仅是正交?)
@@ -247,13 +251,14 @@ public class SnowstormRenderer {
 
         // 添加到缓冲区，带有动态 UV 和颜色
         // 切记：此处不要使用矩阵 - 相机相对坐标已经是正确的
-        int r = (int) (p.colorR * 255);
-        int g = (int) (p.colorG * 255);
-        int b = (int) (p.colorB * 255);
-        int a = (int) (p.colorA * 255);
-        buffer.vertex(corners[0].x(), corners[0].y(), corners[0].z()).uv(p.u0, p.v1).color(r, g, b, a).endVertex();
-        buffer.vertex(corners[1].x(), corners[1].y(), corners[1].z()).uv(p.u1, p.v1).color(r, g, b, a).endVertex();
-        buffer.vertex(corners[2].x(), corners[2].y(), corners[2].z()).uv(p.u1, p.v0).color(r, g, b, a).endVertex();
-        buffer.vertex(corners[3].x(), corners[3].y(), corners[3].z()).uv(p.u0, p.v0).color(r, g, b, a).endVertex();
+        int r = (int) (p.colorR[i] * 255);
+        int g = (int) (p.colorG[i] * 255);
+        int b = (int) (p.colorB[i] * 255);
+        int a = (int) (p.colorA[i] * 255);
+        float u0 = p.u0[i], v0 = p.v0[i], u1 = p.u1[i], v1 = p.v1[i];
+        buffer.vertex(corners[0].x(), corners[0].y(), corners[0].z()).uv(u0, v1).color(r, g, b, a).endVertex();
+        buffer.vertex(corners[1].x(), corners[1].y(), corners[1].z()).uv(u1, v1).color(r, g, b, a).endVertex();
+        buffer.vertex(corners[2].x(), corners[2].y(), corners[2].z()).uv(u1, v0).color(r, g, b, a).endVertex();
+        buffer.vertex(corners[3].x(), corners[3].y(), corners[3].z()).uv(u0, v0).color(r, g, b, a).endVertex();
     }
 }
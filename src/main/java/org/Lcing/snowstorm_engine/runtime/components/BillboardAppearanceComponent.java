@@ -5,6 +5,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 public class BillboardAppearanceComponent implements IParticleComponent {
@@ -12,6 +14,8 @@ public class BillboardAppearanceComponent implements IParticleComponent {
     // 尺寸表达式（可以是 Molang）
     private IMolangExpression sizeX = IMolangExpression.constant(0.25f);
     private IMolangExpression sizeY = IMolangExpression.constant(0.25f);
+    // 尺寸为常量时只在初始化时写入一次
+    private boolean constantSize = true;
 
     // UV 逻辑
     private int textureWidth = 16;
@@ -33,7 +37,7 @@ public class BillboardAppearanceComponent implements IParticleComponent {
     private float staticU0 = 0, staticV0 = 0, staticU1 = 1, staticV1 = 1;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject obj = json.getAsJsonObject();
@@ -42,8 +46,9 @@ public class BillboardAppearanceComponent implements IParticleComponent {
         if (obj.has("size")) {
             JsonArray arr = obj.getAsJsonArray("size");
             if (arr.size() >= 2) {
-                sizeX = MolangParser.parseJson(arr.get(0));
-                sizeY = MolangParser.parseJson(arr.get(1));
+                sizeX = parser.parseJson(arr.get(0));
+                sizeY = parser.parseJson(arr.get(1));
+                constantSize = sizeX.isConstant() && sizeY.isConstant();
             }
         }
 
@@ -101,21 +106,20 @@ public class BillboardAppearanceComponent implements IParticleComponent {
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         // 评估尺寸表达式
         var ctx = particle.getContext();
-        particle.sizeX = sizeX.eval(ctx);
-        particle.sizeY = sizeY.eval(ctx);
-        particle.renderMode = FacingCameraMode.fromString(facingMode);
-
-        // System.out.println("[Snowstorm] Particle size: " + particle.sizeX + " x " +
-        // particle.sizeY);
+        b.sizeX[i] = sizeX.eval(ctx);
+        b.sizeY[i] = sizeY.eval(ctx);
+        b.renderMode[i] = FacingCameraMode.fromString(facingMode);
 
         // 设置初始 UV
         if (!isFlipbook) {
-            particle.u0 = staticU0;
-            particle.v0 = staticV0;
-            particle.u1 = staticU1;
-            particle.v1 = staticV1;
+            b.u0[i] = staticU0;
+            b.v0[i] = staticV0;
+            b.u1[i] = staticU1;
+            b.v1[i] = staticV1;
         } else {
             updateFlipbookUV(particle);
         }
@@ -123,19 +127,40 @@ public class BillboardAppearanceComponent implements IParticleComponent {
 
     @Override
     public void updateParticle(SnowstormParticle particle, float dt) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         // 动态更新尺寸（用于动画尺寸）
-        var ctx = particle.getContext();
-        particle.sizeX = sizeX.eval(ctx);
-        particle.sizeY = sizeY.eval(ctx);
+        if (!constantSize) {
+            var ctx = particle.getContext();
+            b.sizeX[i] = sizeX.eval(ctx);
+            b.sizeY[i] = sizeY.eval(ctx);
+        }
 
         if (isFlipbook) {
             updateFlipbookUV(particle);
         }
     }
 
+    @Override
+    public void updateParticles(ParticleBuffer b, ParticleBatch batch, SnowstormParticle view, float dt) {
+        int n = b.size();
+        if (!constantSize) {
+            // 直接写入尺寸列
+            sizeX.evalBatch(batch, b.sizeX, 0, n);
+            sizeY.evalBatch(batch, b.sizeY, 0, n);
+        }
+        if (isFlipbook) {
+            for (int i = 0; i < n; i++) {
+                updateFlipbookUV(view.at(i));
+            }
+        }
+    }
+
     private void updateFlipbookUV(SnowstormParticle p) {
+        ParticleBuffer b = p.getBuffer();
+        int i = p.getIndex();
         float frameIndex = 0;
-        float totalTime = p.age;
+        float totalTime = b.age[i];
 
         if (fps > 0) {
             frameIndex = (int) (totalTime * fps);
@@ -151,9 +176,9 @@ public class BillboardAppearanceComponent implements IParticleComponent {
         float vStart = baseUV[1] + stepUV[1] * frameIndex;
 
         // 将像素转换为 0-1 UV
-        p.u0 = uStart / (float) textureWidth;
-        p.v0 = vStart / (float) textureHeight;
-        p.u1 = (uStart + sizeUV[0]) / (float) textureWidth;
-        p.v1 = (vStart + sizeUV[1]) / (float) textureHeight;
+        b.u0[i] = uStart / (float) textureWidth;
+        b.v0[i] = vStart / (float) textureHeight;
+        b.u1[i] = (uStart + sizeUV[0]) / (float) textureWidth;
+        b.v1[i] = (vStart + sizeUV[1]) / (float) textureHeight;
     }
 }
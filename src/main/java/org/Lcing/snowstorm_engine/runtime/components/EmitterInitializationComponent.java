@@ -0,0 +1,43 @@
+package org.Lcing.snowstorm_engine.runtime.components;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
+
+/**
+ * 实现 minecraft:emitter_initialization
+ * creation_expression 在发射器创建时执行一次，per_update_expression 在每 tick 开始时执行。
+ * 脚本写入的变量属于发射器，粒子读取这些变量时从发射器上下文取值。
+ */
+public class EmitterInitializationComponent implements IParticleComponent {
+
+    private IMolangExpression creationExpression;
+    private IMolangExpression perUpdateExpression;
+
+    @Override
+    public void fromJson(JsonElement json, MolangParser parser) {
+        if (!json.isJsonObject())
+            return;
+
+        JsonObject comp = json.getAsJsonObject();
+        creationExpression = parser.parseJson(comp.get("creation_expression"), MolangVariableSchema.Scope.EMITTER);
+        perUpdateExpression = parser.parseJson(comp.get("per_update_expression"), MolangVariableSchema.Scope.EMITTER);
+    }
+
+    @Override
+    public void onEmitterCreated(SnowstormEmitter emitter) {
+        if (creationExpression != null) {
+            creationExpression.eval(emitter.getContext());
+        }
+    }
+
+    @Override
+    public void preUpdate(SnowstormEmitter emitter, float dt) {
+        if (perUpdateExpression != null) {
+            perUpdateExpression.eval(emitter.getContext());
+        }
+    }
+}
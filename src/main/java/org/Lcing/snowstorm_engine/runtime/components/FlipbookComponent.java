@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -26,7 +27,7 @@ public class FlipbookComponent implements IParticleComponent {
     private float textureHeight = 128;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject root = json.getAsJsonObject();
@@ -53,8 +54,8 @@ public class FlipbookComponent implements IParticleComponent {
         // 解析 base_UV [u, v]
         if (flipbook.has("base_UV") && flipbook.get("base_UV").isJsonArray()) {
             JsonArray arr = flipbook.getAsJsonArray("base_UV");
-            baseU = MolangParser.parseJson(arr.get(0));
-            baseV = MolangParser.parseJson(arr.get(1));
+            baseU = parser.parseJson(arr.get(0));
+            baseV = parser.parseJson(arr.get(1));
         } else {
             baseU = baseV = IMolangExpression.ZERO;
         }
@@ -62,8 +63,8 @@ public class FlipbookComponent implements IParticleComponent {
         // 解析 size_UV [u, v]
         if (flipbook.has("size_UV") && flipbook.get("size_UV").isJsonArray()) {
             JsonArray arr = flipbook.getAsJsonArray("size_UV");
-            sizeU = MolangParser.parseJson(arr.get(0));
-            sizeV = MolangParser.parseJson(arr.get(1));
+            sizeU = parser.parseJson(arr.get(0));
+            sizeV = parser.parseJson(arr.get(1));
         } else {
             sizeU = sizeV = IMolangExpression.constant(1);
         }
@@ -71,21 +72,21 @@ public class FlipbookComponent implements IParticleComponent {
         // 解析 step_UV [u, v]
         if (flipbook.has("step_UV") && flipbook.get("step_UV").isJsonArray()) {
             JsonArray arr = flipbook.getAsJsonArray("step_UV");
-            stepU = MolangParser.parseJson(arr.get(0));
-            stepV = MolangParser.parseJson(arr.get(1));
+            stepU = parser.parseJson(arr.get(0));
+            stepV = parser.parseJson(arr.get(1));
         } else {
             stepU = sizeU;
             stepV = IMolangExpression.ZERO;
         }
 
         // 解析 frames_per_second
-        framesPerSecond = MolangParser.parseJson(flipbook.get("frames_per_second"));
+        framesPerSecond = parser.parseJson(flipbook.get("frames_per_second"));
         if (framesPerSecond == null) {
             framesPerSecond = IMolangExpression.constant(8);
         }
 
         // 解析 max_frame
-        maxFrame = MolangParser.parseJson(flipbook.get("max_frame"));
+        maxFrame = parser.parseJson(flipbook.get("max_frame"));
         if (maxFrame == null) {
             maxFrame = IMolangExpression.constant(1);
         }
@@ -106,6 +107,8 @@ public class FlipbookComponent implements IParticleComponent {
         if (baseU == null || baseV == null)
             return;
 
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
 
         float bu = baseU.eval(ctx);
@@ -120,12 +123,12 @@ public class FlipbookComponent implements IParticleComponent {
         int frame;
         if (stretchToLifetime) {
             // 基于年龄/寿命比率的帧
-            float progress = particle.age / particle.lifetime;
+            float progress = b.age[i] / b.lifetime[i];
             frame = (int) (progress * max);
         } else {
             // 基于 FPS 的帧
             float fps = framesPerSecond.eval(ctx);
-            frame = (int) (particle.age * fps);
+            frame = (int) (b.age[i] * fps);
         }
 
         // 处理循环/截断
@@ -142,9 +145,9 @@ public class FlipbookComponent implements IParticleComponent {
         float v1 = v0 + sv;
 
         // 归一化到 0-1 范围
-        particle.u0 = u0 / textureWidth;
-        particle.v0 = v0 / textureHeight;
-        particle.u1 = u1 / textureWidth;
-        particle.v1 = v1 / textureHeight;
+        b.u0[i] = u0 / textureWidth;
+        b.v0[i] = v0 / textureHeight;
+        b.u1[i] = u1 / textureWidth;
+        b.v1[i] = v1 / textureHeight;
     }
 }
@@ -2,6 +2,8 @@ package org.Lcing.snowstorm_engine.runtime.components;
 
 import com.google.gson.JsonElement;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
@@ -9,9 +11,23 @@ public interface IParticleComponent {
     /**
      * 当组件从 JSON 初始化时调用。
      * 
-     * @param json 此组件的 JSON 元素。
+     * @param json   此组件的 JSON 元素。
+     * @param parser 绑定到当前粒子定义变量表的 Molang 解析器。组件写入的变量也应在此时解析为槽位。
      */
-    void fromJson(JsonElement json);
+    void fromJson(JsonElement json, MolangParser parser);
+
+    /**
+     * 发射器创建时调用 (在第一次计算发射器级表达式之前)。
+     */
+    default void onEmitterCreated(SnowstormEmitter emitter) {
+    }
+
+    /**
+     * 在发射器每 tick 开始、发射器级表达式计算之前调用。
+     * 用于写入发射器变量的脚本，使同一 tick 内依赖这些变量的表达式读到新值。
+     */
+    default void preUpdate(SnowstormEmitter emitter, float dt) {
+    }
 
     /**
      * 在发射器每 tick 调用。
@@ -40,6 +56,27 @@ public interface IParticleComponent {
     default void updateParticle(SnowstormParticle particle, float dt) {
     }
 
+    /**
+     * 对发射器中的所有粒子 ([0, buffer.size())) 执行一次更新。
+     * 默认逐个调用 {@link #updateParticle}；表达式较多的组件可以覆盖此方法，
+     * 通过 {@link org.Lcing.snowstorm_engine.molang.IMolangExpression#evalBatch} 一次求值整批粒子。
+     *
+     * @param batch 指向 buffer.context 的批次，调用前已失效，组件修改了上下文变量后无需自行失效。
+     * @param view  可复用的粒子视图。
+     */
+    default void updateParticles(ParticleBuffer buffer, ParticleBatch batch, SnowstormParticle view, float dt) {
+        for (int i = 0; i < buffer.size(); i++) {
+            updateParticle(view.at(i), dt);
+        }
+    }
+
+    /**
+     * 粒子基本状态 (年龄、位置变量) 更新之后、曲线和其他组件更新之前调用一次。
+     * 已死亡的粒子 (buffer.dead[i]) 应当跳过。
+     */
+    default void preUpdateParticles(ParticleBuffer buffer, float dt) {
+    }
+
     /**
      * 在渲染之前调用，以设置渲染状态（例如 UV、着色）。
      */
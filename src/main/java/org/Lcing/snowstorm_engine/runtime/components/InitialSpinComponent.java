@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -16,7 +17,7 @@ public class InitialSpinComponent implements IParticleComponent {
     private IMolangExpression rotationRate = IMolangExpression.ZERO;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -24,14 +25,14 @@ public class InitialSpinComponent implements IParticleComponent {
         JsonObject comp = json.getAsJsonObject();
 
         if (comp.has("rotation")) {
-            rotation = MolangParser.parseJson(comp.get("rotation"));
+            rotation = parser.parseJson(comp.get("rotation"));
             if (rotation == null) {
                 rotation = IMolangExpression.ZERO;
             }
         }
 
         if (comp.has("rotation_rate")) {
-            rotationRate = MolangParser.parseJson(comp.get("rotation_rate"));
+            rotationRate = parser.parseJson(comp.get("rotation_rate"));
             if (rotationRate == null) {
                 rotationRate = IMolangExpression.ZERO;
             }
@@ -40,12 +41,14 @@ public class InitialSpinComponent implements IParticleComponent {
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
 
         // 设置初始旋转（度）
-        particle.rotation = rotation.eval(ctx);
+        b.rotation[i] = rotation.eval(ctx);
 
         // 设置旋转速率（度/秒）
-        particle.rotationRate = rotationRate.eval(ctx);
+        b.rotationRate[i] = rotationRate.eval(ctx);
     }
 }
@@ -16,19 +16,19 @@ public class LifetimeExpressionComponent implements IParticleComponent {
     private IMolangExpression expirationExpression;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
         // json 已经是组件值了
         JsonObject comp = json.getAsJsonObject();
 
-        activationExpression = MolangParser.parseJson(comp.get("activation_expression"));
+        activationExpression = parser.parseJson(comp.get("activation_expression"));
         if (activationExpression == null) {
             activationExpression = IMolangExpression.constant(1); // 始终激活
         }
 
-        expirationExpression = MolangParser.parseJson(comp.get("expiration_expression"));
+        expirationExpression = parser.parseJson(comp.get("expiration_expression"));
         if (expirationExpression == null) {
             expirationExpression = IMolangExpression.ZERO; // 基于表达式永不过期
         }
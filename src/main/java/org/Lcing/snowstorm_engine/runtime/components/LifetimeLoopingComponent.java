@@ -12,16 +12,16 @@ public class LifetimeLoopingComponent implements IParticleComponent {
     private IMolangExpression sleepTime = IMolangExpression.ZERO;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject obj = json.getAsJsonObject();
 
         if (obj.has("active_time")) {
-            activeTime = MolangParser.parseJson(obj.get("active_time"));
+            activeTime = parser.parseJson(obj.get("active_time"));
         }
         if (obj.has("sleep_time")) {
-            sleepTime = MolangParser.parseJson(obj.get("sleep_time"));
+            sleepTime = parser.parseJson(obj.get("sleep_time"));
         }
     }
 
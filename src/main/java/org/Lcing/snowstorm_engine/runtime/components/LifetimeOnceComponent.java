@@ -13,10 +13,9 @@ import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
 public class LifetimeOnceComponent implements IParticleComponent {
 
     private IMolangExpression activeTime = IMolangExpression.constant(10);
-    private boolean started = false;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -24,7 +23,7 @@ public class LifetimeOnceComponent implements IParticleComponent {
         JsonObject comp = json.getAsJsonObject();
 
         if (comp.has("active_time")) {
-            activeTime = MolangParser.parseJson(comp.get("active_time"));
+            activeTime = parser.parseJson(comp.get("active_time"));
             if (activeTime == null) {
                 activeTime = IMolangExpression.constant(10);
             }
@@ -33,12 +32,12 @@ public class LifetimeOnceComponent implements IParticleComponent {
 
     @Override
     public void update(SnowstormEmitter emitter, float dt) {
-        if (!started) {
+        if (!emitter.lifetimeStarted) {
             // 启动时评估一次 active_time
             float lifetime = activeTime.eval(emitter.getContext());
             emitter.setMaxLifetime(lifetime);
             emitter.isSpawning = true;
-            started = true;
+            emitter.lifetimeStarted = true;
         }
 
         // 检查发射器是否已超过其寿命
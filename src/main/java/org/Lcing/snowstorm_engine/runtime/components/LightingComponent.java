@@ -2,6 +2,8 @@ package org.Lcing.snowstorm_engine.runtime.components;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -13,12 +15,14 @@ public class LightingComponent implements IParticleComponent {
     // 目前只是一个标志 - 实际实现将使用来自世界的光照等级
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         // 该组件没有字段 - 它的存在即启用光照
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
-        particle.useLighting = true;
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
+        b.useLighting[i] = true;
     }
 }
@@ -2,6 +2,7 @@ package org.Lcing.snowstorm_engine.runtime.components;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
 import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
 
 /**
@@ -15,7 +16,7 @@ public class LocalSpaceComponent implements IParticleComponent {
     private boolean localVelocity = false;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
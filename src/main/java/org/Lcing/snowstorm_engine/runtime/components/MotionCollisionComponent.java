@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -17,9 +18,12 @@ public class MotionCollisionComponent implements IParticleComponent {
     private IMolangExpression coefficientOfRestitution; // 弹跳系数
     private IMolangExpression collisionDrag;
     private boolean expireOnContact = false;
+    private int hasCollisionSlot;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
+        hasCollisionSlot = parser.getSchema().slotOf("variable.has_collision");
+
         if (!json.isJsonObject())
             return;
 
@@ -27,19 +31,19 @@ public class MotionCollisionComponent implements IParticleComponent {
         JsonObject comp = json.getAsJsonObject();
 
         // 解析 collision_radius
-        collisionRadius = MolangParser.parseJson(comp.get("collision_radius"));
+        collisionRadius = parser.parseJson(comp.get("collision_radius"));
         if (collisionRadius == null) {
             collisionRadius = IMolangExpression.constant(0.1f);
         }
 
         // 解析 coefficient_of_restitution (弹性)
-        coefficientOfRestitution = MolangParser.parseJson(comp.get("coefficient_of_restitution"));
+        coefficientOfRestitution = parser.parseJson(comp.get("coefficient_of_restitution"));
         if (coefficientOfRestitution == null) {
             coefficientOfRestitution = IMolangExpression.constant(0);
         }
 
         // 解析 collision_drag
-        collisionDrag = MolangParser.parseJson(comp.get("collision_drag"));
+        collisionDrag = parser.parseJson(comp.get("collision_drag"));
         if (collisionDrag == null) {
             collisionDrag = IMolangExpression.ZERO;
         }
@@ -52,7 +56,9 @@ public class MotionCollisionComponent implements IParticleComponent {
 
     @Override
     public void updateParticle(SnowstormParticle particle, float dt) {
-        if (particle.isDead)
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
+        if (b.dead[i])
             return;
 
         var ctx = particle.getContext();
@@ -60,27 +66,27 @@ public class MotionCollisionComponent implements IParticleComponent {
 
         // 简单的地面碰撞 (Y = 0)
         // 在真实实现中，这将根据实际方块进行检查
-        double predictedY = particle.y + particle.vy * dt;
+        double predictedY = b.y[i] + b.vy[i] * dt;
 
         if (predictedY - radius < 0) {
             // 与地面碰撞
             if (expireOnContact) {
-                particle.isDead = true;
+                b.dead[i] = true;
                 return;
             }
 
             // 反弹
             float bounce = coefficientOfRestitution.eval(ctx);
-            particle.vy = -particle.vy * bounce;
-            particle.y = radius;
+            b.vy[i] = -b.vy[i] * bounce;
+            b.y[i] = radius;
 
             // 应用摩擦/阻力
             float drag = collisionDrag.eval(ctx);
-            particle.vx *= (1 - drag);
-            particle.vz *= (1 - drag);
+            b.vx[i] *= (1 - drag);
+            b.vz[i] *= (1 - drag);
 
             // 设置 Molang 的碰撞标志
-            ctx.setVariable("variable.has_collision", 1);
+            ctx.set(hasCollisionSlot, 1);
         }
 
         // TODO: 使用 Level.getBlockState 实现完整的方块碰撞
@@ -88,6 +94,6 @@ public class MotionCollisionComponent implements IParticleComponent {
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
-        particle.getContext().setVariable("variable.has_collision", 0);
+        particle.getContext().set(hasCollisionSlot, 0);
     }
 }
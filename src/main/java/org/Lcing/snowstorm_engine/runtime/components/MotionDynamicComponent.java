@@ -5,6 +5,10 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.molang.ParticleBatch;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 public class MotionDynamicComponent implements IParticleComponent {
@@ -12,32 +16,37 @@ public class MotionDynamicComponent implements IParticleComponent {
     private IMolangExpression[] linearAcceleration = new IMolangExpression[] { IMolangExpression.ZERO,
             IMolangExpression.ZERO, IMolangExpression.ZERO };
     private IMolangExpression linearDrag = IMolangExpression.ZERO;
+    // 变量表在模板编译完成后记录哪些内置变量被读取，位置变量没有被读取时不写回上下文
+    private MolangVariableSchema schema;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
+        schema = parser.getSchema();
         if (!json.isJsonObject())
             return; // 通常为空对象 {} 用于默认物理
         JsonObject obj = json.getAsJsonObject();
 
         if (obj.has("linear_acceleration")) {
             JsonArray arr = obj.getAsJsonArray("linear_acceleration");
-            linearAcceleration[0] = MolangParser.parseJson(arr.get(0));
-            linearAcceleration[1] = MolangParser.parseJson(arr.get(1));
-            linearAcceleration[2] = MolangParser.parseJson(arr.get(2));
+            linearAcceleration[0] = parser.parseJson(arr.get(0));
+            linearAcceleration[1] = parser.parseJson(arr.get(1));
+            linearAcceleration[2] = parser.parseJson(arr.get(2));
         }
 
         if (obj.has("linear_drag_coefficient")) {
-            linearDrag = MolangParser.parseJson(obj.get("linear_drag_coefficient"));
+            linearDrag = parser.parseJson(obj.get("linear_drag_coefficient"));
         }
     }
 
     @Override
     public void updateParticle(SnowstormParticle particle, float dt) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         // 物理更新
         // pos += velocity * dt
-        particle.x += particle.vx * dt;
-        particle.y += particle.vy * dt;
-        particle.z += particle.vz * dt;
+        b.x[i] += b.vx[i] * dt;
+        b.y[i] += b.vy[i] * dt;
+        b.z[i] += b.vz[i] * dt;
 
         // 加速度
         // v += a * dt
@@ -45,17 +54,9 @@ public class MotionDynamicComponent implements IParticleComponent {
         float ay = linearAcceleration[1].eval(particle.getContext());
         float az = linearAcceleration[2].eval(particle.getContext());
 
-        // 调试: 偶尔记录加速度
-        if (Math.random() < 0.002) {
-            // System.out.println("[Snowstorm] Accel: (" +
-            // String.format("%.2f", ax) + ", " +
-            // String.format("%.2f", ay) + ", " +
-            // String.format("%.2f", az) + ")");
-        }
-
-        particle.vx += ax * dt;
-        particle.vy += ay * dt;
-        particle.vz += az * dt;
+        b.vx[i] += ax * dt;
+        b.vy[i] += ay * dt;
+        b.vz[i] += az * dt;
 
         // 阻力
         // v *= (1 - drag * dt) ? 或者是更复杂的公式？
@@ -64,14 +65,66 @@ public class MotionDynamicComponent implements IParticleComponent {
         if (drag > 0) {
             // 限制 dragFactor 以防止反向加速或不稳定的速度增长
             float dragFactor = Math.max(0, Math.min(1, 1.0f - drag * dt));
-            particle.vx *= dragFactor;
-            particle.vy *= dragFactor;
-            particle.vz *= dragFactor;
+            b.vx[i] *= dragFactor;
+            b.vy[i] *= dragFactor;
+            b.vz[i] *= dragFactor;
         }
 
         // 移动后更新 Molang 变量
-        particle.getContext().setVariable("variable.particle_x", (float) particle.x);
-        particle.getContext().setVariable("variable.particle_y", (float) particle.y);
-        particle.getContext().setVariable("variable.particle_z", (float) particle.z);
+        if (publishPosition()) {
+            var ctx = particle.getContext();
+            ctx.set(MolangVariableSchema.PARTICLE_X, (float) b.x[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Y, (float) b.y[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Z, (float) b.z[i]);
+        }
+    }
+
+    private boolean publishPosition() {
+        return schema == null || schema.isRead(MolangVariableSchema.PARTICLE_X)
+                || schema.isRead(MolangVariableSchema.PARTICLE_Y) || schema.isRead(MolangVariableSchema.PARTICLE_Z);
+    }
+
+    @Override
+    public void updateParticles(ParticleBuffer b, ParticleBatch batch, SnowstormParticle view, float dt) {
+        int n = b.size();
+        // 表达式只读取移动前的上下文，因此可以先整批求值
+        float[] ax = batch.acquire();
+        float[] ay = batch.acquire();
+        float[] az = batch.acquire();
+        float[] drag = batch.acquire();
+        linearAcceleration[0].evalBatch(batch, ax, 0, n);
+        linearAcceleration[1].evalBatch(batch, ay, 0, n);
+        linearAcceleration[2].evalBatch(batch, az, 0, n);
+        linearDrag.evalBatch(batch, drag, 0, n);
+
+        for (int i = 0; i < n; i++) {
+            b.x[i] += b.vx[i] * dt;
+            b.y[i] += b.vy[i] * dt;
+            b.z[i] += b.vz[i] * dt;
+            b.vx[i] += ax[i] * dt;
+            b.vy[i] += ay[i] * dt;
+            b.vz[i] += az[i] * dt;
+            if (drag[i] > 0) {
+                float dragFactor = Math.max(0, Math.min(1, 1.0f - drag[i] * dt));
+                b.vx[i] *= dragFactor;
+                b.vy[i] *= dragFactor;
+                b.vz[i] *= dragFactor;
+            }
+        }
+        batch.release();
+        batch.release();
+        batch.release();
+        batch.release();
+
+        if (!publishPosition()) {
+            return;
+        }
+        MolangContext[] contexts = b.context;
+        for (int i = 0; i < n; i++) {
+            MolangContext ctx = contexts[i];
+            ctx.set(MolangVariableSchema.PARTICLE_X, (float) b.x[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Y, (float) b.y[i]);
+            ctx.set(MolangVariableSchema.PARTICLE_Z, (float) b.z[i]);
+        }
     }
 }
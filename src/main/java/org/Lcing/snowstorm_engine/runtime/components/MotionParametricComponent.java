@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -20,8 +21,16 @@ public class MotionParametricComponent implements IParticleComponent {
     // 绕方向旋转
     private IMolangExpression rotation;
 
+    // 生成位置变量的槽位
+    private int spawnXSlot, spawnYSlot, spawnZSlot;
+
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
+        var schema = parser.getSchema();
+        spawnXSlot = schema.slotOf("variable.spawn_x");
+        spawnYSlot = schema.slotOf("variable.spawn_y");
+        spawnZSlot = schema.slotOf("variable.spawn_z");
+
         if (!json.isJsonObject())
             return;
 
@@ -31,58 +40,62 @@ public class MotionParametricComponent implements IParticleComponent {
         // 解析 relative_position [x, y, z]
         if (comp.has("relative_position") && comp.get("relative_position").isJsonArray()) {
             JsonArray arr = comp.getAsJsonArray("relative_position");
-            relativeX = MolangParser.parseJson(arr.get(0));
-            relativeY = MolangParser.parseJson(arr.get(1));
-            relativeZ = MolangParser.parseJson(arr.get(2));
+            relativeX = parser.parseJson(arr.get(0));
+            relativeY = parser.parseJson(arr.get(1));
+            relativeZ = parser.parseJson(arr.get(2));
         }
 
         // 解析 direction [x, y, z]
         if (comp.has("direction") && comp.get("direction").isJsonArray()) {
             JsonArray arr = comp.getAsJsonArray("direction");
-            directionX = MolangParser.parseJson(arr.get(0));
-            directionY = MolangParser.parseJson(arr.get(1));
-            directionZ = MolangParser.parseJson(arr.get(2));
+            directionX = parser.parseJson(arr.get(0));
+            directionY = parser.parseJson(arr.get(1));
+            directionZ = parser.parseJson(arr.get(2));
         }
 
         // 解析 rotation
-        rotation = MolangParser.parseJson(comp.get("rotation"));
+        rotation = parser.parseJson(comp.get("rotation"));
     }
 
     @Override
     public void updateParticle(SnowstormParticle particle, float dt) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
 
         // 更新位置 (相对于生成点的偏移)
         if (relativeX != null && relativeY != null && relativeZ != null) {
             // 获取生成位置 (存储为原点)
-            double spawnX = ctx.resolve("variable.spawn_x");
-            double spawnY = ctx.resolve("variable.spawn_y");
-            double spawnZ = ctx.resolve("variable.spawn_z");
+            double spawnX = ctx.get(spawnXSlot);
+            double spawnY = ctx.get(spawnYSlot);
+            double spawnZ = ctx.get(spawnZSlot);
 
-            particle.x = spawnX + relativeX.eval(ctx);
-            particle.y = spawnY + relativeY.eval(ctx);
-            particle.z = spawnZ + relativeZ.eval(ctx);
+            b.x[i] = spawnX + relativeX.eval(ctx);
+            b.y[i] = spawnY + relativeY.eval(ctx);
+            b.z[i] = spawnZ + relativeZ.eval(ctx);
         }
 
         // 更新速度/方向 (用于渲染目的)
         if (directionX != null && directionY != null && directionZ != null) {
-            particle.vx = directionX.eval(ctx);
-            particle.vy = directionY.eval(ctx);
-            particle.vz = directionZ.eval(ctx);
+            b.vx[i] = directionX.eval(ctx);
+            b.vy[i] = directionY.eval(ctx);
+            b.vz[i] = directionZ.eval(ctx);
         }
 
         // 更新旋转
         if (rotation != null) {
-            particle.rotation = rotation.eval(ctx);
+            b.rotation[i] = rotation.eval(ctx);
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         // 存储生成位置用于相对计算
         var ctx = particle.getContext();
-        ctx.setVariable("variable.spawn_x", (float) particle.x);
-        ctx.setVariable("variable.spawn_y", (float) particle.y);
-        ctx.setVariable("variable.spawn_z", (float) particle.z);
+        ctx.set(spawnXSlot, (float) b.x[i]);
+        ctx.set(spawnYSlot, (float) b.y[i]);
+        ctx.set(spawnZSlot, (float) b.z[i]);
     }
 }
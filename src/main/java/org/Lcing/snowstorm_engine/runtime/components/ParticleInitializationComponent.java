@@ -0,0 +1,52 @@
+package org.Lcing.snowstorm_engine.runtime.components;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
+import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
+
+/**
+ * 实现 minecraft:particle_initialization
+ * per_update_expression 在每个粒子每 tick 开始时执行 (曲线和其他组件之前)，per_render_expression 在渲染前执行。
+ */
+public class ParticleInitializationComponent implements IParticleComponent {
+
+    private IMolangExpression perUpdateExpression;
+    private IMolangExpression perRenderExpression;
+
+    @Override
+    public void fromJson(JsonElement json, MolangParser parser) {
+        if (!json.isJsonObject())
+            return;
+
+        JsonObject comp = json.getAsJsonObject();
+        if (comp.has("per_update_expression")) {
+            perUpdateExpression = parser.parseJson(comp.get("per_update_expression"));
+        }
+        if (comp.has("per_render_expression")) {
+            perRenderExpression = parser.parseJson(comp.get("per_render_expression"));
+        }
+    }
+
+    @Override
+    public void preUpdateParticles(ParticleBuffer buffer, float dt) {
+        if (perUpdateExpression == null)
+            return;
+        MolangContext[] contexts = buffer.context;
+        for (int i = 0; i < buffer.size(); i++) {
+            if (!buffer.dead[i]) {
+                perUpdateExpression.eval(contexts[i]);
+            }
+        }
+    }
+
+    @Override
+    public void onRenderParticle(SnowstormParticle particle, float partialTick) {
+        if (perRenderExpression != null) {
+            perRenderExpression.eval(particle.getContext());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 public class ParticleLifetimeComponent implements IParticleComponent {
@@ -11,23 +12,24 @@ public class ParticleLifetimeComponent implements IParticleComponent {
     // expiration_expressions 对于 MVP 尚未实现
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject obj = json.getAsJsonObject();
         if (obj.has("max_lifetime")) {
-            maxLifetime = MolangParser.parseJson(obj.get("max_lifetime"));
+            maxLifetime = parser.parseJson(obj.get("max_lifetime"));
         }
     }
 
+    public IMolangExpression getMaxLifetime() {
+        return maxLifetime;
+    }
+
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         float lifetime = maxLifetime.eval(particle.getContext());
-        particle.lifetime = lifetime;
-        // 调试: 记录寿命设置
-        if (Math.random() < 0.02) {
-            // System.out.println("[Snowstorm] Lifetime set: " + String.format("%.3f",
-            // lifetime));
-        }
+        b.lifetime[i] = lifetime;
     }
 }
@@ -14,10 +14,9 @@ import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 public class RateInstantComponent implements IParticleComponent {
 
     private IMolangExpression numParticles;
-    private boolean spawned = false;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -25,31 +24,35 @@ public class RateInstantComponent implements IParticleComponent {
         JsonObject comp = json.getAsJsonObject();
 
         if (comp.has("num_particles")) {
-            numParticles = MolangParser.parseJson(comp.get("num_particles"));
+            numParticles = parser.parseJson(comp.get("num_particles"));
         }
         if (numParticles == null) {
             numParticles = IMolangExpression.constant(10);
         }
     }
 
+    public IMolangExpression getNumParticles() {
+        return numParticles;
+    }
+
     @Override
     public void update(SnowstormEmitter emitter, float dt) {
         if (!emitter.isSpawning)
             return;
 
-        // 每次循环只生成一次
-        if (!spawned) {
+        // 每次循环只生成一次 (标记保存在发射器上)
+        if (!emitter.instantSpawned) {
             int count = (int) numParticles.eval(emitter.getContext());
             for (int i = 0; i < count; i++) {
                 emitter.spawnParticle();
             }
-            spawned = true;
+            emitter.instantSpawned = true;
         }
     }
 
     @Override
     public void onEmitterLoopReset(SnowstormEmitter emitter) {
         // 为下一次循环重置
-        spawned = false;
+        emitter.instantSpawned = false;
     }
 }
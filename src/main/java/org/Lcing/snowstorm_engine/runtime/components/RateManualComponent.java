@@ -15,7 +15,7 @@ public class RateManualComponent implements IParticleComponent {
     private IMolangExpression maxParticles;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -23,13 +23,17 @@ public class RateManualComponent implements IParticleComponent {
         JsonObject comp = json.getAsJsonObject();
 
         if (comp.has("max_particles")) {
-            maxParticles = MolangParser.parseJson(comp.get("max_particles"));
+            maxParticles = parser.parseJson(comp.get("max_particles"));
         }
         if (maxParticles == null) {
             maxParticles = IMolangExpression.constant(50);
         }
     }
 
+    public IMolangExpression getMaxParticles() {
+        return maxParticles;
+    }
+
     @Override
     public void update(SnowstormEmitter emitter, float dt) {
         // 手动模式不自动生成；只需确保遵守最大容量
@@ -11,23 +11,28 @@ public class RateSteadyComponent implements IParticleComponent {
     private IMolangExpression spawnRate = IMolangExpression.ZERO;
     private IMolangExpression maxParticles = IMolangExpression.constant(50);
 
-    // 用于小数生成的累加器
-    private float spawnAccumulator = 0;
-
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject obj = json.getAsJsonObject();
 
         if (obj.has("spawn_rate")) {
-            this.spawnRate = MolangParser.parseJson(obj.get("spawn_rate"));
+            this.spawnRate = parser.parseJson(obj.get("spawn_rate"));
         }
         if (obj.has("max_particles")) {
-            this.maxParticles = MolangParser.parseJson(obj.get("max_particles"));
+            this.maxParticles = parser.parseJson(obj.get("max_particles"));
         }
     }
 
+    public IMolangExpression getSpawnRate() {
+        return spawnRate;
+    }
+
+    public IMolangExpression getMaxParticles() {
+        return maxParticles;
+    }
+
     @Override
     public void update(SnowstormEmitter emitter, float dt) {
         if (!emitter.isSpawning)
@@ -38,9 +43,10 @@ public class RateSteadyComponent implements IParticleComponent {
 
         // 生成逻辑
         if (rate > 0 && emitter.getParticleCount() < max) {
-            float particlesToSpawn = rate * dt + spawnAccumulator;
+            // 小数部分累加在发射器上 (组件在发射器之间共享)
+            float particlesToSpawn = rate * dt + emitter.spawnAccumulator;
             int count = (int) particlesToSpawn;
-            spawnAccumulator = particlesToSpawn - count;
+            emitter.spawnAccumulator = particlesToSpawn - count;
 
             for (int i = 0; i < count; i++) {
                 if (emitter.getParticleCount() >= max)
@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -19,7 +20,7 @@ public class ShapeBoxComponent implements IParticleComponent {
     private IMolangExpression dirX, dirY, dirZ;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -29,9 +30,9 @@ public class ShapeBoxComponent implements IParticleComponent {
         // 解析 offset [x, y, z]
         if (comp.has("offset") && comp.get("offset").isJsonArray()) {
             var arr = comp.getAsJsonArray("offset");
-            offsetX = MolangParser.parseJson(arr.get(0));
-            offsetY = MolangParser.parseJson(arr.get(1));
-            offsetZ = MolangParser.parseJson(arr.get(2));
+            offsetX = parser.parseJson(arr.get(0));
+            offsetY = parser.parseJson(arr.get(1));
+            offsetZ = parser.parseJson(arr.get(2));
         } else {
             offsetX = offsetY = offsetZ = IMolangExpression.ZERO;
         }
@@ -39,9 +40,9 @@ public class ShapeBoxComponent implements IParticleComponent {
         // 解析 half_dimensions [x, y, z]
         if (comp.has("half_dimensions") && comp.get("half_dimensions").isJsonArray()) {
             var arr = comp.getAsJsonArray("half_dimensions");
-            halfX = MolangParser.parseJson(arr.get(0));
-            halfY = MolangParser.parseJson(arr.get(1));
-            halfZ = MolangParser.parseJson(arr.get(2));
+            halfX = parser.parseJson(arr.get(0));
+            halfY = parser.parseJson(arr.get(1));
+            halfZ = parser.parseJson(arr.get(2));
         } else {
             halfX = halfY = halfZ = IMolangExpression.constant(0.5f);
         }
@@ -59,17 +60,18 @@ public class ShapeBoxComponent implements IParticleComponent {
             } else if (dirElem.isJsonArray()) {
                 directionMode = "custom";
                 var arr = dirElem.getAsJsonArray();
-                dirX = MolangParser.parseJson(arr.get(0));
-                dirY = MolangParser.parseJson(arr.get(1));
-                dirZ = MolangParser.parseJson(arr.get(2));
+                dirX = parser.parseJson(arr.get(0));
+                dirY = parser.parseJson(arr.get(1));
+                dirZ = parser.parseJson(arr.get(2));
             }
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
-        var rand = ctx.getRandom();
 
         float hx = halfX.eval(ctx);
         float hy = halfY.eval(ctx);
@@ -80,50 +82,50 @@ public class ShapeBoxComponent implements IParticleComponent {
 
         if (surfaceOnly) {
             // 选取一个随机面和该面上的随机点
-            int face = rand.nextInt(6);
+            int face = ctx.nextInt(6);
             switch (face) {
                 case 0: // +X
                     px = hx;
-                    py = rand.nextFloat() * 2 * hy - hy;
-                    pz = rand.nextFloat() * 2 * hz - hz;
+                    py = ctx.nextFloat() * 2 * hy - hy;
+                    pz = ctx.nextFloat() * 2 * hz - hz;
                     nx = 1;
                     break;
                 case 1: // -X
                     px = -hx;
-                    py = rand.nextFloat() * 2 * hy - hy;
-                    pz = rand.nextFloat() * 2 * hz - hz;
+                    py = ctx.nextFloat() * 2 * hy - hy;
+                    pz = ctx.nextFloat() * 2 * hz - hz;
                     nx = -1;
                     break;
                 case 2: // +Y
-                    px = rand.nextFloat() * 2 * hx - hx;
+                    px = ctx.nextFloat() * 2 * hx - hx;
                     py = hy;
-                    pz = rand.nextFloat() * 2 * hz - hz;
+                    pz = ctx.nextFloat() * 2 * hz - hz;
                     ny = 1;
                     break;
                 case 3: // -Y
-                    px = rand.nextFloat() * 2 * hx - hx;
+                    px = ctx.nextFloat() * 2 * hx - hx;
                     py = -hy;
-                    pz = rand.nextFloat() * 2 * hz - hz;
+                    pz = ctx.nextFloat() * 2 * hz - hz;
                     ny = -1;
                     break;
                 case 4: // +Z
-                    px = rand.nextFloat() * 2 * hx - hx;
-                    py = rand.nextFloat() * 2 * hy - hy;
+                    px = ctx.nextFloat() * 2 * hx - hx;
+                    py = ctx.nextFloat() * 2 * hy - hy;
                     pz = hz;
                     nz = 1;
                     break;
                 default: // -Z
-                    px = rand.nextFloat() * 2 * hx - hx;
-                    py = rand.nextFloat() * 2 * hy - hy;
+                    px = ctx.nextFloat() * 2 * hx - hx;
+                    py = ctx.nextFloat() * 2 * hy - hy;
                     pz = -hz;
                     nz = -1;
                     break;
             }
         } else {
             // 盒体内的随机点
-            px = rand.nextFloat() * 2 * hx - hx;
-            py = rand.nextFloat() * 2 * hy - hy;
-            pz = rand.nextFloat() * 2 * hz - hz;
+            px = ctx.nextFloat() * 2 * hx - hx;
+            py = ctx.nextFloat() * 2 * hy - hy;
+            pz = ctx.nextFloat() * 2 * hz - hz;
             // 方向：从中心归一化位置
             float len = (float) Math.sqrt(px * px + py * py + pz * pz);
             if (len > 0.001f) {
@@ -138,31 +140,31 @@ public class ShapeBoxComponent implements IParticleComponent {
         float oy = offsetY.eval(ctx);
         float oz = offsetZ.eval(ctx);
 
-        particle.x += ox + px;
-        particle.y += oy + py;
-        particle.z += oz + pz;
+        b.x[i] += ox + px;
+        b.y[i] += oy + py;
+        b.z[i] += oz + pz;
 
         // 基于模式设置方向
         switch (directionMode) {
             case "outwards":
-                particle.vx = nx;
-                particle.vy = ny;
-                particle.vz = nz;
+                b.vx[i] = nx;
+                b.vy[i] = ny;
+                b.vz[i] = nz;
                 break;
             case "inwards":
-                particle.vx = -nx;
-                particle.vy = -ny;
-                particle.vz = -nz;
+                b.vx[i] = -nx;
+                b.vy[i] = -ny;
+                b.vz[i] = -nz;
                 break;
             case "custom":
-                particle.vx = dirX != null ? dirX.eval(ctx) : 0;
-                particle.vy = dirY != null ? dirY.eval(ctx) : 0;
-                particle.vz = dirZ != null ? dirZ.eval(ctx) : 0;
+                b.vx[i] = dirX != null ? dirX.eval(ctx) : 0;
+                b.vy[i] = dirY != null ? dirY.eval(ctx) : 0;
+                b.vz[i] = dirZ != null ? dirZ.eval(ctx) : 0;
                 break;
             default:
-                particle.vx = nx;
-                particle.vy = ny;
-                particle.vz = nz;
+                b.vx[i] = nx;
+                b.vy[i] = ny;
+                b.vz[i] = nz;
         }
     }
 }
@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -16,7 +17,7 @@ public class ShapeCustomComponent implements IParticleComponent {
     private IMolangExpression dirX, dirY, dirZ;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -26,9 +27,9 @@ public class ShapeCustomComponent implements IParticleComponent {
         // 解析 offset [x, y, z]
         if (comp.has("offset") && comp.get("offset").isJsonArray()) {
             var arr = comp.getAsJsonArray("offset");
-            offsetX = MolangParser.parseJson(arr.get(0));
-            offsetY = MolangParser.parseJson(arr.get(1));
-            offsetZ = MolangParser.parseJson(arr.get(2));
+            offsetX = parser.parseJson(arr.get(0));
+            offsetY = parser.parseJson(arr.get(1));
+            offsetZ = parser.parseJson(arr.get(2));
         } else {
             offsetX = offsetY = offsetZ = IMolangExpression.ZERO;
         }
@@ -36,9 +37,9 @@ public class ShapeCustomComponent implements IParticleComponent {
         // 解析 direction [x, y, z]
         if (comp.has("direction") && comp.get("direction").isJsonArray()) {
             var arr = comp.getAsJsonArray("direction");
-            dirX = MolangParser.parseJson(arr.get(0));
-            dirY = MolangParser.parseJson(arr.get(1));
-            dirZ = MolangParser.parseJson(arr.get(2));
+            dirX = parser.parseJson(arr.get(0));
+            dirY = parser.parseJson(arr.get(1));
+            dirZ = parser.parseJson(arr.get(2));
         } else {
             dirX = dirY = dirZ = IMolangExpression.ZERO;
         }
@@ -46,16 +47,18 @@ public class ShapeCustomComponent implements IParticleComponent {
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
 
         // 应用自定义偏移
-        particle.x += offsetX.eval(ctx);
-        particle.y += offsetY.eval(ctx);
-        particle.z += offsetZ.eval(ctx);
+        b.x[i] += offsetX.eval(ctx);
+        b.y[i] += offsetY.eval(ctx);
+        b.z[i] += offsetZ.eval(ctx);
 
         // 应用自定义方向
-        particle.vx = dirX.eval(ctx);
-        particle.vy = dirY.eval(ctx);
-        particle.vz = dirZ.eval(ctx);
+        b.vx[i] = dirX.eval(ctx);
+        b.vy[i] = dirY.eval(ctx);
+        b.vz[i] = dirZ.eval(ctx);
     }
 }
@@ -3,7 +3,9 @@ package org.Lcing.snowstorm_engine.runtime.components;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangMath;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -20,7 +22,7 @@ public class ShapeDiscComponent implements IParticleComponent {
     private IMolangExpression dirX, dirY, dirZ;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -30,15 +32,15 @@ public class ShapeDiscComponent implements IParticleComponent {
         // 解析 offset [x, y, z]
         if (comp.has("offset") && comp.get("offset").isJsonArray()) {
             var arr = comp.getAsJsonArray("offset");
-            offsetX = MolangParser.parseJson(arr.get(0));
-            offsetY = MolangParser.parseJson(arr.get(1));
-            offsetZ = MolangParser.parseJson(arr.get(2));
+            offsetX = parser.parseJson(arr.get(0));
+            offsetY = parser.parseJson(arr.get(1));
+            offsetZ = parser.parseJson(arr.get(2));
         } else {
             offsetX = offsetY = offsetZ = IMolangExpression.ZERO;
         }
 
         // 解析 radius
-        radius = MolangParser.parseJson(comp.get("radius"));
+        radius = parser.parseJson(comp.get("radius"));
         if (radius == null) {
             radius = IMolangExpression.constant(1);
         }
@@ -46,9 +48,9 @@ public class ShapeDiscComponent implements IParticleComponent {
         // 解析 plane_normal (默认 Y 轴向上)
         if (comp.has("plane_normal") && comp.get("plane_normal").isJsonArray()) {
             var arr = comp.getAsJsonArray("plane_normal");
-            normalX = MolangParser.parseJson(arr.get(0));
-            normalY = MolangParser.parseJson(arr.get(1));
-            normalZ = MolangParser.parseJson(arr.get(2));
+            normalX = parser.parseJson(arr.get(0));
+            normalY = parser.parseJson(arr.get(1));
+            normalZ = parser.parseJson(arr.get(2));
         } else {
             normalX = IMolangExpression.ZERO;
             normalY = IMolangExpression.constant(1);
@@ -68,22 +70,23 @@ public class ShapeDiscComponent implements IParticleComponent {
             } else if (dirElem.isJsonArray()) {
                 directionMode = "custom";
                 var arr = dirElem.getAsJsonArray();
-                dirX = MolangParser.parseJson(arr.get(0));
-                dirY = MolangParser.parseJson(arr.get(1));
-                dirZ = MolangParser.parseJson(arr.get(2));
+                dirX = parser.parseJson(arr.get(0));
+                dirY = parser.parseJson(arr.get(1));
+                dirZ = parser.parseJson(arr.get(2));
             }
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
-        var rand = ctx.getRandom();
 
         float r = radius.eval(ctx);
 
-        // 圆盘上的随机角度
-        double angle = rand.nextDouble() * 2 * Math.PI;
+        // 圆盘上的随机角度 (度)
+        float angle = ctx.nextFloat() * 360;
 
         // 到中心的距离
         float dist;
@@ -91,7 +94,7 @@ public class ShapeDiscComponent implements IParticleComponent {
             dist = r;
         } else {
             // 平方根用于圆盘上的均匀分布
-            dist = r * (float) Math.sqrt(rand.nextDouble());
+            dist = r * (float) Math.sqrt(ctx.nextDouble());
         }
 
         // 获取法向量
@@ -136,8 +139,8 @@ public class ShapeDiscComponent implements IParticleComponent {
         uz = vx * ny - vy * nx;
 
         // 圆盘上的位置: offset + (cos(angle)*u + sin(angle)*v) * dist
-        float cosA = (float) Math.cos(angle);
-        float sinA = (float) Math.sin(angle);
+        float cosA = MolangMath.cosDeg(angle);
+        float sinA = MolangMath.sinDeg(angle);
 
         float px = (cosA * ux + sinA * vx) * dist;
         float py = (cosA * uy + sinA * vy) * dist;
@@ -148,9 +151,9 @@ public class ShapeDiscComponent implements IParticleComponent {
         float oy = offsetY.eval(ctx);
         float oz = offsetZ.eval(ctx);
 
-        particle.x += ox + px;
-        particle.y += oy + py;
-        particle.z += oz + pz;
+        b.x[i] += ox + px;
+        b.y[i] += oy + py;
+        b.z[i] += oz + pz;
 
         // 设置方向
         switch (directionMode) {
@@ -158,29 +161,29 @@ public class ShapeDiscComponent implements IParticleComponent {
                 // 方向沿着圆盘（垂直于法线，从中心向外）
                 float len = (float) Math.sqrt(px * px + py * py + pz * pz);
                 if (len > 0.001f) {
-                    particle.vx = px / len;
-                    particle.vy = py / len;
-                    particle.vz = pz / len;
+                    b.vx[i] = px / len;
+                    b.vy[i] = py / len;
+                    b.vz[i] = pz / len;
                 }
                 break;
             case "inwards":
                 len = (float) Math.sqrt(px * px + py * py + pz * pz);
                 if (len > 0.001f) {
-                    particle.vx = -px / len;
-                    particle.vy = -py / len;
-                    particle.vz = -pz / len;
+                    b.vx[i] = -px / len;
+                    b.vy[i] = -py / len;
+                    b.vz[i] = -pz / len;
                 }
                 break;
             case "custom":
-                particle.vx = dirX != null ? dirX.eval(ctx) : 0;
-                particle.vy = dirY != null ? dirY.eval(ctx) : 0;
-                particle.vz = dirZ != null ? dirZ.eval(ctx) : 0;
+                b.vx[i] = dirX != null ? dirX.eval(ctx) : 0;
+                b.vy[i] = dirY != null ? dirY.eval(ctx) : 0;
+                b.vz[i] = dirZ != null ? dirZ.eval(ctx) : 0;
                 break;
             default:
                 // 使用法线方向
-                particle.vx = nx;
-                particle.vy = ny;
-                particle.vz = nz;
+                b.vx[i] = nx;
+                b.vy[i] = ny;
+                b.vz[i] = nz;
         }
     }
 }
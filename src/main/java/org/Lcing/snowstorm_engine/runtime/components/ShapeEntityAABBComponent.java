@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -16,8 +17,20 @@ public class ShapeEntityAABBComponent implements IParticleComponent {
     private String directionMode = "outwards";
     private IMolangExpression dirX, dirY, dirZ;
 
+    // 实体包围盒变量的槽位
+    private int minXSlot, minYSlot, minZSlot;
+    private int maxXSlot, maxYSlot, maxZSlot;
+
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
+        var schema = parser.getSchema();
+        minXSlot = schema.slotOf("variable.entity_aabb_min_x");
+        minYSlot = schema.slotOf("variable.entity_aabb_min_y");
+        minZSlot = schema.slotOf("variable.entity_aabb_min_z");
+        maxXSlot = schema.slotOf("variable.entity_aabb_max_x");
+        maxYSlot = schema.slotOf("variable.entity_aabb_max_y");
+        maxZSlot = schema.slotOf("variable.entity_aabb_max_z");
+
         if (!json.isJsonObject())
             return;
 
@@ -32,26 +45,27 @@ public class ShapeEntityAABBComponent implements IParticleComponent {
             } else if (dirElem.isJsonArray()) {
                 directionMode = "custom";
                 JsonArray arr = dirElem.getAsJsonArray();
-                dirX = MolangParser.parseJson(arr.get(0));
-                dirY = MolangParser.parseJson(arr.get(1));
-                dirZ = MolangParser.parseJson(arr.get(2));
+                dirX = parser.parseJson(arr.get(0));
+                dirY = parser.parseJson(arr.get(1));
+                dirZ = parser.parseJson(arr.get(2));
             }
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
-        var rand = ctx.getRandom();
 
         // 使用 Molang 变量中的实体包围盒（由发射器设置）
         // 如果未设置，默认为 1x2x1 的类似玩家的盒子
-        float minX = ctx.resolve("variable.entity_aabb_min_x");
-        float minY = ctx.resolve("variable.entity_aabb_min_y");
-        float minZ = ctx.resolve("variable.entity_aabb_min_z");
-        float maxX = ctx.resolve("variable.entity_aabb_max_x");
-        float maxY = ctx.resolve("variable.entity_aabb_max_y");
-        float maxZ = ctx.resolve("variable.entity_aabb_max_z");
+        float minX = ctx.get(minXSlot);
+        float minY = ctx.get(minYSlot);
+        float minZ = ctx.get(minZSlot);
+        float maxX = ctx.get(maxXSlot);
+        float maxY = ctx.get(maxYSlot);
+        float maxZ = ctx.get(maxZSlot);
 
         // 如果没有设置实体边界，使用默认值
         if (minX == 0 && maxX == 0) {
@@ -68,13 +82,13 @@ public class ShapeEntityAABBComponent implements IParticleComponent {
         }
 
         // AABB 内的随机位置
-        float px = minX + rand.nextFloat() * (maxX - minX);
-        float py = minY + rand.nextFloat() * (maxY - minY);
-        float pz = minZ + rand.nextFloat() * (maxZ - minZ);
+        float px = minX + ctx.nextFloat() * (maxX - minX);
+        float py = minY + ctx.nextFloat() * (maxY - minY);
+        float pz = minZ + ctx.nextFloat() * (maxZ - minZ);
 
-        particle.x += px;
-        particle.y += py;
-        particle.z += pz;
+        b.x[i] += px;
+        b.y[i] += py;
+        b.z[i] += pz;
 
         // 基于模式的方向
         switch (directionMode) {
@@ -88,9 +102,9 @@ public class ShapeEntityAABBComponent implements IParticleComponent {
                 float dz = pz - cz;
                 float len = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
                 if (len > 0.001f) {
-                    particle.vx = dx / len;
-                    particle.vy = dy / len;
-                    particle.vz = dz / len;
+                    b.vx[i] = dx / len;
+                    b.vy[i] = dy / len;
+                    b.vz[i] = dz / len;
                 }
                 break;
             case "inwards":
@@ -102,15 +116,15 @@ public class ShapeEntityAABBComponent implements IParticleComponent {
                 dz = cz - pz;
                 len = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
                 if (len > 0.001f) {
-                    particle.vx = dx / len;
-                    particle.vy = dy / len;
-                    particle.vz = dz / len;
+                    b.vx[i] = dx / len;
+                    b.vy[i] = dy / len;
+                    b.vz[i] = dz / len;
                 }
                 break;
             case "custom":
-                particle.vx = dirX != null ? dirX.eval(ctx) : 0;
-                particle.vy = dirY != null ? dirY.eval(ctx) : 0;
-                particle.vz = dirZ != null ? dirZ.eval(ctx) : 0;
+                b.vx[i] = dirX != null ? dirX.eval(ctx) : 0;
+                b.vy[i] = dirY != null ? dirY.eval(ctx) : 0;
+                b.vz[i] = dirZ != null ? dirZ.eval(ctx) : 0;
                 break;
         }
     }
@@ -4,7 +4,10 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangMath;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 public class ShapePointComponent implements IParticleComponent {
@@ -16,47 +19,39 @@ public class ShapePointComponent implements IParticleComponent {
             IMolangExpression.ZERO, IMolangExpression.ZERO };
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
         JsonObject obj = json.getAsJsonObject(); // 不需要专门检查 offset/direction？通常存在。
 
-        parseVector(obj.get("offset"), offset);
-        parseVector(obj.get("direction"), direction);
+        parseVector(parser, obj.get("offset"), offset);
+        parseVector(parser, obj.get("direction"), direction);
     }
 
-    private void parseVector(JsonElement el, IMolangExpression[] target) {
+    private void parseVector(MolangParser parser, JsonElement el, IMolangExpression[] target) {
         if (el != null && el.isJsonArray()) {
             JsonArray arr = el.getAsJsonArray();
             if (arr.size() >= 3) {
-                target[0] = MolangParser.parseJson(arr.get(0));
-                target[1] = MolangParser.parseJson(arr.get(1));
-                target[2] = MolangParser.parseJson(arr.get(2));
+                target[0] = parser.parseJson(arr.get(0));
+                target[1] = parser.parseJson(arr.get(1));
+                target[2] = parser.parseJson(arr.get(2));
             }
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         // 设置位置 (相对于发射器的偏移)
         // 假设粒子上下文已经填充了必要的变量 (如 particle_random_1)
         float ox = offset[0].eval(particle.getContext());
         float oy = offset[1].eval(particle.getContext());
         float oz = offset[2].eval(particle.getContext());
 
-        // 调试: 记录偏移和随机值
-        float random1 = particle.getContext().resolve("variable.particle_random_1");
-        if (Math.random() < 0.02) {
-            // System.out.println("[Snowstorm] Offset: (" +
-            // String.format("%.2f", ox) + ", " +
-            // String.format("%.2f", oy) + ", " +
-            // String.format("%.2f", oz) + ") random1=" +
-            // String.format("%.3f", random1));
-        }
-
-        particle.x += ox;
-        particle.y += oy;
-        particle.z += oz;
+        b.x[i] += ox;
+        b.y[i] += oy;
+        b.z[i] += oz;
 
         // 设置方向 (归一化? 或者只是方向向量)
         // Snowstorm 通常将其视为速度的方向向量。
@@ -69,16 +64,18 @@ public class ShapePointComponent implements IParticleComponent {
 
         if (Math.abs(dx) < 0.001 && Math.abs(dy) < 0.001 && Math.abs(dz) < 0.001) {
             // 点形状默认为随机方向 (各向同性)
-            double theta = Math.random() * 2 * Math.PI;
-            double phi = Math.acos(2 * Math.random() - 1);
+            // theta 以度为单位; cos(phi) 均匀分布时方向在球面上均匀，sin(phi) 由勾股关系得到
+            float theta = particle.getContext().nextFloat() * 360;
+            float cosPhi = 2 * particle.getContext().nextFloat() - 1;
+            float sinPhi = MolangMath.sqrt(1 - cosPhi * cosPhi);
 
-            particle.vx = Math.sin(phi) * Math.cos(theta);
-            particle.vy = Math.sin(phi) * Math.sin(theta);
-            particle.vz = Math.cos(phi);
+            b.vx[i] = sinPhi * MolangMath.cosDeg(theta);
+            b.vy[i] = sinPhi * MolangMath.sinDeg(theta);
+            b.vz[i] = cosPhi;
         } else {
-            particle.vx = dx;
-            particle.vy = dy;
-            particle.vz = dz;
+            b.vx[i] = dx;
+            b.vy[i] = dy;
+            b.vz[i] = dz;
         }
     }
 }
@@ -3,8 +3,10 @@ package org.Lcing.snowstorm_engine.runtime.components;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
+import org.Lcing.snowstorm_engine.molang.MolangMath;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
 import org.Lcing.snowstorm_engine.runtime.SnowstormEmitter;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 /**
@@ -20,7 +22,7 @@ public class ShapeSphereComponent implements IParticleComponent {
     private IMolangExpression dirX, dirY, dirZ;
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -30,15 +32,15 @@ public class ShapeSphereComponent implements IParticleComponent {
         // 解析 offset [x, y, z]
         if (comp.has("offset") && comp.get("offset").isJsonArray()) {
             var arr = comp.getAsJsonArray("offset");
-            offsetX = MolangParser.parseJson(arr.get(0));
-            offsetY = MolangParser.parseJson(arr.get(1));
-            offsetZ = MolangParser.parseJson(arr.get(2));
+            offsetX = parser.parseJson(arr.get(0));
+            offsetY = parser.parseJson(arr.get(1));
+            offsetZ = parser.parseJson(arr.get(2));
         } else {
             offsetX = offsetY = offsetZ = IMolangExpression.ZERO;
         }
 
         // 解析 radius
-        radius = MolangParser.parseJson(comp.get("radius"));
+        radius = parser.parseJson(comp.get("radius"));
         if (radius == null) {
             radius = IMolangExpression.constant(1);
         }
@@ -56,28 +58,31 @@ public class ShapeSphereComponent implements IParticleComponent {
             } else if (dirElem.isJsonArray()) {
                 directionMode = "custom";
                 var arr = dirElem.getAsJsonArray();
-                dirX = MolangParser.parseJson(arr.get(0));
-                dirY = MolangParser.parseJson(arr.get(1));
-                dirZ = MolangParser.parseJson(arr.get(2));
+                dirX = parser.parseJson(arr.get(0));
+                dirY = parser.parseJson(arr.get(1));
+                dirZ = parser.parseJson(arr.get(2));
             }
         }
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         var ctx = particle.getContext();
 
         // 在球体内生成随机点
         float r = radius.eval(ctx);
 
         // 随机方向 (球体表面均匀分布)
-        double theta = ctx.getRandom().nextDouble() * 2 * Math.PI;
-        double phi = Math.acos(2 * ctx.getRandom().nextDouble() - 1);
+        // theta 以度为单位; cos(phi) 在 [-1, 1] 上均匀分布，sin(phi) = sqrt(1 - cos²)，无需 acos
+        float theta = ctx.nextFloat() * 360;
+        float cosPhi = 2 * ctx.nextFloat() - 1;
 
-        double sinPhi = Math.sin(phi);
-        double nx = sinPhi * Math.cos(theta);
-        double ny = sinPhi * Math.sin(theta);
-        double nz = Math.cos(phi);
+        float sinPhi = MolangMath.sqrt(1 - cosPhi * cosPhi);
+        double nx = sinPhi * MolangMath.cosDeg(theta);
+        double ny = sinPhi * MolangMath.sinDeg(theta);
+        double nz = cosPhi;
 
         // 到中心的随机距离
         float dist;
@@ -85,7 +90,7 @@ public class ShapeSphereComponent implements IParticleComponent {
             dist = r;
         } else {
             // 立方根用于均匀体积分布
-            dist = r * (float) Math.cbrt(ctx.getRandom().nextDouble());
+            dist = r * MolangMath.cbrt(ctx.nextFloat());
         }
 
         // 应用偏移
@@ -93,32 +98,32 @@ public class ShapeSphereComponent implements IParticleComponent {
         float oy = offsetY.eval(ctx);
         float oz = offsetZ.eval(ctx);
 
-        particle.x += ox + nx * dist;
-        particle.y += oy + ny * dist;
-        particle.z += oz + nz * dist;
+        b.x[i] += ox + nx * dist;
+        b.y[i] += oy + ny * dist;
+        b.z[i] += oz + nz * dist;
 
         // 基于模式设置方向
         switch (directionMode) {
             case "outwards":
-                particle.vx = (float) nx;
-                particle.vy = (float) ny;
-                particle.vz = (float) nz;
+                b.vx[i] = (float) nx;
+                b.vy[i] = (float) ny;
+                b.vz[i] = (float) nz;
                 break;
             case "inwards":
-                particle.vx = (float) -nx;
-                particle.vy = (float) -ny;
-                particle.vz = (float) -nz;
+                b.vx[i] = (float) -nx;
+                b.vy[i] = (float) -ny;
+                b.vz[i] = (float) -nz;
                 break;
             case "custom":
-                particle.vx = dirX != null ? dirX.eval(ctx) : 0;
-                particle.vy = dirY != null ? dirY.eval(ctx) : 0;
-                particle.vz = dirZ != null ? dirZ.eval(ctx) : 0;
+                b.vx[i] = dirX != null ? dirX.eval(ctx) : 0;
+                b.vy[i] = dirY != null ? dirY.eval(ctx) : 0;
+                b.vz[i] = dirZ != null ? dirZ.eval(ctx) : 0;
                 break;
             default:
                 // 默认为向外
-                particle.vx = (float) nx;
-                particle.vy = (float) ny;
-                particle.vz = (float) nz;
+                b.vx[i] = (float) nx;
+                b.vy[i] = (float) ny;
+                b.vz[i] = (float) nz;
         }
     }
 }
@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.Lcing.snowstorm_engine.molang.IMolangExpression;
 import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.runtime.ParticleBuffer;
 import org.Lcing.snowstorm_engine.runtime.SnowstormParticle;
 
 import java.util.ArrayList;
@@ -26,7 +27,7 @@ public class TintingComponent implements IParticleComponent {
     private final List<int[]> gradientColors = new ArrayList<>();
 
     @Override
-    public void fromJson(JsonElement json) {
+    public void fromJson(JsonElement json, MolangParser parser) {
         if (!json.isJsonObject())
             return;
 
@@ -40,11 +41,11 @@ public class TintingComponent implements IParticleComponent {
         // 直接颜色: 可以是 [r, g, b, a] 或 "#RRGGBB" / "#AARRGGBB"
         if (colorElem.isJsonArray()) {
             JsonArray arr = colorElem.getAsJsonArray();
-            colorR = MolangParser.parseJson(arr.get(0));
-            colorG = MolangParser.parseJson(arr.get(1));
-            colorB = MolangParser.parseJson(arr.get(2));
+            colorR = parser.parseJson(arr.get(0));
+            colorG = parser.parseJson(arr.get(1));
+            colorB = parser.parseJson(arr.get(2));
             if (arr.size() >= 4) {
-                colorA = MolangParser.parseJson(arr.get(3));
+                colorA = parser.parseJson(arr.get(3));
             } else {
                 colorA = IMolangExpression.constant(1.0f);
             }
@@ -63,7 +64,7 @@ public class TintingComponent implements IParticleComponent {
 
             // 解析插值 (用于渐变位置的 Molang 表达式)
             if (colorObj.has("interpolant")) {
-                interpolant = MolangParser.parseJson(colorObj.get("interpolant"));
+                interpolant = parser.parseJson(colorObj.get("interpolant"));
             } else {
                 interpolant = IMolangExpression.constant(0);
             }
@@ -116,12 +117,12 @@ public class TintingComponent implements IParticleComponent {
         int lowerIdx = 0;
         int upperIdx = gradientKeys.size() - 1;
 
-        for (int i = 0; i < gradientKeys.size(); i++) {
-            if (gradientKeys.get(i) <= t) {
-                lowerIdx = i;
+        for (int k = 0; k < gradientKeys.size(); k++) {
+            if (gradientKeys.get(k) <= t) {
+                lowerIdx = k;
             }
-            if (gradientKeys.get(i) >= t && upperIdx == gradientKeys.size() - 1) {
-                upperIdx = i;
+            if (gradientKeys.get(k) >= t && upperIdx == gradientKeys.size() - 1) {
+                upperIdx = k;
                 break;
             }
         }
@@ -137,31 +138,26 @@ public class TintingComponent implements IParticleComponent {
             blend = Math.max(0, Math.min(1, blend));
         }
 
-        particle.colorR = (lowerColor[0] + (upperColor[0] - lowerColor[0]) * blend) / 255.0f;
-        particle.colorG = (lowerColor[1] + (upperColor[1] - lowerColor[1]) * blend) / 255.0f;
-        particle.colorB = (lowerColor[2] + (upperColor[2] - lowerColor[2]) * blend) / 255.0f;
-        particle.colorA = (lowerColor[3] + (upperColor[3] - lowerColor[3]) * blend) / 255.0f;
-
-        // 调试: 偶尔记录颜色计算
-        if (Math.random() < 0.01) {
-            // System.out.println("[Snowstorm] Color: t=" + String.format("%.2f", t) +
-            // " -> RGBA(" + String.format("%.2f", particle.colorR) +
-            // ", " + String.format("%.2f", particle.colorG) +
-            // ", " + String.format("%.2f", particle.colorB) +
-            // ", " + String.format("%.2f", particle.colorA) + ")");
-        }
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
+        b.colorR[i] = (lowerColor[0] + (upperColor[0] - lowerColor[0]) * blend) / 255.0f;
+        b.colorG[i] = (lowerColor[1] + (upperColor[1] - lowerColor[1]) * blend) / 255.0f;
+        b.colorB[i] = (lowerColor[2] + (upperColor[2] - lowerColor[2]) * blend) / 255.0f;
+        b.colorA[i] = (lowerColor[3] + (upperColor[3] - lowerColor[3]) * blend) / 255.0f;
     }
 
     @Override
     public void onInitializeParticle(SnowstormParticle particle) {
+        ParticleBuffer b = particle.getBuffer();
+        int i = particle.getIndex();
         if (useGradient) {
             applyGradient(particle);
         } else if (colorR != null) {
             var ctx = particle.getContext();
-            particle.colorR = colorR.eval(ctx);
-            particle.colorG = colorG.eval(ctx);
-            particle.colorB = colorB.eval(ctx);
-            particle.colorA = colorA.eval(ctx);
+            b.colorR[i] = colorR.eval(ctx);
+            b.colorG[i] = colorG.eval(ctx);
+            b.colorB[i] = colorB.eval(ctx);
+            b.colorA[i] = colorA.eval(ctx);
         }
     }
 
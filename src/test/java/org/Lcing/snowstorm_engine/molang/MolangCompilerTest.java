@@ -0,0 +1,220 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.loader.ParticleLoader;
+import org.Lcing.snowstorm_engine.runtime.ParticleEffectTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 差分测试: 字节码编译结果与树解释器在随机变量值上的结果必须逐位相同。
+ */
+class MolangCompilerTest {
+
+    private static final String[] BUNDLED = {
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re.particle.json",
+            "/assets/snowstorm_engine/snowstorm_engine/particles/test1-re2.particle.json"
+    };
+
+    private static final String[] EXPRESSIONS = {
+            // 除零
+            "1 / v.a", "v.a / v.b", "-v.a / 0", "v.a / (v.b - v.b)", "math.mod(v.a, 0)",
+            // 条件、比较和逻辑运算
+            "v.a > v.b ? v.a : v.b", "v.a <= 0 ? -v.a : v.a * 2", "v.a == v.b", "v.a != v.b",
+            "v.a && v.b || !v.c", "v.a > 0 && v.b < 0 ? 1 : v.c > 0 || v.a < -10 ? 2 : 3",
+            // NaN 和 ??
+            "math.sqrt(v.a) ?? 1", "v.unset ?? v.a", "(v.a / v.b) ?? -1", "math.sqrt(v.a) > 0",
+            "math.sqrt(v.a) == math.sqrt(v.a)",
+            // 算术和数学函数
+            "math.sin(v.a * 90) * math.cos(v.b) + math.abs(v.c)", "math.clamp(v.a, -1, 1)",
+            "math.lerp(v.a, v.b, 0.3)", "math.pow(v.a, 0.5) + math.floor(v.b) - math.ceil(v.c)",
+            "math.min(v.a, v.b) * math.max(v.b, v.c)", "(v.a + 1) * (v.a + 1) - v.b / 3",
+            // 脚本
+            "t.x = v.a * 2; v.y = t.x > 1 ? t.x : -t.x; return v.y + v.b;",
+    };
+
+    private static final int SAMPLES = 2000;
+    private static final float[] SPECIAL = { 0, -0.0f, 1, -1, Float.NaN, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.MIN_VALUE, Float.MAX_VALUE };
+
+    @Test
+    void handWrittenExpressionsMatchInterpreter() {
+        MolangVariableSchema schema = new MolangVariableSchema();
+        MolangParser parser = new MolangParser(schema);
+        IMolangExpression[] trees = new IMolangExpression[EXPRESSIONS.length];
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            trees[i] = ((MolangCallSite) parser.parse(EXPRESSIONS[i])).getTree();
+        }
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            assertMatches(EXPRESSIONS[i], trees[i], schema);
+        }
+    }
+
+    @Test
+    void bundledParticleExpressionsMatchInterpreter() throws Exception {
+        int checked = 0;
+        for (String path : BUNDLED) {
+            try (InputStream is = MolangCompilerTest.class.getResourceAsStream(path)) {
+                assertNotNull(is, path);
+                ParticleDefinition def = ParticleLoader.load(is);
+                ParticleEffectTemplate template = ParticleEffectTemplate.compile(def);
+                for (MolangCallSite site : template.getCallSites()) {
+                    if (MolangOptimizer.isPureTree(site.getTree())) {
+                        assertMatches(site.getSource(), site.getTree(), template.getSchema());
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 0, "no pure expressions in the bundled particles");
+    }
+
+    @Test
+    void emitterScopedLoadsMatchInterpreter() {
+        // 第一条曲线只依赖发射器变量，提升为发射器级 (结果槽位排在粒子上下文之外)；第二条混合发射器和粒子变量
+        String json = "{\"format_version\": \"1.10.0\", \"particle_effect\": {"
+                + "\"description\": {\"identifier\": \"test:emitter_scope\"}, \"components\": {},"
+                + "\"curves\": {"
+                + "\"variable.a\": {\"input\": \"v.emitter_random_1 * 3 + math.sin(v.emitter_age * 90)\","
+                + " \"nodes\": [0, 1]},"
+                + "\"variable.b\": {\"input\": \"v.particle_age * v.emitter_age + v.particle_random_1\","
+                + " \"horizontal_range\": \"v.emitter_lifetime\", \"nodes\": [0, 1]}}}}";
+        ParticleDefinition def = ParticleLoader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        ParticleEffectTemplate template = ParticleEffectTemplate.compile(def);
+        MolangVariableSchema schema = template.getSchema();
+        assertTrue(schema.size() > schema.particleSize(), "no emitter-only slots");
+
+        boolean emitterVariable = false;
+        boolean emitterValue = false;
+        for (MolangCallSite site : template.getCallSites()) {
+            emitterVariable |= reads(site.getTree(), MolangExpressions.EmitterVariable.class);
+            assertMatches(site.getSource(), site.getTree(), schema);
+            if (site.getTarget() instanceof MolangExpressions.EmitterValue value) {
+                assertTrue(value.getSlot() >= schema.particleSize(), site.getSource());
+                assertMatches(site.getSource() + " (hoisted)", value, schema);
+                emitterValue = true;
+            }
+        }
+        assertTrue(emitterVariable, "no emitter variable loads");
+        assertTrue(emitterValue, "no hoisted emitter values");
+    }
+
+    @Test
+    void compiledBatchUsesColumnarTreeEvaluation() {
+        MolangVariableSchema schema = new MolangVariableSchema();
+        MolangParser parser = new MolangParser(schema);
+        IMolangExpression[] trees = new IMolangExpression[EXPRESSIONS.length];
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            trees[i] = ((MolangCallSite) parser.parse(EXPRESSIONS[i])).getTree();
+        }
+        MolangContext emitter = new MolangContext(schema);
+        MolangContext[] contexts = new MolangContext[64];
+        Random random = new Random(7);
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = new MolangContext(schema, emitter);
+        }
+        ParticleBatch batch = new ParticleBatch();
+        float[] out = new float[contexts.length];
+        for (int e = 0; e < EXPRESSIONS.length; e++) {
+            String source = EXPRESSIONS[e];
+            IMolangExpression compiled = MolangCompiler.compile(trees[e], schema);
+            assertTrue(compiled instanceof MolangCompiler.Compiled, "not compiled: " + source);
+            for (int slot = 0; slot < schema.size(); slot++) {
+                emitter.set(slot, sample(random));
+            }
+            for (MolangContext context : contexts) {
+                for (int slot = 0; slot < schema.particleSize(); slot++) {
+                    context.set(slot, sample(random));
+                }
+            }
+            batch.reset(contexts, contexts.length);
+            compiled.evalBatch(batch, out, 0, contexts.length);
+            for (int i = 0; i < contexts.length; i++) {
+                float expected = compiled.eval(contexts[i]);
+                float actual = out[i];
+                assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual),
+                        () -> source + ": eval " + expected + ", batch " + actual);
+            }
+        }
+
+        // 批量求值经由原表达式树的按列实现，而不是逐粒子调用编译结果
+        int[] batches = new int[1];
+        IMolangExpression tree = new IMolangExpression() {
+            @Override
+            public float eval(MolangContext context) {
+                return context.get(MolangVariableSchema.PARTICLE_AGE);
+            }
+
+            @Override
+            public void evalBatch(ParticleBatch b, float[] o, int from, int to) {
+                batches[0]++;
+                IMolangExpression.super.evalBatch(b, o, from, to);
+            }
+        };
+        IMolangExpression compiled = MolangCompiler.compile(tree, schema);
+        assertTrue(compiled instanceof MolangCompiler.Compiled, "not compiled");
+        batch.reset(contexts, contexts.length);
+        compiled.evalBatch(batch, out, 0, contexts.length);
+        assertEquals(1, batches[0]);
+    }
+
+    private static boolean reads(IMolangExpression node, Class<?> type) {
+        if (type.isInstance(node)) {
+            return true;
+        }
+        for (IMolangExpression child : node.children()) {
+            if (reads(child, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertMatches(String source, IMolangExpression tree, MolangVariableSchema schema) {
+        IMolangExpression compiled = MolangCompiler.compile(tree, schema);
+        assertTrue(compiled instanceof MolangCompiler.Compiled, "not compiled: " + source);
+        assertFalse(compiled == tree, source);
+
+        Random random = new Random(source.hashCode());
+        MolangContext emitter = new MolangContext(schema);
+        MolangContext context = new MolangContext(schema, emitter);
+        for (int n = 0; n < SAMPLES; n++) {
+            // 发射器上下文包含所有槽位，粒子上下文只有粒子级槽位 (发射器级槽位经发射器指针读取)
+            for (int slot = 0; slot < schema.size(); slot++) {
+                emitter.set(slot, sample(random));
+            }
+            for (int slot = 0; slot < schema.particleSize(); slot++) {
+                if (schema.scopeOf(slot) != MolangVariableSchema.Scope.EMITTER) {
+                    context.set(slot, sample(random));
+                }
+            }
+            context.clearSharedCache();
+            float expected = tree.eval(context);
+            context.clearSharedCache();
+            float actual = compiled.eval(context);
+            assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual),
+                    () -> source + ": interpreter " + expected + ", compiled " + actual);
+        }
+    }
+
+    /**
+     * 混合特殊值 (0, -0, NaN, 无穷大) 与不同量级的普通值。
+     */
+    private static float sample(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> SPECIAL[random.nextInt(SPECIAL.length)];
+            case 1 -> random.nextInt(5) - 2;
+            case 2 -> (random.nextFloat() - 0.5f) * 2;
+            default -> (random.nextFloat() - 0.5f) * 2000;
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 解析器: 函数名不区分大小写。
+ */
+class MolangParserTest {
+
+    @Test
+    void bareMathRandomIsCaseInsensitive() {
+        for (String source : new String[] { "math.random", "Math.random", "MATH.RANDOM", "Math.random(0, 1)" }) {
+            MolangVariableSchema schema = new MolangVariableSchema();
+            IMolangExpression tree = ((MolangCallSite) new MolangParser(schema).parse(source)).getTree();
+            assertTrue(tree instanceof MolangExpressions.MathRandom, source + " parsed as " + tree);
+            assertTrue(schema.find(source.toLowerCase()) < 0, source + " allocated a variable slot");
+        }
+    }
+}
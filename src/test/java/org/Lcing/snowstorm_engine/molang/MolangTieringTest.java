@@ -0,0 +1,41 @@
+package org.Lcing.snowstorm_engine.molang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层执行: 加载时编译 (阈值为 0) 不执行不纯的表达式。
+ */
+class MolangTieringTest {
+
+    @Test
+    void synchronousCompileDoesNotRunImpureFunctions() {
+        AtomicInteger calls = new AtomicInteger();
+        MolangFunctionRegistry.registerFunction("test.tiering_side_effect", 1, false,
+                (ctx, args) -> calls.incrementAndGet() + args[0]);
+        int threshold = MolangTiering.getThreshold();
+        MolangTiering.setThreshold(0);
+        try {
+            MolangVariableSchema schema = new MolangVariableSchema();
+            MolangCallSite site = (MolangCallSite) new MolangParser(schema)
+                    .parse("test.tiering_side_effect(v.a) * 2 + v.b");
+            MolangTiering.install(site, schema);
+            IMolangExpression wrapped = MolangTiering.wrap(site.getTree(), schema);
+            assertEquals(0, calls.get(), "impure function ran during compilation");
+            assertTrue(site.getTarget() instanceof MolangCompiler.Compiled, "call site not compiled");
+            assertTrue(wrapped instanceof MolangCompiler.Compiled, "expression not compiled");
+
+            // 编译结果在求值时照常调用函数
+            MolangContext context = new MolangContext(schema);
+            context.setVariable("variable.b", 1);
+            assertEquals(3, site.eval(context), 0);
+            assertEquals(1, calls.get());
+        } finally {
+            MolangTiering.setThreshold(threshold);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import com.google.gson.JsonParser;
+import org.Lcing.snowstorm_engine.molang.MolangContext;
+import org.Lcing.snowstorm_engine.molang.MolangLut;
+import org.Lcing.snowstorm_engine.molang.MolangParser;
+import org.Lcing.snowstorm_engine.molang.MolangVariableSchema;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 曲线的解析求值与闭式解比较，以及查找表与解析求值之间的误差。
+ */
+class SnowstormCurveTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final int STEPS = 1000;
+
+    private final MolangVariableSchema schema = new MolangVariableSchema();
+    private final MolangParser parser = new MolangParser(schema);
+
+    private SnowstormCurve curve(String json) {
+        return SnowstormCurve.fromJson(JsonParser.parseString(json), parser);
+    }
+
+    @Test
+    void bezierMatchesClosedFormCubic() {
+        float[] p = { 0.5f, 2, -1, 1 };
+        SnowstormCurve curve = curve("{\"type\": \"bezier\", \"input\": \"v.t\", \"nodes\": [0.5, 2, -1, 1]}");
+        assertEquals(SnowstormCurve.Type.BEZIER, curve.getType());
+        for (int i = 0; i <= STEPS; i++) {
+            double t = (double) i / STEPS;
+            double u = 1 - t;
+            double expected = u * u * u * p[0] + 3 * u * u * t * p[1] + 3 * u * t * t * p[2] + t * t * t * p[3];
+            assertEquals(expected, curve.shape(t), EPSILON, "t = " + t);
+        }
+    }
+
+    @Test
+    void catmullRomPassesThroughInnerNodes() {
+        SnowstormCurve curve = curve("{\"type\": \"catmull_rom\", \"input\": \"v.t\", \"nodes\": [4, 1, 3, -2, 0, 7]}");
+        assertEquals(SnowstormCurve.Type.CATMULL_ROM, curve.getType());
+        assertEquals(1, curve.shape(0), EPSILON);
+        assertEquals(0, curve.shape(1), EPSILON);
+        // 内部节点等距分布在 [0, 1] 上
+        assertEquals(3, curve.shape(1.0 / 3), EPSILON);
+        assertEquals(-2, curve.shape(2.0 / 3), EPSILON);
+    }
+
+    @Test
+    void bezierChainMatchesKeyValuesAndSlopes() {
+        SnowstormCurve curve = curve("{\"type\": \"bezier_chain\", \"input\": \"v.t\", \"nodes\": {"
+                + "\"0.0\": {\"value\": 1, \"slope\": 2},"
+                + "\"0.4\": {\"value\": -1, \"slope\": 0},"
+                + "\"1.0\": {\"value\": 3, \"slope\": -4}}}");
+        assertEquals(SnowstormCurve.Type.BEZIER_CHAIN, curve.getType());
+        double[] times = { 0, 0.4, 1 };
+        double[] values = { 1, -1, 3 };
+        double[] slopes = { 2, 0, -4 };
+        double h = 1e-4;
+        for (int i = 0; i < times.length; i++) {
+            double t = times[i];
+            assertEquals(values[i], curve.shape(t), EPSILON, "value at " + t);
+            // 二阶单侧差分 (曲线在 [0, 1] 之外被限制)，最后一个关键点向左取差分
+            double d = i == times.length - 1 ? -h : h;
+            double slope = (-3 * curve.shape(t) + 4 * curve.shape(t + d) - curve.shape(t + 2 * d)) / (2 * d);
+            assertEquals(slopes[i], slope, 1e-3, "slope at " + t);
+        }
+    }
+
+    @Test
+    void bezierChainWithStepIsRejected() {
+        SnowstormCurve curve = curve("{\"type\": \"bezier_chain\", \"input\": \"v.t\", \"nodes\": {"
+                + "\"0.0\": {\"value\": 0},"
+                + "\"0.5\": {\"left_value\": 0, \"right_value\": 1},"
+                + "\"1.0\": {\"value\": 1}}}");
+        curve.bake(MolangLut.DEFAULT_RESOLUTION);
+        assertTrue(curve.isRejected());
+        assertFalse(curve.isBaked());
+        // 没有查找表时按解析式求值，阶跃两侧的值保持精确
+        MolangContext context = new MolangContext(schema);
+        context.setVariable("variable.t", 0.49f);
+        assertEquals(0, curve.eval(context), EPSILON);
+        context.setVariable("variable.t", 0.5f);
+        assertEquals(1, curve.eval(context), EPSILON);
+    }
+
+    @Test
+    void bakedTablesStayWithinTolerance() {
+        String[] curves = {
+                "{\"type\": \"linear\", \"input\": \"v.t\", \"nodes\": [0, 1, 0.25, 3]}",
+                "{\"type\": \"bezier\", \"input\": \"v.t\", \"nodes\": [0.5, 2, -1, 1]}",
+                "{\"type\": \"catmull_rom\", \"input\": \"v.t\", \"nodes\": [4, 1, 3, -2, 0, 7]}",
+                "{\"type\": \"bezier_chain\", \"input\": \"v.t\", \"nodes\": {\"0.0\": {\"value\": 1, \"slope\": 2},"
+                        + "\"0.4\": {\"value\": -1, \"slope\": 0}, \"1.0\": {\"value\": 3, \"slope\": -4}}}",
+                // 范围依赖变量时按精确的 t 查表
+                "{\"type\": \"bezier\", \"input\": \"v.t\", \"horizontal_range\": \"v.range\", \"nodes\": [0, 3, -3, 1]}",
+        };
+        for (String json : curves) {
+            SnowstormCurve curve = curve(json);
+            curve.bake(MolangLut.DEFAULT_RESOLUTION);
+            assertTrue(curve.isBaked(), json);
+
+            MolangContext context = new MolangContext(schema);
+            context.setVariable("variable.range", 2.5f);
+            float range = json.contains("v.range") ? 2.5f : 1;
+            double maxValue = 0;
+            double maxError = 0;
+            for (int i = 0; i <= STEPS; i++) {
+                double t = (double) i / STEPS;
+                context.setVariable("variable.t", (float) (t * range));
+                double exact = curve.shape(t);
+                maxValue = Math.max(maxValue, Math.abs(exact));
+                maxError = Math.max(maxError, Math.abs(curve.eval(context) - exact));
+            }
+            assertTrue(maxError <= MolangLut.TOLERANCE * Math.max(1, maxValue),
+                    json + ": max error " + maxError);
+            assertTrue(curve.getMaxError() <= MolangLut.TOLERANCE * Math.max(1, maxValue), json);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.Lcing.snowstorm_engine.runtime;
+
+import org.Lcing.snowstorm_engine.definition.ParticleDefinition;
+import org.Lcing.snowstorm_engine.loader.ParticleLoader;
+import org.Lcing.snowstorm_engine.molang.MolangParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 粒子注册: 只有编译成功的定义才会注册。
+ */
+class SnowstormManagerTest {
+
+    // 组件由模组初始化时注册，这里用曲线的 input 携带表达式
+    private static ParticleDefinition definition(String id, String input) {
+        String json = "{\"format_version\": \"1.10.0\", \"particle_effect\": {"
+                + "\"description\": {\"identifier\": \"" + id + "\"},"
+                + "\"curves\": {\"variable.c\": {\"type\": \"linear\", \"input\": \"" + input
+                + "\", \"nodes\": [0, 1]}}, \"components\": {}}}";
+        return ParticleLoader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void malformedExpressionIsNotRegistered() {
+        SnowstormManager manager = new SnowstormManager();
+        assertThrows(MolangParseException.class, () -> manager.register(definition("test:broken", "math.sin(1 +")));
+        assertNull(manager.getParticleDefinition("test:broken"));
+        assertNull(manager.getTemplate("test:broken"));
+    }
+
+    @Test
+    void validDefinitionRegistersDefinitionAndTemplate() {
+        SnowstormManager manager = new SnowstormManager();
+        manager.register(definition("test:valid", "math.sin(v.emitter_age * 90) * 10"));
+        assertNotNull(manager.getParticleDefinition("test:valid"));
+        assertNotNull(manager.getTemplate("test:valid"));
+    }
+}